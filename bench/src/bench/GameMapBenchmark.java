@@ -0,0 +1,108 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the GameMap work outside of the search: building the map in initialStep,
+ * moving the enemy with updateEnemyLocation, and AstarNode.getNeighbors over every
+ * cell of the map.
+ *
+ * @author Alexander Telich
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameMapBenchmark {
+    
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    
+    @State(Scope.Thread)
+    public static class MapState {
+        // data/ map name, or synthetic-<size> for a generated map
+        @Param({"maze_8x8", "maze_16x16", "maze_16x16h", "maze_16x16n",
+                "maze_16x16h_dynamic", "synthetic-256", "synthetic-4096"})
+        public String map;
+        
+        @Param("0.2")
+        public double density;
+        
+        Scenario scenario;
+        Object gameMap;
+        Object[] enemyCells;
+        int nextEnemyCell;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            if (map.startsWith("synthetic-")) {
+                int size = Integer.parseInt(map.substring("synthetic-".length()));
+                scenario = Scenario.generate(size, density, 391).withEnemy(size - 1, 0);
+            } else {
+                scenario = Scenario.load(map);
+                if (scenario.enemyX < 0) {
+                    scenario = scenario.withEnemy(scenario.footmanX, scenario.footmanY);
+                }
+            }
+            gameMap = Planning.newGameMap(scenario);
+            
+            // the enemy walks back and forth between its start and an open cell next to it
+            int otherX = scenario.enemyX, otherY = scenario.enemyY;
+            for (int d = 0; d < 8; d++) {
+                int x = scenario.enemyX + DX[d], y = scenario.enemyY + DY[d];
+                if (scenario.isOpen(x, y)) {
+                    otherX = x;
+                    otherY = y;
+                    break;
+                }
+            }
+            enemyCells = new Object[]{Planning.location(otherX, otherY),
+                                      Planning.location(scenario.enemyX, scenario.enemyY)};
+        }
+    }
+    
+    @Benchmark
+    public Object buildGameMap(MapState state) {
+        return Planning.newGameMap(state.scenario);
+    }
+    
+    @Benchmark
+    public void updateEnemyLocation(MapState state) {
+        Planning.updateEnemyLocation(state.gameMap, state.enemyCells[state.nextEnemyCell]);
+        state.nextEnemyCell ^= 1;
+    }
+    
+    @Benchmark
+    public void updateEnemyLocationWithSnapshot(MapState state, Blackhole blackhole) {
+        // a snapshot held by a planner makes the next update copy the map
+        blackhole.consume(Planning.snapshot(state.gameMap));
+        Planning.updateEnemyLocation(state.gameMap, state.enemyCells[state.nextEnemyCell]);
+        state.nextEnemyCell ^= 1;
+    }
+    
+    @Benchmark
+    public void astarNodeNeighbors(MapState state, Blackhole blackhole) {
+        Scenario scenario = state.scenario;
+        for (int y = 0; y < scenario.height; y++) {
+            for (int x = 0; x < scenario.width; x++) {
+                Object node = Planning.newAstarNode(x, y, state.gameMap);
+                blackhole.consume(Planning.getNeighbors(node));
+            }
+        }
+    }
+}
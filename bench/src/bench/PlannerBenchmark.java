@@ -0,0 +1,109 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times one full plan from the footman to the townhall, the work AstarSearch does in
+ * initialStep, for every planner on the maps in data/ and on generated maps.
+ *
+ * Run with the gc profiler to also get the allocation rate per plan:
+ * java -cp ... org.openjdk.jmh.Main PlannerBenchmark -prof gc
+ *
+ * @author Alexander Telich
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlannerBenchmark {
+    
+    /**
+     * A planner on one of the maps in data/.
+     */
+    @State(Scope.Thread)
+    public static class DataMap {
+        @Param({"maze_8x8", "maze_16x16", "maze_16x16h", "maze_16x16n",
+                "maze_16x16h_dynamic"})
+        public String map;
+        
+        @Param({"astar", "jps", "jpsplus", "hpa"})
+        public String planner;
+        
+        Scenario scenario;
+        Object gameMap;
+        Object snapshot;
+        Object pathPlanner;
+        int[] goalCells;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            scenario = Scenario.load(map);
+            gameMap = Planning.newGameMap(scenario);
+            snapshot = Planning.snapshot(gameMap);
+            pathPlanner = Planning.newPlanner(planner, gameMap, scenario.width,
+                                              scenario.height);
+            goalCells = scenario.goalCells();
+        }
+    }
+    
+    /**
+     * A planner on a generated square map with randomly placed trees.
+     */
+    @State(Scope.Thread)
+    public static class SyntheticMap {
+        @Param({"64", "256", "1024", "4096"})
+        public int size;
+        
+        @Param({"0.1", "0.2", "0.3"})
+        public double density;
+        
+        @Param({"astar", "jps", "jpsplus", "hpa"})
+        public String planner;
+        
+        @Param("391")
+        public long seed;
+        
+        Scenario scenario;
+        Object gameMap;
+        Object snapshot;
+        Object pathPlanner;
+        int[] goalCells;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            scenario = Scenario.generate(size, density, seed);
+            gameMap = Planning.newGameMap(scenario);
+            snapshot = Planning.snapshot(gameMap);
+            pathPlanner = Planning.newPlanner(planner, gameMap, size, size);
+            goalCells = scenario.goalCells();
+        }
+    }
+    
+    @Benchmark
+    public Object planDataMap(DataMap state) {
+        return Planning.search(state.pathPlanner, state.snapshot, state.scenario,
+                               state.scenario.footmanX, state.scenario.footmanY,
+                               state.goalCells);
+    }
+    
+    @Benchmark
+    public Object planSyntheticMap(SyntheticMap state) {
+        return Planning.search(state.pathPlanner, state.snapshot, state.scenario,
+                               state.scenario.footmanX, state.scenario.footmanY,
+                               state.goalCells);
+    }
+}
@@ -0,0 +1,255 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Entry points into the agent's classes for the benchmarks.
+ *
+ * The agent lives in the default package, which a named package can't import, and JMH
+ * won't generate benchmarks for classes in the default package. So the benchmarks
+ * reach GameMap, AstarNode and the planners through the method handles below. They
+ * are static final, so the JIT inlines them and the calls cost the same as direct
+ * ones.
+ *
+ * @author Alexander Telich
+ */
+public final class Planning {
+    private static final MethodHandle NEW_LOCATION;
+    private static final MethodHandle NEW_GAME_MAP;
+    private static final MethodHandle NEW_GAME_MAP_WITH_ENEMY;
+    private static final MethodHandle SNAPSHOT;
+    private static final MethodHandle UPDATE_ENEMY_LOCATION;
+    private static final MethodHandle ADD_CHANGE_LISTENER;
+    private static final MethodHandle NEW_ASTAR_NODE;
+    private static final MethodHandle GET_NEIGHBORS;
+    private static final MethodHandle NEW_GRID_ASTAR;
+    private static final MethodHandle NEW_JUMP_POINT_SEARCH;
+    private static final MethodHandle NEW_D_STAR_LITE;
+    private static final MethodHandle NEW_HIERARCHICAL_PLANNER;
+    private static final MethodHandle NEW_DISTANCE_FIELD;
+    private static final MethodHandle SEARCH;
+    private static final MethodHandle PATH_CELLS;
+    
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> location = Class.forName("AstarAgent$MapLocation");
+            Class<?> gameMap = Class.forName("GameMap");
+            Class<?> gridView = Class.forName("GridView");
+            Class<?> listener = Class.forName("GameMap$ChangeListener");
+            Class<?> node = Class.forName("AstarNode");
+            Class<?> gridAstar = Class.forName("GridAstar");
+            Class<?> pathPlanner = Class.forName("PathPlanner");
+            Class<?> gridPath = Class.forName("GridPath");
+            
+            // MapLocation is package private, so its constructor has to be opened up
+            Constructor<?> newLocation = location.getConstructor(int.class, int.class,
+                                                                 location, float.class);
+            newLocation.setAccessible(true);
+            NEW_LOCATION = generic(MethodHandles.lookup().unreflectConstructor(newLocation));
+            NEW_GAME_MAP = generic(lookup.findConstructor(
+                    gameMap, MethodType.methodType(void.class, int.class, int.class,
+                                                   Set.class, location)));
+            NEW_GAME_MAP_WITH_ENEMY = generic(lookup.findConstructor(
+                    gameMap, MethodType.methodType(void.class, int.class, int.class,
+                                                   location, Set.class, location)));
+            SNAPSHOT = generic(lookup.findVirtual(
+                    gameMap, "snapshot",
+                    MethodType.methodType(Class.forName("GameMap$Snapshot"))));
+            UPDATE_ENEMY_LOCATION = generic(lookup.findVirtual(
+                    gameMap, "updateEnemyLocation",
+                    MethodType.methodType(void.class, location)));
+            ADD_CHANGE_LISTENER = generic(lookup.findVirtual(
+                    gameMap, "addChangeListener",
+                    MethodType.methodType(void.class, listener)));
+            NEW_ASTAR_NODE = generic(lookup.findConstructor(
+                    node, MethodType.methodType(void.class, int.class, int.class, gameMap)));
+            GET_NEIGHBORS = generic(lookup.findVirtual(
+                    node, "getNeighbors",
+                    MethodType.methodType(Class.forName("[LAstarNode;"))));
+            NEW_GRID_ASTAR = generic(lookup.findConstructor(
+                    gridAstar, MethodType.methodType(void.class, int.class, int.class)));
+            NEW_JUMP_POINT_SEARCH = generic(lookup.findConstructor(
+                    Class.forName("JumpPointSearch"),
+                    MethodType.methodType(void.class, int.class, int.class, boolean.class)));
+            NEW_D_STAR_LITE = generic(lookup.findConstructor(
+                    Class.forName("DStarLite"),
+                    MethodType.methodType(void.class, int.class, int.class)));
+            NEW_HIERARCHICAL_PLANNER = generic(lookup.findConstructor(
+                    Class.forName("HierarchicalPlanner"),
+                    MethodType.methodType(void.class, int.class, int.class, int.class)));
+            NEW_DISTANCE_FIELD = generic(lookup.findConstructor(
+                    Class.forName("DistanceField"),
+                    MethodType.methodType(void.class, int.class, int.class)));
+            SEARCH = generic(lookup.findVirtual(
+                    pathPlanner, "search",
+                    MethodType.methodType(gridPath, gridView, int.class,
+                                          int.class, int[].class, int.class, int.class,
+                                          int.class)));
+            PATH_CELLS = generic(lookup.findVirtual(
+                    gridPath, "toArray", MethodType.methodType(int[].class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    private Planning() {
+    }
+    
+    /**
+     * Turns every reference type of the handle into Object so it can be called with
+     * invokeExact without naming the agent's classes.
+     */
+    private static MethodHandle generic(MethodHandle handle) {
+        return handle.asType(handle.type().erase());
+    }
+    
+    /**
+     * @return a new AstarAgent.MapLocation
+     */
+    public static Object location(int x, int y) {
+        try {
+            return (Object) NEW_LOCATION.invokeExact(x, y, (Object) null, 0f);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    /**
+     * Builds the GameMap of a scenario, the same way AstarAgent.initialStep does.
+     *
+     * @return a new GameMap
+     */
+    public static Object newGameMap(Scenario scenario) {
+        Set<Object> trees = new HashSet<>();
+        for (int i = 0; i < scenario.trees.length; i += 2) {
+            trees.add(location(scenario.trees[i], scenario.trees[i + 1]));
+        }
+        Object townhall = location(scenario.townhallX, scenario.townhallY);
+        try {
+            if (scenario.enemyX < 0) {
+                return (Object) NEW_GAME_MAP.invokeExact(scenario.width, scenario.height,
+                                                         (Object) trees, townhall);
+            }
+            return (Object) NEW_GAME_MAP_WITH_ENEMY.invokeExact(
+                    scenario.width, scenario.height,
+                    location(scenario.enemyX, scenario.enemyY), (Object) trees, townhall);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    /**
+     * @return gameMap.snapshot()
+     */
+    public static Object snapshot(Object gameMap) {
+        try {
+            return (Object) SNAPSHOT.invokeExact(gameMap);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    /**
+     * Calls gameMap.updateEnemyLocation.
+     */
+    public static void updateEnemyLocation(Object gameMap, Object location) {
+        try {
+            UPDATE_ENEMY_LOCATION.invokeExact(gameMap, location);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    /**
+     * @return a new AstarNode
+     */
+    public static Object newAstarNode(int x, int y, Object gameMap) {
+        try {
+            return (Object) NEW_ASTAR_NODE.invokeExact(x, y, gameMap);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    /**
+     * @return node.getNeighbors()
+     */
+    public static Object getNeighbors(Object node) {
+        try {
+            return (Object) GET_NEIGHBORS.invokeExact(node);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    /**
+     * Builds a planner by its astar.planner name (astar, jps, jpsplus, dstar or hpa)
+     * and registers it with the map if it listens for changes.
+     *
+     * @return a new PathPlanner
+     */
+    public static Object newPlanner(String name, Object gameMap, int width, int height) {
+        try {
+            Object planner;
+            if (name.equals("astar")) {
+                planner = (Object) NEW_GRID_ASTAR.invokeExact(width, height);
+            } else if (name.equals("jps") || name.equals("jpsplus")) {
+                planner = (Object) NEW_JUMP_POINT_SEARCH.invokeExact(width, height,
+                                                                     name.equals("jpsplus"));
+            } else if (name.equals("dstar")) {
+                planner = (Object) NEW_D_STAR_LITE.invokeExact(width, height);
+                ADD_CHANGE_LISTENER.invokeExact(gameMap, planner);
+            } else if (name.equals("hpa")) {
+                planner = (Object) NEW_HIERARCHICAL_PLANNER.invokeExact(width, height, 16);
+                ADD_CHANGE_LISTENER.invokeExact(gameMap, planner);
+            } else if (name.equals("flowfield")) {
+                planner = (Object) NEW_DISTANCE_FIELD.invokeExact(width, height);
+                ADD_CHANGE_LISTENER.invokeExact(gameMap, planner);
+            } else {
+                throw new IllegalArgumentException("Unknown planner " + name);
+            }
+            return planner;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    /**
+     * Runs planner.search from the scenario's footman to its goal cells.
+     *
+     * @return the path, or null if there is none
+     */
+    public static Object search(Object planner, Object view, Scenario scenario,
+                                int startX, int startY, int[] goalCells) {
+        try {
+            return (Object) SEARCH.invokeExact(planner, view, startX, startY, (Object) goalCells,
+                                               goalCells.length, scenario.townhallX,
+                                               scenario.townhallY);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    /**
+     * @return the flat indices of the cells of a GridPath, first move first
+     */
+    public static int[] pathCells(Object path) {
+        try {
+            return (int[]) (Object) PATH_CELLS.invokeExact(path);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a replan after the enemy footman moves, the work middleStep does when
+ * shouldReplanPath fires. Every call moves the enemy onto the next cell of the first
+ * path and plans again, so incremental planners (dstar, hpa) can be compared against
+ * planning from scratch.
+ *
+ * @author Alexander Telich
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplanBenchmark {
+    
+    @State(Scope.Thread)
+    public static class DynamicMap {
+        @Param({"maze_16x16h_dynamic", "synthetic"})
+        public String map;
+        
+        @Param("1024")
+        public int syntheticSize;
+        
+        @Param({"astar", "dstar", "hpa", "flowfield"})
+        public String planner;
+        
+        Scenario scenario;
+        Object gameMap;
+        Object pathPlanner;
+        int[] goalCells;
+        // cells of the first path the enemy keeps stepping onto
+        Object[] enemyCells;
+        int nextEnemyCell;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            scenario = map.equals("synthetic")
+                       ? Scenario.generate(syntheticSize, 0.2, 391)
+                       : Scenario.load(map);
+            if (scenario.enemyX < 0) {
+                // the generated maps have no enemy, park one in a corner
+                scenario = scenario.withEnemy(scenario.width - 1, 0);
+            }
+            gameMap = Planning.newGameMap(scenario);
+            pathPlanner = Planning.newPlanner(planner, gameMap, scenario.width,
+                                              scenario.height);
+            goalCells = scenario.goalCells();
+            
+            Object path = Planning.search(pathPlanner, Planning.snapshot(gameMap), scenario,
+                                          scenario.footmanX, scenario.footmanY, goalCells);
+            int[] cells = path == null ? new int[0] : Planning.pathCells(path);
+            if (cells.length < 2) {
+                throw new IllegalStateException("No path to block on " + map);
+            }
+            // leave the last cells alone so the goal cells never get blocked, and walk
+            // the rest from the goal end back towards the footman
+            enemyCells = new Object[cells.length - 2];
+            for (int i = 0; i < enemyCells.length; i++) {
+                int cell = cells[cells.length - 3 - i];
+                enemyCells[i] = Planning.location(cell % scenario.width,
+                                                  cell / scenario.width);
+            }
+        }
+    }
+    
+    @Benchmark
+    public Object replanAfterEnemyMove(DynamicMap state) {
+        Planning.updateEnemyLocation(state.gameMap, state.enemyCells[state.nextEnemyCell]);
+        state.nextEnemyCell = (state.nextEnemyCell + 1) % state.enemyCells.length;
+        return Planning.search(state.pathPlanner, Planning.snapshot(state.gameMap),
+                               state.scenario, state.scenario.footmanX,
+                               state.scenario.footmanY, state.goalCells);
+    }
+}
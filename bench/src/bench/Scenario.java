@@ -0,0 +1,195 @@
+package bench;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A map to benchmark on: its size, trees, townhall, our footman and (if there is one)
+ * the enemy footman. Scenarios are either read from the Sepia state files in data/ or
+ * generated with trees scattered at a given density.
+ *
+ * @author Alexander Telich
+ */
+public class Scenario {
+    public final int width, height;
+    // x, y pairs of every tree
+    public final int[] trees;
+    public final int townhallX, townhallY;
+    public final int footmanX, footmanY;
+    // -1, -1 when there is no enemy footman
+    public final int enemyX, enemyY;
+    
+    private Scenario(int width, int height, int[] trees, int townhallX, int townhallY,
+                     int footmanX, int footmanY, int enemyX, int enemyY) {
+        this.width = width;
+        this.height = height;
+        this.trees = trees;
+        this.townhallX = townhallX;
+        this.townhallY = townhallY;
+        this.footmanX = footmanX;
+        this.footmanY = footmanY;
+        this.enemyX = enemyX;
+        this.enemyY = enemyY;
+    }
+    
+    /**
+     * Reads one of the maps in data/, e.g. maze_16x16h. The data directory can be
+     * moved with -Dbench.data=path.
+     *
+     * @param name file name without .xml
+     *
+     * @return the scenario of that map
+     */
+    public static Scenario load(String name) {
+        File file = new File(System.getProperty("bench.data", "data"), name + ".xml");
+        try {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                                                      .parse(file);
+            Element state = document.getDocumentElement();
+            int width = Integer.parseInt(state.getAttribute("xExtent"));
+            int height = Integer.parseInt(state.getAttribute("yExtent"));
+            
+            int townhallX = -1, townhallY = -1, footmanX = -1, footmanY = -1;
+            int enemyX = -1, enemyY = -1;
+            NodeList players = state.getElementsByTagName("player");
+            for (int p = 0; p < players.getLength(); p++) {
+                Element player = (Element) players.item(p);
+                boolean ours = text(player, "ID").equals("0");
+                
+                Map<String, String> templateNames = new HashMap<>();
+                for (Element template : children(player, "template")) {
+                    templateNames.put(text(template, "ID"), text(template, "name"));
+                }
+                for (Element unit : children(player, "unit")) {
+                    String type = templateNames.get(text(unit, "templateID"));
+                    int x = Integer.parseInt(text(unit, "xPosition"));
+                    int y = Integer.parseInt(text(unit, "yPosition"));
+                    if ("Footman".equals(type) && ours) {
+                        footmanX = x;
+                        footmanY = y;
+                    } else if ("Footman".equals(type)) {
+                        enemyX = x;
+                        enemyY = y;
+                    } else if ("TownHall".equals(type) && !ours) {
+                        townhallX = x;
+                        townhallY = y;
+                    }
+                }
+            }
+            
+            NodeList resources = state.getElementsByTagName("resourceNode");
+            int[] trees = new int[resources.getLength() * 2];
+            for (int i = 0; i < resources.getLength(); i++) {
+                Element resource = (Element) resources.item(i);
+                trees[2 * i] = Integer.parseInt(text(resource, "xPosition"));
+                trees[2 * i + 1] = Integer.parseInt(text(resource, "yPosition"));
+            }
+            return new Scenario(width, height, trees, townhallX, townhallY, footmanX,
+                                footmanY, enemyX, enemyY);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Could not read map " + file, e);
+        }
+    }
+    
+    /**
+     * Makes a square map with trees dropped at random. The footman starts in the top
+     * left corner and the townhall is in the bottom right one.
+     *
+     * @param size    side length of the map
+     * @param density chance of each cell being a tree
+     * @param seed    seed for the random trees, the same seed gives the same map
+     *
+     * @return the generated scenario
+     */
+    public static Scenario generate(int size, double density, long seed) {
+        Random random = new Random(seed);
+        int townhallX = size - 1, townhallY = size - 1;
+        int[] trees = new int[size * size * 2];
+        int count = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // keep the corners open so the start and the goal cells are free
+                boolean nearStart = x < 2 && y < 2;
+                boolean nearGoal = x >= size - 2 && y >= size - 2;
+                if (!nearStart && !nearGoal && random.nextDouble() < density) {
+                    trees[count++] = x;
+                    trees[count++] = y;
+                }
+            }
+        }
+        return new Scenario(size, size, Arrays.copyOf(trees, count), townhallX,
+                            townhallY, 0, 0, -1, -1);
+    }
+    
+    /**
+     * Tells you if a cell is on the map and has no tree or townhall on it.
+     *
+     * @return true if a unit could stand there
+     */
+    public boolean isOpen(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return false;
+        if (x == townhallX && y == townhallY) return false;
+        for (int i = 0; i < trees.length; i += 2) {
+            if (trees[i] == x && trees[i + 1] == y) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Copy of this scenario with an enemy footman at the given cell.
+     *
+     * @return the new scenario
+     */
+    public Scenario withEnemy(int x, int y) {
+        return new Scenario(width, height, trees, townhallX, townhallY, footmanX, footmanY,
+                            x, y);
+    }
+    
+    /**
+     * The cells AstarSearch plans to, as AstarAgent.findTargetCells picks them for a
+     * footman of range 1: every free cell next to the townhall, where the enemy
+     * footman doesn't stand.
+     *
+     * @return flat indices (y * width + x) of the goal cells
+     */
+    public int[] goalCells() {
+        int[] cells = new int[8];
+        int count = 0;
+        for (int y = townhallY - 1; y <= townhallY + 1; y++) {
+            for (int x = townhallX - 1; x <= townhallX + 1; x++) {
+                if (isOpen(x, y) && !(x == enemyX && y == enemyY)) {
+                    cells[count++] = y * width + x;
+                }
+            }
+        }
+        return Arrays.copyOf(cells, count);
+    }
+    
+    private static String text(Element parent, String tag) {
+        for (Element child : children(parent, tag)) {
+            return child.getTextContent().trim();
+        }
+        return "";
+    }
+    
+    private static Iterable<Element> children(Element parent, String tag) {
+        List<Element> children = new ArrayList<>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && ((Element) node).getTagName().equals(tag)) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+}
@@ -0,0 +1,325 @@
+import java.util.Arrays;
+
+/**
+ * The AnytimePlanner Class is ARA* (Anytime Repairing A*). It runs weighted A* with
+ * f = g + weight * h, which finds a path quickly but only promises it is at most weight
+ * times longer than the shortest one, and then lowers the weight and repairs the
+ * search over and over until the weight is 1. Each repair pass only expands the cells
+ * whose cost went down in the pass before, so later passes are cheap.
+ *
+ * A search is given a time budget (setBudget). When it runs out the best path so far
+ * is returned and the search state is kept, and the next call with the same map and
+ * goals picks up where this one stopped. The search runs backwards from the goal
+ * cells, so every cell it reached has a path to the goal through its parents, and a
+ * footman that walked on along the old path can be given an improved path from where
+ * it stands. isImproving tells the agent there is more to gain by calling again.
+ *
+ * The state only fits the map it was searched on, told apart by identity: a GameMap
+ * snapshot stays the same object until the map changes, so any enemy move starts the
+ * search over from the first weight. Unlike DStarLite it doesn't listen for changes,
+ * since a blocked cell raises the cost of every cell whose path went through it and
+ * the repair passes only ever lower costs. A search that ran out of cells without
+ * reaching the footman is kept too, so another footman with no path on the same map
+ * is told so without searching again.
+ *
+ * With a weight step of 0 the weight never goes down, which is plain weighted A*.
+ *
+ * @author Alexander Telich
+ */
+public class AnytimePlanner implements PathPlanner {
+    // weights are kept in thousandths so keys stay integers
+    private static final int ONE = 1000;
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private int width, height;
+    private final int initialWeight, weightStep;
+    private int weight;
+    private long budget;
+
+    // map and goals the search state belongs to
+    private GridView map;
+    private int[] goals = new int[0];
+    // cell the heuristic measures to, the footman at the last call
+    private int focus;
+
+    // cost from each cell to the nearest goal and the next cell on the way there
+    private int[] gValue;
+    private int[] parent;
+    // seenStamp is per search, closedStamp and inconsStamp per repair pass
+    private int[] seenStamp;
+    private int[] closedStamp;
+    private int[] inconsStamp;
+    private int generation, pass;
+    private final IndexedMinHeap open = new IndexedMinHeap();
+    // closed cells whose cost went down, they go back into open for the next pass
+    private int[] incons;
+    private int inconsCount;
+    private int[] scratch;
+
+    private boolean improving;
+    // every cell with a path to the goals was seen, so a cell that wasn't has none
+    private boolean exhausted;
+    // a pass has finished for the focus, so there is a bounded path to fall back on
+    private boolean settled;
+    private double bound;
+    private int expandedCount;
+
+    /**
+     * Constructor declaration for AnytimePlanner
+     *
+     * @param width      x length of the map
+     * @param height     y length of the map
+     * @param weight     weight of the first pass, at least 1
+     * @param weightStep how much the weight goes down after each pass, 0 to keep it
+     */
+    public AnytimePlanner(int width, int height, double weight, double weightStep) {
+        this.initialWeight = Math.max(ONE, (int) Math.round(weight * ONE));
+        this.weightStep = Math.max(0, (int) Math.round(weightStep * ONE));
+        resize(width, height);
+    }
+
+    /**
+     * Sets how long a search may take. The first pass of a new search, or of one
+     * picked up from a cell the footman walked on to, is always finished, so a footman
+     * never ends up without a path or with one outside the bound.
+     *
+     * @param nanos time per call in nanoseconds, 0 for no limit
+     */
+    public void setBudget(long nanos) {
+        this.budget = nanos;
+    }
+
+    /**
+     * @return true if the last path may still get shorter by searching again with the
+     * same map and goals
+     */
+    public boolean isImproving() {
+        return improving;
+    }
+
+    /**
+     * Suboptimality bound of the last finished pass: its path was at most this many
+     * times longer than the shortest one.
+     *
+     * @return the bound, 1 once the path is a shortest one
+     */
+    public double getBound() {
+        return bound;
+    }
+
+    @Override
+    public GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                           int goalCount, int targetX, int targetY) {
+        long deadline = budget > 0 ? System.nanoTime() + budget : Long.MAX_VALUE;
+        resize(gameMap.getLengthX(), gameMap.getLengthY());
+        expandedCount = 0;
+        int start = startY * width + startX;
+
+        boolean sameSearch = gameMap == map &&
+                             GridAstar.sameGoals(goals, goalCells, goalCount);
+        if (sameSearch && exhausted && seenStamp[start] != generation) {
+            improving = false;
+            return null;
+        }
+        if (!sameSearch || seenStamp[start] != generation) {
+            begin(gameMap, start, goalCells, goalCount);
+        } else if (start != focus) {
+            // the footman moved on, so the next passes are about its new cell
+            focus = start;
+            improving = true;
+            settled = false;
+            bound = weight / (double) ONE;
+            nextPass();
+        } else if (!improving) {
+            return buildPath(start);
+        }
+
+        while (improving) {
+            if (!improvePath(deadline)) break;
+            settled = true;
+            if (seenStamp[focus] != generation) {
+                // every cell that reaches a goal was expanded without finding the footman
+                improving = false;
+                exhausted = true;
+                return null;
+            }
+            int passWeight = weight;
+            if (weight > ONE && weightStep > 0) {
+                weight = Math.max(ONE, weight - weightStep);
+            } else {
+                improving = false;
+            }
+            // also works out the lowest g + h left, which bounds the shortest path
+            long lowest = nextPass();
+            bound = passWeight == ONE || lowest == Long.MAX_VALUE ? 1 :
+                    Math.min(passWeight / (double) ONE,
+                             Math.max(1, gValue[focus] / (double) lowest));
+            if (System.nanoTime() > deadline) break;
+        }
+        return buildPath(focus);
+    }
+
+    /**
+     * Number of cells expanded by the last call.
+     *
+     * @return count of expanded cells
+     */
+    @Override
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    private void resize(int width, int height) {
+        if (gValue != null && this.width == width && this.height == height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        int cells = width * height;
+        gValue = new int[cells];
+        parent = new int[cells];
+        seenStamp = new int[cells];
+        closedStamp = new int[cells];
+        inconsStamp = new int[cells];
+        incons = new int[cells];
+        scratch = new int[cells];
+        generation = 0;
+        pass = 0;
+        open.resize(cells);
+        map = null;
+    }
+
+    /**
+     * Starts a new search from the goal cells with the first weight.
+     */
+    private void begin(GridView gameMap, int start, int[] goalCells, int goalCount) {
+        map = gameMap;
+        goals = Arrays.copyOf(goalCells, goalCount);
+        focus = start;
+        weight = initialWeight;
+        bound = weight / (double) ONE;
+        improving = true;
+        settled = false;
+        exhausted = false;
+        generation++;
+        pass++;
+        if (generation == Integer.MAX_VALUE || pass == Integer.MAX_VALUE) {
+            Arrays.fill(seenStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            Arrays.fill(inconsStamp, 0);
+            generation = 1;
+            pass = 1;
+        }
+        open.clear();
+        inconsCount = 0;
+        for (int goal : goals) {
+            if (gameMap.isBlocked(goal) || seenStamp[goal] == generation) continue;
+            seenStamp[goal] = generation;
+            gValue[goal] = 0;
+            parent[goal] = -1;
+            open.push(goal, key(goal));
+        }
+    }
+
+    /**
+     * Expands cells until the footman's cell has the lowest key, open runs dry or the
+     * deadline passes. The deadline only counts once a pass has finished for the
+     * footman's cell, so the path it is given keeps within the bound.
+     *
+     * @return false if the deadline stopped the pass
+     */
+    private boolean improvePath(long deadline) {
+        while (!open.isEmpty()) {
+            boolean found = seenStamp[focus] == generation;
+            if (found && (long) gValue[focus] * ONE <= open.peekKey()) {
+                return true;
+            }
+            if (settled && (expandedCount & 63) == 0 && System.nanoTime() > deadline) {
+                return false;
+            }
+
+            int current = open.poll();
+            closedStamp[current] = pass;
+            expandedCount++;
+
+            int x = current % width;
+            int y = current / width;
+            int tentativeG = gValue[current] + 1;
+            int neighbors = map.getNeighborMask(current);
+            for (int d = 0; d < 8; d++) {
+                if ((neighbors & (1 << d)) == 0) continue;
+                int next = (y + DY[d]) * width + x + DX[d];
+                if (seenStamp[next] == generation && gValue[next] <= tentativeG) continue;
+                seenStamp[next] = generation;
+                gValue[next] = tentativeG;
+                parent[next] = current;
+                if (closedStamp[next] == pass) {
+                    if (inconsStamp[next] != pass) {
+                        inconsStamp[next] = pass;
+                        incons[inconsCount++] = next;
+                    }
+                } else if (open.contains(next)) {
+                    open.update(next, key(next));
+                } else {
+                    open.push(next, key(next));
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts the next repair pass: the closed cells whose cost went down join the open
+     * ones and all of them are keyed again with the current weight and focus.
+     *
+     * @return the lowest g + h of those cells, or Long.MAX_VALUE if there are none
+     */
+    private long nextPass() {
+        int count = 0;
+        while (!open.isEmpty()) {
+            scratch[count++] = open.poll();
+        }
+        for (int i = 0; i < inconsCount; i++) {
+            scratch[count++] = incons[i];
+        }
+        inconsCount = 0;
+        pass++;
+        if (pass == Integer.MAX_VALUE) {
+            Arrays.fill(closedStamp, 0);
+            Arrays.fill(inconsStamp, 0);
+            pass = 1;
+        }
+
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int cell = scratch[i];
+            lowest = Math.min(lowest, (long) gValue[cell] + estimate(cell));
+            open.push(cell, key(cell));
+        }
+        return lowest;
+    }
+
+    private long key(int cell) {
+        return (long) gValue[cell] * ONE + (long) weight * estimate(cell);
+    }
+
+    /**
+     * Chebyshev distance to the footman's cell.
+     */
+    private int estimate(int cell) {
+        return GridAstar.heuristic(cell % width, cell / width, focus % width,
+                                   focus / width);
+    }
+
+    /**
+     * Follows the parents from the cell to a goal. The cell itself is not included.
+     */
+    private GridPath buildPath(int cell) {
+        int length = 0;
+        for (int step = parent[cell]; step != -1; step = parent[step]) {
+            scratch[length++] = step;
+        }
+        return new GridPath(Arrays.copyOf(scratch, length), length, width);
+    }
+}
@@ -6,21 +6,74 @@ import edu.cwru.sepia.environment.model.state.State;
 import edu.cwru.sepia.environment.model.state.Unit;
 import edu.cwru.sepia.util.Direction;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 public class AstarAgent extends Agent {
     
     // Cache for the GameMap
     GameMap gameMap;
-    HashMap<AstarNode, AstarNode[]> cachedNeighbors = new HashMap<>();
-    MapLocation startLoc1;
-    boolean pathReplanCount;
+    // every footman of the player by unit ID, each with its own path and planner
+    Map<Integer, FootmanPlan> footmen = new LinkedHashMap<>();
+    // turns the footmen reserved, shared by their planners when astar.planner is whca
+    ReservationTable reservations;
+    // distances to the townhall shared by all the footmen, for the flowfield and whca
+    // planners or astar.heuristic=distance
+    DistanceField distanceField;
+    // landmark distances for astar.heuristic=alt, kept between episodes on the same map
+    // and saved with savePlayerData
+    LandmarkTable landmarkTable;
+    // dead cells of the map for astar.pruning=deadend, shared by all the footmen
+    DeadEndPruning deadEnds;
+    // what the pruning saves and costs, when astar.measurePruning is set
+    PruningStats pruningStats;
+    // true when astar.compareUnidirectional has bidirectional searches run again with
+    // the A* engine
+    boolean compareUnidirectional;
+    // true when astar.verbose has every move and attack of the footmen printed
+    boolean verbose;
+    // paths planned in earlier episodes on the same map, astar.pathCacheSize at most,
+    // saved with savePlayerData
+    PathCache pathCache = new PathCache();
+    // false when astar.pathCache turns the cache off
+    boolean usePathCache;
+    // what makes a footman plan again once an enemy unit is on its path, astar.replan:
+    // path for any step of it, lookahead for one of the next replanLookahead steps, or
+    // cost to go around it unless that takes more than replanThreshold extra moves
+    String replanPolicy;
+    int replanLookahead, replanThreshold;
+    // detours for the cost policy, only used on the agent's thread
+    PathRepair pathRepair = new PathRepair();
+    // time spent on detours this turn, counted as planning time
+    long repairTime;
+    // searches the footmen's plans off the agent's thread when astar.async is set,
+    // with astar.asyncThreads workers, null otherwise and between episodes
+    BackgroundPlanner backgroundPlanner;
+    // most contingency plans a footman gets searched per turn, astar.contingencies
+    int contingencyLimit;
+    // guesses where the enemy units go over the next astar.predictHorizon turns, sure
+    // of their first astar.predictConfidence moves, when astar.planner is sipp, null
+    // otherwise, and its guess from this turn
+    EnemyPredictor enemyPredictor;
+    EnemyPredictor.Prediction prediction;
+    // true once the astar.dataFile player data has been loaded
+    boolean playerDataLoaded;
+    // what the astar.dataFile file holds, so it is only written again when it changed
+    LandmarkTable savedLandmarkTable;
+    int savedPathPuts = -1;
     
-    Stack<MapLocation> path;
-    int footmanID, townhallID, enemyFootmanID;
-    MapLocation nextLoc;
+    int townhallID, enemyPlayerNum;
     private long totalPlanTime = 0; // nsecs
     private long totalExecutionTime = 0; //nsecs
     
@@ -33,7 +86,7 @@ public class AstarAgent extends Agent {
     @Override
     public Map<Integer, Action> initialStep(State.StateView newstate,
                                             History.HistoryView statehistory) {
-        // get the footman location
+        // get the footman locations
         List<Integer> unitIDs = newstate.getUnitIds(playernum);
         
         if (unitIDs.size() == 0) {
@@ -41,17 +94,26 @@ public class AstarAgent extends Agent {
             return null;
         }
         
-        footmanID = unitIDs.get(0);
+        // planners can hold on to the old map, so every episode starts with new ones
+        footmen.clear();
+        reservations = null;
+        distanceField = null;
+        deadEnds = null;
+        for (Integer unitID : unitIDs) {
+            if (newstate.getUnit(unitID).getTemplateView().getName().equals("Footman")) {
+                footmen.put(unitID, new FootmanPlan(unitID));
+            }
+        }
         
-        // double check that this is a footman
-        if (!newstate.getUnit(footmanID).getTemplateView().getName().equals("Footman")) {
+        // double check that there is a footman
+        if (footmen.isEmpty()) {
             System.err.println("Footman unit not found");
             return null;
         }
         
         // find the enemy playernum
         Integer[] playerNums = newstate.getPlayerNumbers();
-        int enemyPlayerNum = -1;
+        enemyPlayerNum = -1;
         for (Integer playerNum : playerNums) {
             if (playerNum != playernum) {
                 enemyPlayerNum = playerNum;
@@ -72,17 +134,13 @@ public class AstarAgent extends Agent {
             return null;
         }
         
+        // every other enemy unit is an obstacle the GameMap keeps track of
         townhallID = -1;
-        enemyFootmanID = -1;
         for (Integer unitID : enemyUnitIDs) {
             Unit.UnitView tempUnit = newstate.getUnit(unitID);
             String unitType = tempUnit.getTemplateView().getName().toLowerCase();
             if (unitType.equals("townhall")) {
                 townhallID = unitID;
-            } else if (unitType.equals("footman")) {
-                enemyFootmanID = unitID;
-            } else {
-                System.err.println("Unknown unit type");
             }
         }
         
@@ -93,17 +151,8 @@ public class AstarAgent extends Agent {
         
         // steps necessary to instantiate the gamemap once
         Unit.UnitView townhallUnit = newstate.getUnit(townhallID);
-        Unit.UnitView footmanUnit = newstate.getUnit(footmanID);
-        MapLocation startLoc = new MapLocation(footmanUnit.getXPosition(),
-                                               footmanUnit.getYPosition(), null, 0);
         MapLocation goalLoc = new MapLocation(townhallUnit.getXPosition(),
                                               townhallUnit.getYPosition(), null, 0);
-        MapLocation footmanLoc = null;
-        if (enemyFootmanID != -1) {
-            Unit.UnitView enemyFootmanUnit = newstate.getUnit(enemyFootmanID);
-            footmanLoc = new MapLocation(enemyFootmanUnit.getXPosition(),
-                                         enemyFootmanUnit.getYPosition(), null, 0);
-        }
         
         List<Integer> resourceIDs = newstate.getAllResourceIds();
         Set<MapLocation> resourceLocations = new HashSet<MapLocation>();
@@ -114,16 +163,49 @@ public class AstarAgent extends Agent {
                                          null, 0));
         }
         
-        if (footmanLoc == null) {
-            gameMap = new GameMap(newstate.getXExtent(), newstate.getYExtent(),
-                                  resourceLocations, goalLoc);
-        } else {
-            gameMap = new GameMap(newstate.getXExtent(), newstate.getYExtent(),
-                                  footmanLoc, resourceLocations, goalLoc);
+        gameMap = new GameMap(newstate.getXExtent(), newstate.getYExtent(),
+                              resourceLocations, goalLoc);
+        enemyPredictor = null;
+        prediction = null;
+        if (getSetting("astar.planner", "astar").equals("sipp")) {
+            enemyPredictor = new EnemyPredictor(
+                    Integer.parseInt(getSetting("astar.predictHorizon", "16")),
+                    Integer.parseInt(getSetting("astar.predictConfidence", "2")));
+        }
+        trackEnemyUnits(newstate);
+        if (!playerDataLoaded) {
+            playerDataLoaded = true;
+            loadPlayerDataFile();
+        }
+        if (landmarkTable != null && !landmarkTable.matches(gameMap)) {
+            landmarkTable = null;
+        }
+        usePathCache = Boolean.parseBoolean(getSetting("astar.pathCache", "true"));
+        replanPolicy = getSetting("astar.replan", "path");
+        replanLookahead = Integer.parseInt(getSetting("astar.replanLookahead", "8"));
+        replanThreshold = Integer.parseInt(getSetting("astar.replanThreshold", "2"));
+        if (backgroundPlanner == null &&
+            Boolean.parseBoolean(getSetting("astar.async", "false"))) {
+            // shut down again by terminalStep
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            backgroundPlanner = new BackgroundPlanner(
+                    Integer.parseInt(getSetting("astar.asyncThreads", "" + threads)));
+        }
+        contingencyLimit = Integer.parseInt(getSetting("astar.contingencies", "2"));
+        compareUnidirectional =
+                Boolean.parseBoolean(getSetting("astar.compareUnidirectional", "false"));
+        verbose = Boolean.parseBoolean(getSetting("astar.verbose", "false"));
+        if (pruningStats == null &&
+            Boolean.parseBoolean(getSetting("astar.measurePruning", "false"))) {
+            // kept over every episode of the run
+            pruningStats = new PruningStats(getSetting("astar.pruning", "quadrant"));
         }
+        pathCache.setCapacity(Integer.parseInt(
+                getSetting("astar.pathCacheSize", "" + PathCache.DEFAULT_CAPACITY)));
+        pathCache.startEpisode(gameMap.getFingerprint());
         
         long startTime = System.nanoTime();
-        path = findPath(newstate);
+        findPaths(newstate, new ArrayList<>(footmen.values()));
         totalPlanTime += System.nanoTime() - startTime;
         
         return middleStep(newstate, statehistory);
@@ -134,246 +216,1034 @@ public class AstarAgent extends Agent {
                                            History.HistoryView statehistory) {
         long startTime = System.nanoTime();
         long planTime = 0;
-
+        
         // Instantiates the actions that are to be taken
         Map<Integer, Action> actions = new HashMap<Integer, Action>();
-
-        // If the agent should replan its path, then it will find a path again for the new state
-        if (shouldReplanPath(newstate, path)) {
+        
+        Unit.UnitView townhallUnit = newstate.getUnit(townhallID);
+        
+        // if townhall was destroyed on the last turn
+        if (townhallUnit == null) {
+            terminalStep(newstate, statehistory);
+            return actions;
+        }
+        
+        // Every footman whose path the enemy units now block finds a new one, all at
+        // once. Cooperative footmen also plan again before their reserved window runs
+        // out. A footman planned in the background first takes the path it was
+        // waiting for, if it is done, and otherwise keeps walking the one it has.
+        trackEnemyUnits(newstate);
+        repairTime = 0;
+        int width = gameMap.getLengthX();
+        List<FootmanPlan> replanning = new ArrayList<>();
+        for (FootmanPlan footman : footmen.values()) {
+            Unit.UnitView footmanUnit = newstate.getUnit(footman.id);
+            if (footmanUnit == null) continue;
+            int footmanCell = footmanUnit.getYPosition() * width + footmanUnit.getXPosition();
+            if (footman.pending != null) {
+                if (!footman.pending.isDone()) continue;
+                BackgroundPlanner.Job job = footman.pending;
+                footman.pending = null;
+                if (!adoptPath(footman, job, footmanCell)) {
+                    // the footman went somewhere else while the path was planned
+                    footman.replanned = true;
+                    replanning.add(footman);
+                    continue;
+                }
+            }
+            if (footman.noPath) {
+                // a footman with no way to the townhall tries again once the map changed
+                if (gameMap.getChangeCount() != footman.planVersion) {
+                    footman.replanned = true;
+                    replanning.add(footman);
+                }
+            } else if (shouldReplanPath(footman, footmanCell) ||
+                (footman.planner instanceof CooperativePlanner &&
+                 newstate.getTurnNumber() - footman.planTurn >=
+                 ((CooperativePlanner) footman.planner).getReplanInterval())) {
+                footman.replanned = true;
+                if (!useContingency(footman, footmanCell)) {
+                    replanning.add(footman);
+                }
+            } else if (isImproving(footman)) {
+                // an anytime footman spends this turn's budget on a shorter path
+                replanning.add(footman);
+            }
+        }
+        planTime = repairTime;
+        if (!replanning.isEmpty()) {
             long planStartTime = System.nanoTime();
-            path = findPath(newstate);
-            planTime = System.nanoTime() - planStartTime;
-            totalPlanTime += planTime;
+            findPaths(newstate, replanning);
+            planTime += System.nanoTime() - planStartTime;
+        }
+        if (backgroundPlanner != null) {
+            long planStartTime = System.nanoTime();
+            speculate(newstate);
+            planTime += System.nanoTime() - planStartTime;
+        }
+        totalPlanTime += planTime;
+        
+        for (FootmanPlan footman : footmen.values()) {
+            Action action = nextAction(newstate, footman, townhallUnit);
+            if (action != null) {
+                actions.put(footman.id, action);
+            }
+        }
+        
+        totalExecutionTime += System.nanoTime() - startTime - planTime;
+        
+        return actions;
+    }
+    
+    /**
+     * Works out what one footman does this turn: take the next step of its path, or
+     * attack the townhall once the path is used up.
+     *
+     * @param state
+     * @param footman      the footman and its path
+     * @param townhallUnit the townhall it is after
+     *
+     * @return the footman's action, or null if it has none
+     */
+    private Action nextAction(State.StateView state, FootmanPlan footman,
+                              Unit.UnitView townhallUnit) {
+        Unit.UnitView footmanUnit = state.getUnit(footman.id);
+        if (footmanUnit == null) {
+            return null;
         }
         
-        Unit.UnitView footmanUnit = newstate.getUnit(footmanID);
-
         // Gets the position of the footman and stores it
         int footmanX = footmanUnit.getXPosition();
         int footmanY = footmanUnit.getYPosition();
-
+        int width = gameMap.getLengthX();
+        int footmanCell = footmanY * width + footmanX;
+        int nextCell = footman.nextCell;
+        
         // If the path is not empty and we have a nextLocation then move to it
-        if (!path.empty() &&
-            (nextLoc == null || (footmanX == nextLoc.x && footmanY == nextLoc.y))) {
+        if (!footman.path.isEmpty() && (nextCell < 0 || footmanCell == nextCell)) {
             
             // stat moving to the next step in the path
-            nextLoc = path.pop();
+            nextCell = footman.path.next();
+            footman.nextCell = nextCell;
+            
+            if (verbose) {
+                System.out.println("Footman " + footman.id + " moving to (" +
+                                   nextCell % width + ", " + nextCell / width + ")");
+            }
             
-            System.out.println("Moving to (" + nextLoc.x + ", " + nextLoc.y + ")");
+            // the cooperative planner makes footmen wait a turn to let others pass
+            if (footmanCell == nextCell) {
+                return null;
+            }
         }
-
+        
         // If the next location is not found yet then move in next direction
-        if (nextLoc != null && (footmanX != nextLoc.x || footmanY != nextLoc.y)) {
-            int xDiff = nextLoc.x - footmanX;
-            int yDiff = nextLoc.y - footmanY;
+        if (nextCell >= 0 && footmanCell != nextCell) {
+            int xDiff = nextCell % width - footmanX;
+            int yDiff = nextCell / width - footmanY;
             
             // figure out the direction the footman needs to move in
             Direction nextDirection = getNextDirection(xDiff, yDiff);
             
-            actions.put(footmanID, Action.createPrimitiveMove(footmanID, nextDirection));
-        } else {
-            Unit.UnitView townhallUnit = newstate.getUnit(townhallID);
-            
-            // if townhall was destroyed on the last turn
-            if (townhallUnit == null) {
-                terminalStep(newstate, statehistory);
-                return actions;
-            }
-            
-            if (Math.abs(footmanX - townhallUnit.getXPosition()) > 1 ||
-                Math.abs(footmanY - townhallUnit.getYPosition()) > 1) {
-                System.err.println("Invalid plan. Cannot attack townhall");
-                totalExecutionTime += System.nanoTime() - startTime - planTime;
-                
-                System.out.println(totalExecutionTime);
-                
-                return actions;
-            } else {
-                System.out.println("Attacking TownHall");
-                // if no more movements in the planned path then attack
-                actions.put(footmanID,
-                            Action.createPrimitiveAttack(footmanID, townhallID));
-            }
+            return Action.createPrimitiveMove(footman.id, nextDirection);
         }
         
-        totalExecutionTime += System.nanoTime() - startTime - planTime;
+        if (footman.noPath) {
+            return null;
+        }
         
-        return actions;
+        if (Math.abs(footmanX - townhallUnit.getXPosition()) > footman.range ||
+            Math.abs(footmanY - townhallUnit.getYPosition()) > footman.range) {
+            System.err.println("Invalid plan. Footman " + footman.id +
+                               " cannot attack townhall");
+            return null;
+        }
+        
+        if (verbose) {
+            System.out.println("Footman " + footman.id + " attacking TownHall");
+        }
+        // if no more movements in the planned path then attack
+        return Action.createPrimitiveAttack(footman.id, townhallID);
     }
     
     @Override
     public void terminalStep(State.StateView newstate, History.HistoryView statehistory) {
         System.out.println("Total turns: " + newstate.getTurnNumber());
         System.out.println("Total planning time: " + totalPlanTime / 1e9);
+        for (FootmanPlan footman : footmen.values()) {
+            String bound = "";
+            if (footman.planner instanceof AnytimePlanner) {
+                bound = ", bound " + ((AnytimePlanner) footman.planner).getBound();
+            }
+            String expanded = ", " + footman.expandedCount + " expanded";
+            if (footman.repairCount > 0) {
+                expanded += ", " + footman.repairCount + " detours";
+            }
+            if (footman.backgroundPlanCount > 0 || footman.contingencyCount > 0) {
+                expanded += ", " + footman.backgroundPlanCount + " in the background, " +
+                            footman.contingencyCount + " contingencies used";
+            }
+            if (compareUnidirectional && footman.planner instanceof BidirectionalAstar) {
+                expanded += " (" + footman.unidirectionalExpandedCount + " unidirectional)";
+            }
+            System.out.println("  footman " + footman.id + ": " + footman.planCount +
+                               " plans, " + footman.totalPlanTime / 1e9 + expanded +
+                               bound);
+        }
+        if (enemyPredictor != null) {
+            System.out.println("Enemy prediction: " + enemyPredictor.getHitCount() + " of " +
+                               enemyPredictor.getGuessCount() + " guesses right");
+        }
+        System.out.println("Path cache: " + pathCache.getHits() + " hits (" +
+                           pathCache.getSuffixHits() + " partial), " +
+                           pathCache.getMisses() + " misses, " +
+                           pathCache.getEvictions() + " evictions, " +
+                           pathCache.size() + " paths");
+        if (pruningStats != null) {
+            System.out.println("Pruning " + pruningStats);
+        }
         System.out.println("Total execution time: " + totalExecutionTime / 1e9);
         System.out.println("Total time: " + (totalExecutionTime + totalPlanTime) / 1e9);
+        savePlayerDataFile();
+        if (backgroundPlanner != null) {
+            // the searches still running finish, then the worker threads go away
+            backgroundPlanner.shutdown();
+            backgroundPlanner = null;
+        }
     }
     
+    /**
+     * Saves the landmark table and the path cache, so the next run on the same map
+     * doesn't have to build or plan them again.
+     *
+     * @param os
+     */
     @Override
     public void savePlayerData(OutputStream os) {
-    
+        try {
+            DataOutputStream out = new DataOutputStream(os);
+            out.writeBoolean(landmarkTable != null);
+            if (landmarkTable != null) {
+                landmarkTable.write(out);
+            }
+            pathCache.write(out);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Could not save the player data: " + e.getMessage());
+        }
     }
     
+    /**
+     * Loads the landmark table and the path cache saved by savePlayerData. They are
+     * only used if they were built for the map of the episode.
+     *
+     * @param is
+     */
     @Override
     public void loadPlayerData(InputStream is) {
+        try {
+            DataInputStream in = new DataInputStream(is);
+            landmarkTable = in.readBoolean() ? LandmarkTable.read(in) : null;
+            pathCache.read(in);
+        } catch (IOException e) {
+            System.err.println("Could not load the player data: " + e.getMessage());
+            landmarkTable = null;
+            pathCache = new PathCache();
+        }
+    }
+    
+    /**
+     * Loads the player data from the astar.dataFile file if it is set and exists, since
+     * the runners don't call loadPlayerData themselves.
+     */
+    private void loadPlayerDataFile() {
+        String dataFile = getSetting("astar.dataFile", "");
+        if (dataFile.isEmpty() || !new File(dataFile).isFile()) return;
+        try (InputStream is = new BufferedInputStream(new FileInputStream(dataFile))) {
+            loadPlayerData(is);
+        } catch (IOException e) {
+            System.err.println("Could not read " + dataFile + ": " + e.getMessage());
+        }
+    }
     
+    /**
+     * Saves the player data to the astar.dataFile file if it is set and anything new
+     * was planned. The data is written next to the file first and then moved over it,
+     * so a run that gets killed never leaves half a file behind.
+     */
+    private void savePlayerDataFile() {
+        String dataFile = getSetting("astar.dataFile", "");
+        if (dataFile.isEmpty() || (landmarkTable == savedLandmarkTable &&
+                                   pathCache.getPutCount() == savedPathPuts)) {
+            return;
+        }
+        File file = new File(dataFile);
+        File temporary = new File(dataFile + ".tmp");
+        try {
+            try (OutputStream os = new BufferedOutputStream(
+                    new FileOutputStream(temporary))) {
+                savePlayerData(os);
+            }
+            Files.move(temporary.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+            savedLandmarkTable = landmarkTable;
+            savedPathPuts = pathCache.getPutCount();
+        } catch (IOException e) {
+            System.err.println("Could not write " + dataFile + ": " + e.getMessage());
+        }
     }
     
     /**
-     * You will implement this method.
+     * Planning time of every footman so far, to see which units a turn's planning
+     * time goes to. The footmen are planned at the same time, so the times add up to
+     * more than the total planning time.
      *
-     * This method should return true when the path needs to be re-planned
-     * and false otherwise. This will be necessary on the dynamic map where the
-     * footman will move to block your unit.
+     * @return nanoseconds spent planning by footman unit ID
+     */
+    public Map<Integer, Long> getPlanTimes() {
+        Map<Integer, Long> planTimes = new LinkedHashMap<>();
+        for (FootmanPlan footman : footmen.values()) {
+            planTimes.put(footman.id, footman.totalPlanTime);
+        }
+        return planTimes;
+    }
+    
+    /**
+     * Puts every enemy unit other than the townhall on the map where it stands now,
+     * all in one batch, and has the enemy predictor guess where they go next.
      *
      * @param state
-     * @param currentPath
-     *
-     * @return
-     */
-    private boolean shouldReplanPath(State.StateView state,
-                                     Stack<MapLocation> currentPath) {
-        if (enemyFootmanID < 0) return false;
-        else {
-            Unit.UnitView enemyFootmanUnit = state.getUnit(enemyFootmanID);
-            MapLocation enemyLoc = new MapLocation(enemyFootmanUnit.getXPosition(),
-                                                   enemyFootmanUnit.getYPosition(), null,
-                                                   0);
-            if (currentPath.contains(enemyLoc)) {
-                gameMap.updateEnemyLocation(enemyLoc);
-                pathReplanCount = true;
-                return true;
-            }else {
-                return false;
+     */
+    private void trackEnemyUnits(State.StateView state) {
+        Map<Integer, MapLocation> unitLocations = new HashMap<>();
+        for (Integer unitID : state.getUnitIds(enemyPlayerNum)) {
+            if (unitID == townhallID) continue;
+            Unit.UnitView unit = state.getUnit(unitID);
+            unitLocations.put(unitID, new MapLocation(unit.getXPosition(),
+                                                      unit.getYPosition(), null, 0));
+        }
+        gameMap.updateUnitLocations(unitLocations);
+        if (enemyPredictor != null) {
+            enemyPredictor.observe(unitLocations, gameMap.getLengthX());
+            prediction = enemyPredictor.predict(gameMap);
+        }
+    }
+    
+    /**
+     * Tells you if the footman has to plan again because an enemy unit is on its
+     * path, going by astar.replan. Only the cells that changed since the path was last
+     * checked are looked at, through the footman's PathIndex, unless the map doesn't
+     * remember that far back. A sipp footman's path already goes around where the
+     * units were expected to be, so it only plans again when a unit is now expected
+     * on a step of the path at the turn the footman gets there.
+     *
+     * @param footman     the footman and its path
+     * @param footmanCell flat index of the footman's cell
+     *
+     * @return true if the path needs to be re-planned
+     */
+    private boolean shouldReplanPath(FootmanPlan footman, int footmanCell) {
+        int[] changed = gameMap.getChangedCells(footman.planVersion);
+        footman.planVersion = gameMap.getChangeCount();
+        if (footman.planner instanceof SafeIntervalPlanner) {
+            if (footman.nextCell >= 0 && footmanCell != footman.nextCell) {
+                // another footman was in the way, so the move is tried again and the
+                // rest of the path is a turn late
+                return (prediction != null && prediction.isOccupied(footman.nextCell, 1)) ||
+                       conflictsWithPrediction(footman.path, 2);
             }
+            return conflictsWithPrediction(footman.path, 1);
+        }
+        if (replanPolicy.equals("lookahead")) {
+            // an enemy further along may well have moved on by the time the footman
+            // gets there, so it is only planned around once it is close
+            return blockedStep(footman, replanLookahead) >= 0;
+        }
+        int blocked = -1;
+        if (changed == null) {
+            blocked = blockedStep(footman, Integer.MAX_VALUE);
+        } else {
+            for (int cell : changed) {
+                if (!gameMap.isBlocked(cell)) continue;
+                int steps = cell == footman.nextCell ? 0 :
+                            footman.pathIndex.stepsTo(footman.path, cell);
+                if (steps >= 0 && (blocked < 0 || steps < blocked)) blocked = steps;
+            }
+        }
+        if (blocked < 0) {
+            return false;
+        }
+        if (replanPolicy.equals("cost")) {
+            long startTime = System.nanoTime();
+            boolean repaired = repairPath(footman, blocked, footmanCell);
+            long time = System.nanoTime() - startTime;
+            footman.totalPlanTime += time;
+            repairTime += time;
+            return !repaired;
+        }
+        return true;
+    }
+    
+    /**
+     * Tells you if an enemy unit is expected on a step of the path at the turn the
+     * footman gets there, by the same rule the SafeIntervalPlanner planned with: past
+     * the moves the prediction is confident of, a unit may have stopped on any cell it
+     * got to.
+     *
+     * @param path  the path, from the footman's next move on
+     * @param delay turns from now the footman gets to the first step
+     *
+     * @return true if one of the steps is taken by then
+     */
+    private boolean conflictsWithPrediction(GridPath path, int delay) {
+        if (prediction == null) {
+            return false;
+        }
+        for (int i = 0; i < path.size(); i++) {
+            if (prediction.isOccupied(path.get(i), i + delay)) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Finds the first blocked step among the next ones of the footman's path.
+     *
+     * @param footman the footman and its path
+     * @param steps   how many steps after the one it is moving to are looked at
+     *
+     * @return 0 for the cell the footman is moving to, 1 for the next step of the path
+     * and so on, or -1 if none of them is blocked
+     */
+    private int blockedStep(FootmanPlan footman, int steps) {
+        if (footman.nextCell >= 0 && gameMap.isBlocked(footman.nextCell)) {
+            return 0;
+        }
+        GridPath path = footman.path;
+        for (int i = 1; i <= Math.min(steps, path.size()); i++) {
+            if (gameMap.isBlocked(path.get(i - 1))) return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * Goes around the blocked steps of the footman's path that start the given number
+     * of steps ahead, if the detour is at most replanThreshold moves longer than the
+     * steps it replaces.
+     *
+     * @param footman     the footman and its path
+     * @param blocked     the first blocked step, as blockedStep numbers them
+     * @param footmanCell flat index of the footman's cell
+     *
+     * @return true if the path goes around them now, false if it has to be planned
+     * again
+     */
+    private boolean repairPath(FootmanPlan footman, int blocked, int footmanCell) {
+        // the footman is already on its way into the blocked cell, or a detour would
+        // break the turns a cooperative or sipp footman planned around
+        if (blocked == 0 || footman.planner instanceof CooperativePlanner ||
+            footman.planner instanceof SafeIntervalPlanner) {
+            return false;
+        }
+        GridPath path = footman.path;
+        int size = path.size();
+        // the first free step after the blocked ones, where the detour comes back
+        int rejoin = blocked + 1;
+        while (rejoin <= size && gameMap.isBlocked(path.get(rejoin - 1))) {
+            rejoin++;
+        }
+        if (rejoin > size) {
+            // the end of the path is blocked, which may have moved the goal cells too
+            return false;
+        }
+        int width = gameMap.getLengthX();
+        // a path just taken from the background planner may not start where it was
+        // planned from, so the first step is taken from where the footman stands
+        int from = blocked > 1 ? path.get(blocked - 2) :
+                   footman.nextCell >= 0 ? footman.nextCell : footmanCell;
+        GridPath detour = pathRepair.detour(gameMap, from, path.get(rejoin - 1),
+                                            rejoin - blocked + 1 + replanThreshold);
+        if (detour == null) {
+            return false;
         }
         
+        // swap the steps up to where the detour comes back for the detour, the
+        // detour ends on that step
+        footman.path = path.splice(blocked - 1, rejoin, detour);
+        footman.pathIndex.index(footman.path, width, gameMap.getLengthY());
+        footman.repairCount++;
+        return true;
     }
     
     /**
-     * This method is implemented for you. You should look at it to see examples of
-     * how to find units and resources in Sepia.
+     * Plans the given footmen against one snapshot of the map. Each footman has its
+     * own planner, so when there is more than one they are searched in parallel on
+     * the common ForkJoinPool. Cooperative footmen are planned one after the other,
+     * since each one has to see what the ones before it reserved. Footmen that plan in
+     * the background only get their search started, from the cell they move to this
+     * turn, and middleStep takes the path once it is done.
      *
-     * @param state
+     * The snapshot is released once every search on it is done, so when none is
+     * running by the time the enemy moves the map is changed in place.
      *
-     * @return
+     * @param state
+     * @param toPlan footmen that need a new path
      */
-    private Stack<MapLocation> findPath(State.StateView state) {
+    private void findPaths(State.StateView state, List<FootmanPlan> toPlan) {
         Unit.UnitView townhallUnit = state.getUnit(townhallID);
-        Unit.UnitView footmanUnit = state.getUnit(footmanID);
+        MapLocation goalLoc = new MapLocation(townhallUnit.getXPosition(),
+                                              townhallUnit.getYPosition(), null, 0);
+        GameMap.Snapshot snapshot = gameMap.acquireSnapshot();
+        long mapFingerprint = gameMap.getFingerprint();
+        pathCache.setMapVersion(gameMap.getChangeCount());
         
-        MapLocation startLoc = new MapLocation(footmanUnit.getXPosition(),
+        int width = snapshot.getLengthX();
+        List<FootmanPlan> planNow = new ArrayList<>();
+        for (FootmanPlan footman : toPlan) {
+            Unit.UnitView footmanUnit = state.getUnit(footman.id);
+            footman.location = new MapLocation(footmanUnit.getXPosition(),
                                                footmanUnit.getYPosition(), null, 0);
-        if (!pathReplanCount) startLoc1 = startLoc;
+            footman.planTurn = state.getTurnNumber();
+            footman.planVersion = gameMap.getChangeCount();
+            footman.range = Math.max(1, footmanUnit.getTemplateView().getRange());
+            if (!footman.replanned) footman.startLoc = footman.location;
+            // planners register as map listeners, so create them on this thread
+            if (footman.planner == null) {
+                footman.planner = createPlanner(footman);
+            }
+            if (footman.planner instanceof SafeIntervalPlanner) {
+                ((SafeIntervalPlanner) footman.planner).setPrediction(prediction);
+            }
+            if (plansInBackground(footman)) {
+                int start = movingTo(footman, footman.location.y * width +
+                                              footman.location.x);
+                footman.location = new MapLocation(start % width, start / width, null, 0);
+                footman.pending = backgroundPlanner.plan(
+                        start, () -> AstarSearch(footman, snapshot, mapFingerprint, goalLoc));
+                gameMap.acquireSnapshot();
+                footman.pending.whenDone(snapshot::release);
+            } else {
+                planNow.add(footman);
+            }
+        }
+        
+        if (planNow.size() <= 1 || reservations != null) {
+            for (FootmanPlan footman : planNow) {
+                findPath(footman, snapshot, mapFingerprint, goalLoc);
+            }
+        } else {
+            planNow.parallelStream()
+                   .forEach(footman -> findPath(footman, snapshot, mapFingerprint, goalLoc));
+        }
+        snapshot.release();
+    }
+    
+    /**
+     * Plans one footman and records how long that took.
+     */
+    private void findPath(FootmanPlan footman, GameMap.Snapshot snapshot,
+                          long mapFingerprint, MapLocation goalLoc) {
+        long startTime = System.nanoTime();
+        setPath(footman, AstarSearch(footman, snapshot, mapFingerprint, goalLoc));
+        footman.lastPlanTime = System.nanoTime() - startTime;
+        footman.totalPlanTime += footman.lastPlanTime;
+        footman.planCount++;
+    }
+    
+    /**
+     * Gives the footman a new path to follow from its next move on.
+     *
+     * @param footman the footman
+     * @param path    the path, or null if there is no way to the townhall
+     */
+    private void setPath(FootmanPlan footman, GridPath path) {
+        footman.path = path != null ? path : GridPath.empty(gameMap.getLengthX());
+        if (path == null && !footman.noPath) {
+            System.out.println("No path for footman " + footman.id +
+                               ", waiting for the map to change");
+        }
+        footman.noPath = path == null;
+        footman.pathIndex.index(footman.path, gameMap.getLengthX(), gameMap.getLengthY());
+        footman.nextCell = -1;
+        // they were planned around the old path
+        footman.contingencies.clear();
+        footman.contingencyVersion = -1;
+    }
+    
+    /**
+     * @return true if the footman's plans are searched by the background planner: the
+     * footman has a path to walk in the meantime, and its planner shares nothing with
+     * the live map or the other footmen, since those change while the search runs. A
+     * sipp path is timed from the turn it was planned on, so it isn't one of them.
+     */
+    private boolean plansInBackground(FootmanPlan footman) {
+        return backgroundPlanner != null && footman.planCount > 0 &&
+               !(footman.planner instanceof GameMap.ChangeListener) &&
+               !(footman.planner instanceof CooperativePlanner) &&
+               !(footman.planner instanceof SafeIntervalPlanner) && distanceField == null;
+    }
+    
+    /**
+     * Tells you where the footman will be after this turn's move, the cell its
+     * background plans start from.
+     *
+     * @param footman     the footman and its path
+     * @param footmanCell flat index of the footman's cell
+     *
+     * @return the cell nextAction moves it to, or its own cell if it stays
+     */
+    private int movingTo(FootmanPlan footman, int footmanCell) {
+        int next = footman.nextCell;
+        if ((next < 0 || next == footmanCell) && !footman.path.isEmpty()) {
+            next = footman.path.get(0);
+        }
+        return next >= 0 && !gameMap.isBlocked(next) ? next : footmanCell;
+    }
+    
+    /**
+     * Takes the path a background plan found, from where the footman is now.
+     *
+     * @param footman     the footman
+     * @param job         its finished plan
+     * @param footmanCell flat index of the footman's cell
+     *
+     * @return false if the path doesn't fit where the footman went meanwhile
+     */
+    private boolean adoptPath(FootmanPlan footman, BackgroundPlanner.Job job,
+                              int footmanCell) {
+        GridPath path = job.getPath();
+        if (path != null) {
+            path = fromCell(path, job.getStart(), footmanCell);
+            if (path == null) return false;
+        }
+        setPath(footman, path);
+        footman.lastPlanTime = job.getPlanTime();
+        footman.totalPlanTime += footman.lastPlanTime;
+        footman.planCount++;
+        footman.backgroundPlanCount++;
+        return true;
+    }
+    
+    /**
+     * Takes a contingency plan of the footman if an enemy unit did step onto the cell
+     * it went around. The map may have changed elsewhere too, so the plan is only used
+     * if none of its cells is blocked now.
+     *
+     * @param footman     the footman, whose path is blocked
+     * @param footmanCell flat index of the footman's cell
+     *
+     * @return true if the footman follows a contingency plan now
+     */
+    private boolean useContingency(FootmanPlan footman, int footmanCell) {
+        for (BackgroundPlanner.Job job : footman.contingencies) {
+            if (!job.isDone() || !gameMap.isBlocked(job.getBlockedCell())) continue;
+            GridPath path = job.getPath();
+            if (path == null || !isFree(path)) continue;
+            path = fromCell(path, job.getStart(), footmanCell);
+            if (path == null) continue;
+            setPath(footman, path);
+            footman.planVersion = gameMap.getChangeCount();
+            footman.totalPlanTime += job.getPlanTime();
+            footman.contingencyCount++;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Starts contingency plans for the footmen an enemy unit is next to the path of.
+     * The unit may step onto that cell of the path on its next move, so the plan goes
+     * around the cell, from where the footman will be by then. The plans are searched
+     * once per version of the map, and thrown away when it changes again.
+     *
+     * @param state
+     */
+    private void speculate(State.StateView state) {
+        long version = gameMap.getChangeCount();
+        int[] units = gameMap.getUnitCells();
+        if (units.length == 0 || contingencyLimit <= 0) {
+            return;
+        }
+        int width = gameMap.getLengthX();
+        Unit.UnitView townhallUnit = state.getUnit(townhallID);
         MapLocation goalLoc = new MapLocation(townhallUnit.getXPosition(),
                                               townhallUnit.getYPosition(), null, 0);
-        
-        return AstarSearch(startLoc, goalLoc);
+        GameMap.Snapshot snapshot = gameMap.acquireSnapshot();
+        for (FootmanPlan footman : footmen.values()) {
+            Unit.UnitView footmanUnit = state.getUnit(footman.id);
+            if (footmanUnit == null || footman.pending != null || footman.noPath ||
+                footman.contingencyVersion == version || !plansInBackground(footman)) {
+                continue;
+            }
+            footman.contingencies.clear();
+            footman.contingencyVersion = version;
+            int footmanCell = footmanUnit.getYPosition() * width + footmanUnit.getXPosition();
+            int next = movingTo(footman, footmanCell);
+            int[] goalCells = null;
+            int goalCount = 0;
+            // the cell it moves to now, then the next steps of the path
+            int steps = Math.min(replanLookahead, footman.path.size());
+            for (int step = -1; step < steps; step++) {
+                if (footman.contingencies.size() == contingencyLimit) break;
+                int cell = step < 0 ? footman.nextCell : footman.path.get(step);
+                if (cell < 0 || cell == footmanCell || gameMap.isBlocked(cell) ||
+                    !nextToAny(cell, units, width)) {
+                    continue;
+                }
+                if (goalCells == null) {
+                    goalCount = findTargetCells(footman, snapshot, goalLoc);
+                    goalCells = Arrays.copyOf(footman.goalCells, goalCount);
+                }
+                // a unit that gets into the cell first keeps the footman where it is
+                int start = cell == next ? footmanCell : next;
+                BackgroundPlanner.Job job = backgroundPlanner.speculate(
+                        snapshot, start, cell, goalCells, goalCount, goalLoc.x, goalLoc.y);
+                gameMap.acquireSnapshot();
+                job.whenDone(snapshot::release);
+                footman.contingencies.add(job);
+            }
+        }
+        snapshot.release();
+    }
+    
+    /**
+     * @return true if one of the unit cells is a move away from the cell
+     */
+    private static boolean nextToAny(int cell, int[] units, int width) {
+        for (int unit : units) {
+            if (Math.abs(unit % width - cell % width) <= 1 &&
+                Math.abs(unit / width - cell / width) <= 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @return true if none of the cells of the path is blocked on the map as it is now
+     */
+    private boolean isFree(GridPath path) {
+        for (int i = 0; i < path.size(); i++) {
+            if (gameMap.isBlocked(path.get(i))) return false;
+        }
+        return true;
     }
     
     /**
-     * This is the method for the AStar Algorithm
+     * Fits a path planned from one cell to a footman that may have moved on since:
+     * the whole path if it is still on the start cell, the rest of it if it already
+     * got onto the path, or the start cell and then the path if it is next to it.
      *
-     * @param start Starting position of the footman
-     * @param goal  MapLocation of the townhall
+     * @param path  the path, first move first
+     * @param start flat index of the cell the path was planned from
+     * @param cell  flat index of the footman's cell
+     *
+     * @return the path from the footman's cell, or null if it fits none of those
+     */
+    private GridPath fromCell(GridPath path, int start, int cell) {
+        if (cell == start) {
+            return path;
+        }
+        for (int i = 0; i < path.size(); i++) {
+            if (path.get(i) == cell) return path.suffix(i + 1);
+        }
+        int width = gameMap.getLengthX();
+        if (Math.abs(start % width - cell % width) <= 1 &&
+            Math.abs(start / width - cell / width) <= 1 && !gameMap.isBlocked(start)) {
+            return path.splice(0, 0, new GridPath(new int[]{start}, 1, width));
+        }
+        return null;
+    }
+    
+    /**
+     * Puts the cells the footman can attack the townhall from in footman.goalCells:
+     * every free cell no further than its attack range from the townhall.
      *
-     * @return Stack of positions with top of stack being first move in plan
+     * @param footman  the footman, with its range
+     * @param snapshot the map to plan on
+     * @param goal     MapLocation of the townhall
      *
-     * @author Alexander Telich
+     * @return number of goal cells
      */
-    private Stack<MapLocation> AstarSearch(MapLocation start, MapLocation goal) {
-        MapLocation goal1 = new MapLocation(goal.x - 1, goal.y, null, (float) 0.0);
-        MapLocation goal2 = new MapLocation(goal.x - 1, goal.y - 1, null, (float) 0.0);
-        Stack<MapLocation> path = new Stack<>();
-        AstarNode startNode = new AstarNode(start.x, start.y, gameMap);
-        AstarNode[] neighbors;
-        HashMap<AstarNode, AstarNode> cameFrom = new HashMap<>();
-        HashMap<AstarNode, Double> gValue = new HashMap<>();
-        HashMap<AstarNode, Double> fValue = new HashMap<>();
-        Set<AstarNode> closedList = new HashSet<>();
-        PriorityQueue<AstarNode> openList = new PriorityQueue<>(
-                new Comparator<AstarNode>() {
-                    @Override
-                    public int compare(AstarNode o1, AstarNode o2) {
-                        return Double.compare(fValue.get(o1), fValue.get(o2));
-                    }
-                });
-        int goalQuadrant = new Quadrant().getQuadrant(goal.x, goal.y);
-        
-        
-        gValue.put(startNode, 0.0);
-        fValue.put(startNode, startNode.getHeuristic(goal));
-        openList.offer(startNode);
-        
-        int quadrantArea1 = new Quadrant().getQuadrantArea(goal.x, goal.y);
-        boolean quadrantViolated = false;
-        
-        while (!openList.isEmpty()) {
-            AstarNode current = openList.poll();
-            
-            if (current.getMapLocation().equals(goal1) || current.getMapLocation()
-                                                                 .equals(goal2)) {
-                while (!current.equals(startNode)) {
-                    path.push(current.getMapLocation());
-                    current = cameFrom.get(current);
+    private int findTargetCells(FootmanPlan footman, GridView snapshot, MapLocation goal) {
+        int range = footman.range;
+        int side = 2 * range + 1;
+        if (footman.goalCells.length < side * side - 1) {
+            footman.goalCells = new int[side * side - 1];
+        }
+        int width = snapshot.getLengthX();
+        int goalCount = 0;
+        for (int y = Math.max(0, goal.y - range);
+             y <= Math.min(snapshot.getLengthY() - 1, goal.y + range); y++) {
+            for (int x = Math.max(0, goal.x - range);
+                 x <= Math.min(width - 1, goal.x + range); x++) {
+                if (!snapshot.isBlocked(x, y)) {
+                    footman.goalCells[goalCount++] = y * width + x;
                 }
-                return path;
             }
-            
-            closedList.add(current);
-            
-            if (closedList.size() == quadrantArea1) {
-                quadrantViolated = true;
+        }
+        return goalCount;
+    }
+    
+    /**
+     * This is the method for the AStar Algorithm. The search itself is run by the
+     * footman's planner, which reuses its scratch arrays between calls. A path
+     * already in the path cache isn't searched for again.
+     *
+     * @param footman        the footman to plan for, at footman.location
+     * @param snapshot       the map to plan on
+     * @param mapFingerprint fingerprint of the map, to look the path up with
+     * @param goal           MapLocation of the townhall
+     *
+     * @return the path, first move first, or null if there is none
+     *
+     * @author Alexander Telich
+     */
+    private GridPath AstarSearch(FootmanPlan footman, GameMap.Snapshot snapshot,
+                                           long mapFingerprint, MapLocation goal) {
+        MapLocation start = footman.location;
+        int width = snapshot.getLengthX();
+        int goalCount = findTargetCells(footman, snapshot, goal);
+        int[] goalCells = footman.goalCells;
+        if (footman.planner instanceof CooperativePlanner) {
+            ((CooperativePlanner) footman.planner).setUnit(footman.id, footman.planTurn);
+        }
+        
+        // the footman is walled off from every cell it could attack from, by the trees
+        // or by the enemy standing in the way, though a sipp footman may get through
+        // once the enemy moved on
+        boolean timed = footman.planner instanceof SafeIntervalPlanner;
+        int startCell = start.y * width + start.x;
+        if (!timed && !snapshot.mayReach(startCell, goalCells, goalCount)) {
+            return null;
+        }
+        
+        // cooperative and sipp paths depend on the other footmen's reservations or on
+        // where the enemy goes, so they can't be reused, and an anytime footman that is
+        // still improving its path has to search
+        boolean cacheable = usePathCache && !timed &&
+                            !(footman.planner instanceof CooperativePlanner);
+        if (cacheable && !isImproving(footman)) {
+            GridPath cached = pathCache.get(mapFingerprint, width, startCell, goalCells,
+                                            goalCount);
+            if (cached != null) {
+                return cached;
             }
-            
-            if (!cachedNeighbors.isEmpty() && cachedNeighbors.containsKey(current)) {
-                neighbors = cachedNeighbors.get(current);
-                
-            } else {
-                neighbors = current.getNeighbors();
-                cachedNeighbors.putIfAbsent(current, neighbors);
+        }
+        
+        if (footman.landmarks != null) {
+            footman.landmarks.setGoals(goalCells, goalCount);
+        }
+        if (distanceField != null) {
+            // the first footman to get here repairs the field, the others wait for it
+            distanceField.update(snapshot, goalCells, goalCount);
+        }
+        SearchPruning pruning = footman.pruning;
+        if (pruning instanceof QuadrantPruning) {
+            // the quadrants are measured from where the footman first stood, so they
+            // only fit its first plan
+            ((QuadrantPruning) pruning).setOrigin(footman.startLoc.x, footman.startLoc.y);
+            if (footman.replanned) pruning = null;
+        }
+        footman.searchEngine.setPruning(pruning);
+        GridPath path = footman.planner.search(snapshot, start.x, start.y, goalCells,
+                                               goalCount, goal.x, goal.y);
+        footman.expandedCount += footman.planner.getExpandedCount();
+        if (pruningStats != null && pruning != null &&
+            footman.planner == footman.searchEngine) {
+            measurePruning(footman.searchEngine, snapshot, start, goalCells, goalCount,
+                           goal, path);
+        }
+        if (compareUnidirectional && footman.planner instanceof BidirectionalAstar) {
+            // the same search with the A* engine, for the expansions terminalStep prints
+            footman.searchEngine.setPruning(null);
+            footman.searchEngine.search(snapshot, start.x, start.y, goalCells, goalCount,
+                                        goal.x, goal.y);
+            footman.unidirectionalExpandedCount += footman.searchEngine.getExpandedCount();
+        }
+        // only final paths go in, the first ones of an anytime search may be long
+        if (cacheable && path != null && !isImproving(footman)) {
+            pathCache.put(mapFingerprint, width, startCell, goalCells, goalCount, path);
+        }
+        return path;
+    }
+    
+    /**
+     * Runs the search the engine just did again without pruning and adds both to
+     * pruningStats.
+     *
+     * @param engine the A* engine, with the pruning of the search it just did
+     * @param path   the path it found
+     */
+    private void measurePruning(GridAstar engine, GridView snapshot, MapLocation start,
+                                int[] goalCells, int goalCount, MapLocation goal,
+                                GridPath path) {
+        int expanded = engine.getExpandedCount();
+        boolean fellBack = engine.didFallBack();
+        engine.setPruning(null);
+        GridPath baseline = engine.search(snapshot, start.x, start.y, goalCells, goalCount,
+                                          goal.x, goal.y);
+        pruningStats.record(expanded, path == null ? -1 : path.size(), fellBack,
+                            engine.getExpandedCount(),
+                            baseline == null ? -1 : baseline.size());
+    }
+    
+    /**
+     * @return true if the footman's planner is an anytime one that can still shorten
+     * its path
+     */
+    private boolean isImproving(FootmanPlan footman) {
+        return footman.planner instanceof AnytimePlanner &&
+               ((AnytimePlanner) footman.planner).isImproving();
+    }
+    
+    /**
+     * Builds the planner named by the astar.planner setting: astar (the default) for
+     * GridAstar, jps for Jump Point Search, jpsplus for JPS with precomputed jump
+     * distances, dstar for incremental replanning with D* Lite, hpa for hierarchical
+     * planning over clusters of astar.clusterSize cells (paths can be a few moves
+     * longer than the shortest ones, more so for small clusters), whca for cooperative
+     * planning that keeps the footmen from colliding over the next astar.window turns,
+     * flowfield to walk down a distance field shared by all the footmen, bidirectional
+     * to search from the footman and from the townhall until they meet, ara for
+     * anytime planning that starts at weight astar.weight and lowers it by
+     * astar.weightStep within astar.budget nanoseconds a turn, weighted for plain
+     * weighted A* at astar.weight, or sipp for safe interval planning around where the
+     * enemy units are expected over the next astar.predictHorizon turns, trusting them
+     * to walk on for astar.predictConfidence moves before they may stop anywhere.
+     *
+     * The A* engine estimates with the Chebyshev distance unless astar.heuristic is
+     * distance (that same field, exact) or alt (landmark bounds from astar.landmarks
+     * landmarks).
+     *
+     * @param footman the footman the planner is for, gets its searchEngine set
+     *
+     * @return the planner AstarSearch should use
+     */
+    private PathPlanner createPlanner(FootmanPlan footman) {
+        int width = gameMap.getLengthX();
+        int height = gameMap.getLengthY();
+        
+        // the bucket queue only works because every step costs a whole number
+        OpenList openList = getSetting("astar.openList", "heap").equals("bucket")
+                            ? new BucketQueue() : new IndexedMinHeap();
+        footman.searchEngine = new GridAstar(width, height, openList);
+        footman.pruning = createPruning();
+        
+        String plannerName = getSetting("astar.planner", "astar");
+        if (plannerName.equals("flowfield") ||
+            getSetting("astar.heuristic", "chebyshev").equals("distance")) {
+            footman.searchEngine.setHeuristic(sharedDistanceField());
+        } else if (getSetting("astar.heuristic", "chebyshev").equals("alt")) {
+            if (landmarkTable == null) {
+                int landmarkCount = Integer.parseInt(getSetting("astar.landmarks", "8"));
+                landmarkTable = LandmarkTable.build(gameMap, landmarkCount);
             }
-            
-            for (AstarNode neighbor : neighbors) {
-                if (closedList.contains(neighbor)) continue;
-                if (neighbor == null) continue;
-                
-                int neighborQuadrant = new Quadrant().getQuadrant(neighbor.getX(),
-                                                                      neighbor.getY());
-                
-                if (!quadrantViolated && !pathReplanCount && neighborQuadrant
-                                                             != goalQuadrant) {
-                    continue;
-                }
-                
-                Double tentativeG = gValue.get(current) + current.getTraverseCost();
-                Double neighborHeuristic;
-                
-                if (!openList.contains(neighbor) ||
-                    tentativeG < gValue.get(current)) {
-                    
-                    if (neighbor.getCachedHeuristic() != null) {
-                        neighborHeuristic = neighbor.getCachedHeuristic();
-                    } else {
-                        neighborHeuristic = neighbor.getHeuristic(goal);
-                        neighbor.setCachedHeuristic(neighborHeuristic);
-                    }
-                    
-                    gValue.put(neighbor, tentativeG);
-                    fValue.put(neighbor, tentativeG + neighborHeuristic);
-                    
-                    if (openList.contains(neighbor)) {
-                        openList.remove(neighbor);
-                    }
-                    
-                    openList.offer(neighbor);
-                    cameFrom.put(neighbor, current);
-                }
+            footman.landmarks = new LandmarkHeuristic(landmarkTable, width);
+            footman.searchEngine.setHeuristic(footman.landmarks);
+        }
+        
+        if (plannerName.equals("flowfield")) {
+            return sharedDistanceField();
+        } else if (plannerName.equals("jps")) {
+            return new JumpPointSearch(width, height, false);
+        } else if (plannerName.equals("jpsplus")) {
+            // repairs its jump distances around the cells the map changes
+            JumpPointSearch jumpPointSearch = new JumpPointSearch(width, height, true);
+            gameMap.addChangeListener(jumpPointSearch);
+            return jumpPointSearch;
+        } else if (plannerName.equals("hpa")) {
+            int clusterSize = Integer.parseInt(getSetting("astar.clusterSize", "16"));
+            HierarchicalPlanner hierarchicalPlanner =
+                    new HierarchicalPlanner(width, height, clusterSize);
+            gameMap.addChangeListener(hierarchicalPlanner);
+            return hierarchicalPlanner;
+        } else if (plannerName.equals("dstar")) {
+            // keeps its search tree between plans and repairs the cells the map changes
+            DStarLite dStarLite = new DStarLite(width, height);
+            gameMap.addChangeListener(dStarLite);
+            return dStarLite;
+        } else if (plannerName.equals("whca")) {
+            if (reservations == null) {
+                int window = Integer.parseInt(getSetting("astar.window", "16"));
+                reservations = new ReservationTable(window);
             }
+            return new CooperativePlanner(width, height, reservations,
+                                          sharedDistanceField());
+        } else if (plannerName.equals("bidirectional")) {
+            return new BidirectionalAstar(width, height);
+        } else if (plannerName.equals("ara") || plannerName.equals("weighted")) {
+            double weight = Double.parseDouble(getSetting("astar.weight", "3"));
+            double weightStep = 0;
+            if (plannerName.equals("ara")) {
+                weightStep = Double.parseDouble(getSetting("astar.weightStep", "0.5"));
+            }
+            AnytimePlanner anytimePlanner =
+                    new AnytimePlanner(width, height, weight, weightStep);
+            String budget = getSetting("astar.budget", "1000000");
+            anytimePlanner.setBudget(Long.parseLong(budget));
+            return anytimePlanner;
+        } else if (plannerName.equals("sipp")) {
+            return new SafeIntervalPlanner(width, height);
+        } else if (!plannerName.equals("astar")) {
+            System.err.println("Unknown planner " + plannerName + ", using astar");
+        }
+        return footman.searchEngine;
+    }
+    
+    /**
+     * @return the distance field all the footmen share, made and registered with the
+     * map the first time it is asked for
+     */
+    private DistanceField sharedDistanceField() {
+        if (distanceField == null) {
+            distanceField = new DistanceField(gameMap.getLengthX(), gameMap.getLengthY());
+            gameMap.addChangeListener(distanceField);
+        }
+        return distanceField;
+    }
+    
+    /**
+     * Builds the pruning the A* engine uses, named by the astar.pruning setting:
+     * quadrant (the default) for the pruning of the original AstarSearch, box to stay
+     * within astar.pruningMargin cells of the box around the footman and the townhall,
+     * deadend to stay out of dead ends, or none.
+     *
+     * @return the pruning, or null for none
+     */
+    private SearchPruning createPruning() {
+        String pruningName = getSetting("astar.pruning", "quadrant");
+        if (pruningName.equals("quadrant")) {
+            return new QuadrantPruning();
+        } else if (pruningName.equals("box")) {
+            int margin = Integer.parseInt(getSetting("astar.pruningMargin", "4"));
+            return new BoundingBoxPruning(margin);
+        } else if (pruningName.equals("deadend")) {
+            if (deadEnds == null) {
+                deadEnds = DeadEndPruning.build(gameMap);
+            }
+            return deadEnds;
+        } else if (!pruningName.equals("none")) {
+            System.err.println("Unknown pruning " + pruningName + ", using none");
         }
         return null;
     }
     
+    /**
+     * Reads a setting from the runner configuration (a Parameter in the config xml),
+     * falling back to a system property of the same name and then to the default.
+     *
+     * @param key          name of the setting, e.g. astar.openList
+     * @param defaultValue value to use when the setting is not given
+     *
+     * @return the value of the setting
+     */
+    private String getSetting(String key, String defaultValue) {
+        if (configuration != null && configuration.containsKey(key)) {
+            return configuration.getString(key, defaultValue);
+        }
+        return System.getProperty(key, defaultValue);
+    }
+    
     /**
      * Primitive actions take a direction (e.g. NORTH, NORTHEAST, etc)
      * This converts the difference between the current position and the
@@ -408,6 +1278,65 @@ public class AstarAgent extends Agent {
         return null;
     }
     
+    /**
+     * Everything the agent keeps for one of its footmen: the path it is following, the
+     * cell it is moving to and its own planner, so footmen can be planned at the same
+     * time without sharing scratch arrays.
+     */
+    static class FootmanPlan {
+        final int id;
+        GridPath path = GridPath.empty(0);
+        // flat index of the cell the footman is moving to, -1 before its first move
+        int nextCell = -1;
+        // where the footman is when it gets planned
+        MapLocation location;
+        // where the footman stood for its first plan, the origin of quadrant pruning
+        MapLocation startLoc;
+        boolean replanned;
+        GridAstar searchEngine;
+        PathPlanner planner;
+        // set when the search engine uses landmark bounds
+        LandmarkHeuristic landmarks;
+        // neighbors the search engine skips, null for none
+        SearchPruning pruning;
+        // turn the footman was last planned at
+        int planTurn;
+        // cells of the rest of the path
+        final PathIndex pathIndex = new PathIndex();
+        // times the path went around an enemy instead of being planned again
+        int repairCount;
+        // the plan being searched in the background, null if there is none
+        BackgroundPlanner.Job pending;
+        // plans searched with one more cell of the path blocked, for when an enemy
+        // unit steps onto it, and the map version they were searched on
+        final List<BackgroundPlanner.Job> contingencies = new ArrayList<>();
+        long contingencyVersion = -1;
+        // plans that were searched in the background, and contingency plans taken
+        int backgroundPlanCount;
+        int contingencyCount;
+        // attack range of the footman, the goal cells are the free cells this close
+        // to the townhall
+        int range = 1;
+        int[] goalCells = new int[8];
+        // set when the last plan found no way to the townhall, the footman then waits
+        // for the map to change
+        boolean noPath;
+        // GameMap.getChangeCount the footman was last planned on, or its path last
+        // checked against
+        long planVersion;
+        long lastPlanTime; // nsecs
+        long totalPlanTime; // nsecs
+        int planCount;
+        // cells the planner expanded over all plans, and the A* engine on the same
+        // searches when astar.compareUnidirectional is set
+        long expandedCount;
+        long unidirectionalExpandedCount;
+        
+        FootmanPlan(int id) {
+            this.id = id;
+        }
+    }
+    
     static class MapLocation {
         public int x, y;
         
@@ -433,38 +1362,4 @@ public class AstarAgent extends Agent {
             }
         }
     }
-    
-    /**
-     * Helper class for getting the quadrant area and and quadrants.
-     */
-    class Quadrant {
-        private int getQuadrant(int x, int y) {
-            int nodeX = x;
-            int nodeY = y;
-            
-            final int startX = startLoc1.x;
-            final int startY = startLoc1.y;
-            
-            int cX = nodeX - startX;
-            int cY = nodeY - startY;
-            
-            int nodeQuadrant = 0;
-            
-            if (cX >= 0 && cY < 0) nodeQuadrant = 1;
-            else if (cX > 0 && cY >= 0) nodeQuadrant = 2;
-            else if (cX <= 0 && cY > 0) nodeQuadrant = 3;
-            else if (cX > 0 && cY <= 0) nodeQuadrant = 4;
-            
-            return nodeQuadrant;
-        }
-        
-        private int getQuadrantArea(int x, int y) {
-            int width = Math.abs(x - startLoc1.x);
-            int height = Math.abs(y - startLoc1.y);
-            
-            int area = width * height;
-            return area;
-        }
-        
-    }
 }
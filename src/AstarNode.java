@@ -8,8 +8,6 @@ public class AstarNode {
     // x and y coordinates of the node
     private final int x, y;
     private final AstarAgent.MapLocation mapLocation;
-    // 2D array for the map
-    private int[][] generatedMap;
     // The GameMap object
     private GameMap gameMap;
     // Stores the heuristic for the node if necessary
@@ -31,7 +29,6 @@ public class AstarNode {
         this.mapLocation = new AstarAgent.MapLocation(x, y, null, 0);
         this.x = x;
         this.y = y;
-        this.generatedMap = gameMap.getGeneratedMap();
         this.gameMap = gameMap;
     }
     
@@ -86,7 +83,7 @@ public class AstarNode {
                 continue;
             }
             // if neighbor coordinates in bounds, check if it is open
-            if (generatedMap[neighborCoords[i][0]][neighborCoords[i][1]] == 0) {
+            if (!gameMap.isBlocked(neighborCoords[i][0], neighborCoords[i][1])) {
                 neighbors[i] = new AstarNode(neighborCoords[i][0],neighborCoords[i][1],gameMap);
             }
         }
@@ -184,5 +181,13 @@ public class AstarNode {
         }
     }
     
-    
-}
+    /**
+     * Hash code matching equals, so AstarNodes can be used as HashMap keys.
+     *
+     * @return hash of the x and y coordinates
+     */
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
+    }
+}
\ No newline at end of file
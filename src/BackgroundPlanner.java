@@ -0,0 +1,219 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The BackgroundPlanner Class runs searches off the agent's thread, so a slow search
+ * doesn't hold up the Sepia turn it was started on. The agent hands it a search and
+ * gets a Job back, keeps its footman walking the old path, and takes the new path on a
+ * later turn once the Job is done. Nothing a Job finds is seen by the footman until
+ * the agent's thread takes it, so a footman never follows half of one path and half of
+ * another.
+ *
+ * It also searches contingency plans: the path a footman would need if one more cell
+ * were blocked, for when an enemy unit is about to step onto its path. Those run on an
+ * A* engine of the worker thread, not on the footman's planner, so they can run while
+ * the footman's own plan does.
+ *
+ * The worker threads are daemons, so a run that ends with searches still going isn't
+ * kept alive by them.
+ *
+ * @author Alexander Telich
+ */
+public class BackgroundPlanner {
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private final ExecutorService executor;
+    // engines for the contingency plans, one per worker thread
+    private final ThreadLocal<GridAstar> engines =
+            ThreadLocal.withInitial(() -> new GridAstar(1, 1));
+
+    /**
+     * Constructor declaration for BackgroundPlanner
+     *
+     * @param threads number of worker threads
+     */
+    public BackgroundPlanner(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), task -> {
+            Thread thread = new Thread(task, "astar-planner-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a search on a worker thread.
+     *
+     * @param start  flat index (y * width + x) of the cell the search starts from
+     * @param search the search, which must only touch what no other thread uses while
+     *               it runs
+     *
+     * @return the Job to take the path from once it is done
+     */
+    public Job plan(int start, Supplier<GridPath> search) {
+        return new Job(start, -1, search);
+    }
+
+    /**
+     * Starts a contingency plan on a worker thread: an A* search on the map with one
+     * more cell blocked.
+     *
+     * @param map         the map as it is now, safe to read from another thread
+     * @param start       flat index of the cell the search starts from
+     * @param blockedCell flat index of the cell that is blocked for the search
+     * @param goalCells   flat indices of the goal cells, not changed afterwards
+     * @param goalCount   number of entries of goalCells that are used
+     * @param targetX     x coordinate of the townhall
+     * @param targetY     y coordinate of the townhall
+     *
+     * @return the Job to take the path from once it is done
+     */
+    public Job speculate(GridView map, int start, int blockedCell, int[] goalCells,
+                         int goalCount, int targetX, int targetY) {
+        int width = map.getLengthX();
+        GridView blocked = new BlockedCell(map, blockedCell);
+        return new Job(start, blockedCell,
+                       () -> engines.get().search(blocked, start % width, start / width,
+                                                  goalCells, goalCount, targetX,
+                                                  targetY));
+    }
+
+    /**
+     * Stops the worker threads once the searches already started are done.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * A search started on a worker thread.
+     */
+    public final class Job {
+        private final int start;
+        private final int blockedCell;
+        private final CompletableFuture<GridPath> result;
+        private volatile long planTime;
+
+        private Job(int start, int blockedCell, Supplier<GridPath> search) {
+            this.start = start;
+            this.blockedCell = blockedCell;
+            this.result = CompletableFuture.supplyAsync(() -> {
+                long startTime = System.nanoTime();
+                try {
+                    return search.get();
+                } finally {
+                    planTime = System.nanoTime() - startTime;
+                }
+            }, executor);
+        }
+
+        /**
+         * @return flat index of the cell the path starts from, not part of the path
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return flat index of the cell a contingency plan went around, -1 for a plan
+         * of the map as it is
+         */
+        public int getBlockedCell() {
+            return blockedCell;
+        }
+
+        /**
+         * @return true once the search finished and getPath won't wait
+         */
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        /**
+         * Gives the path the search found, waiting for it if it isn't done yet.
+         *
+         * @return the path, first move first, or null if there is none
+         */
+        public GridPath getPath() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Runs the action once the search is done, whether it found a path or not: on
+         * the worker thread, or right away if it is done already.
+         *
+         * @param action what to run
+         */
+        public void whenDone(Runnable action) {
+            result.whenComplete((path, error) -> action.run());
+        }
+
+        /**
+         * @return nanoseconds the search took on the worker thread, once it is done
+         */
+        public long getPlanTime() {
+            return planTime;
+        }
+    }
+
+    /**
+     * A map with one more cell blocked than the one it wraps.
+     */
+    private static final class BlockedCell implements GridView {
+        private final GridView map;
+        private final int cell, cellX, cellY, width;
+
+        BlockedCell(GridView map, int cell) {
+            this.map = map;
+            this.cell = cell;
+            this.width = map.getLengthX();
+            this.cellX = cell % width;
+            this.cellY = cell / width;
+        }
+
+        @Override
+        public int getLengthX() {
+            return width;
+        }
+
+        @Override
+        public int getLengthY() {
+            return map.getLengthY();
+        }
+
+        @Override
+        public boolean isBlocked(int x, int y) {
+            return isBlocked(y * width + x);
+        }
+
+        @Override
+        public boolean isBlocked(int index) {
+            return index == cell || map.isBlocked(index);
+        }
+
+        @Override
+        public int getNeighborMask(int index) {
+            int mask = map.getNeighborMask(index);
+            int dx = cellX - index % width, dy = cellY - index / width;
+            if (Math.abs(dx) > 1 || Math.abs(dy) > 1) {
+                return mask;
+            }
+            for (int d = 0; d < 8; d++) {
+                if (DX[d] == dx && DY[d] == dy) return mask & ~(1 << d);
+            }
+            return mask;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.Arrays;
+
+/**
+ * The BidirectionalAstar Class searches forward from the footman and backward from all
+ * the goal cells at once until the two searches meet in the middle, which on long
+ * corridors and open maps expands far fewer cells than one search from the footman.
+ *
+ * Both searches use the balanced (average) heuristic: the forward one is keyed with
+ * g + (hGoal - hStart) / 2 and the backward one with g + (hStart - hGoal) / 2, where
+ * hGoal is the Chebyshev distance to the nearest goal cell and hStart the one to the
+ * footman. Those keys are consistent in both directions, so every cell is closed at
+ * most once per side, and the search can stop as soon as the smallest forward key plus
+ * the smallest backward key reaches the best path seen so far. Keys are doubled to
+ * keep them integers.
+ *
+ * @author Alexander Telich
+ */
+public class BidirectionalAstar implements PathPlanner {
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+    private static final int FORWARD = 0, BACKWARD = 1;
+
+    private int width, height;
+    // per direction: cost from the start (or to the goals), the cell it came from and
+    // generation stamps for seen and closed
+    private final int[][] gValue = new int[2][];
+    private final int[][] parent = new int[2][];
+    private final int[][] seenStamp = new int[2][];
+    private final int[][] closedStamp = new int[2][];
+    private int generation;
+    private final IndexedMinHeap[] open = {new IndexedMinHeap(), new IndexedMinHeap()};
+
+    private int[] goals = new int[0];
+    private int goalCount;
+    private int start;
+
+    private final int[] expandedCount = new int[2];
+
+    /**
+     * Constructor declaration for BidirectionalAstar
+     *
+     * @param width  x length of the map
+     * @param height y length of the map
+     */
+    public BidirectionalAstar(int width, int height) {
+        resize(width, height);
+    }
+
+    @Override
+    public GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                           int goalCount, int targetX, int targetY) {
+        resize(gameMap.getLengthX(), gameMap.getLengthY());
+        nextGeneration();
+        open[FORWARD].clear();
+        open[BACKWARD].clear();
+        expandedCount[FORWARD] = 0;
+        expandedCount[BACKWARD] = 0;
+        goals = goalCells;
+        this.goalCount = goalCount;
+        start = startY * width + startX;
+
+        reach(FORWARD, start, 0, -1);
+        for (int i = 0; i < goalCount; i++) {
+            int goal = goalCells[i];
+            if (goal == start) {
+                return GridPath.empty(width);
+            }
+            if (!gameMap.isBlocked(goal) && seenStamp[BACKWARD][goal] != generation) {
+                reach(BACKWARD, goal, 0, -1);
+            }
+        }
+
+        // length of the best path seen so far and the cell the two halves meet at
+        int best = Integer.MAX_VALUE;
+        int meet = -1;
+        while (!open[FORWARD].isEmpty() && !open[BACKWARD].isEmpty()) {
+            if (best != Integer.MAX_VALUE &&
+                open[FORWARD].peekKey() + open[BACKWARD].peekKey() >= 2L * best) {
+                break;
+            }
+            // grow the side with the smaller frontier
+            int side = open[FORWARD].size() <= open[BACKWARD].size() ? FORWARD : BACKWARD;
+            int other = 1 - side;
+            int current = open[side].poll();
+            closedStamp[side][current] = generation;
+            expandedCount[side]++;
+
+            int x = current % width, y = current / width;
+            int tentativeG = gValue[side][current] + 1;
+            int neighbors = gameMap.getNeighborMask(current);
+            for (int d = 0; d < 8; d++) {
+                if ((neighbors & (1 << d)) == 0) continue;
+                int next = (y + DY[d]) * width + x + DX[d];
+                if (closedStamp[side][next] == generation) continue;
+                if (seenStamp[side][next] != generation || tentativeG < gValue[side][next]) {
+                    reach(side, next, tentativeG, current);
+                }
+                if (seenStamp[other][next] == generation &&
+                    gValue[side][next] + gValue[other][next] < best) {
+                    best = gValue[side][next] + gValue[other][next];
+                    meet = next;
+                }
+            }
+        }
+        return meet < 0 ? null : buildPath(meet);
+    }
+
+    /**
+     * Number of cells expanded by the last search, both directions together.
+     *
+     * @return count of closed cells
+     */
+    @Override
+    public int getExpandedCount() {
+        return expandedCount[FORWARD] + expandedCount[BACKWARD];
+    }
+
+    /**
+     * @return number of cells the last search expanded from the footman's side
+     */
+    public int getForwardExpandedCount() {
+        return expandedCount[FORWARD];
+    }
+
+    /**
+     * @return number of cells the last search expanded from the goals' side
+     */
+    public int getBackwardExpandedCount() {
+        return expandedCount[BACKWARD];
+    }
+
+    private void resize(int width, int height) {
+        if (gValue[FORWARD] != null && this.width == width && this.height == height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        int cells = width * height;
+        for (int side = FORWARD; side <= BACKWARD; side++) {
+            gValue[side] = new int[cells];
+            parent[side] = new int[cells];
+            seenStamp[side] = new int[cells];
+            closedStamp[side] = new int[cells];
+            open[side].resize(cells);
+        }
+        generation = 0;
+    }
+
+    /**
+     * Gives a cell a new cost on one side and puts it in that side's open list.
+     */
+    private void reach(int side, int cell, int g, int from) {
+        long key = 2L * g + (side == FORWARD ? 1 : -1) * (toGoal(cell) - toStart(cell));
+        if (seenStamp[side][cell] == generation) {
+            open[side].update(cell, key);
+        } else {
+            seenStamp[side][cell] = generation;
+            open[side].push(cell, key);
+        }
+        gValue[side][cell] = g;
+        parent[side][cell] = from;
+    }
+
+    /**
+     * Chebyshev distance to the nearest goal cell.
+     */
+    private int toGoal(int cell) {
+        return GridAstar.nearestGoal(cell % width, cell / width, goals, goalCount, width);
+    }
+
+    /**
+     * Chebyshev distance to the footman.
+     */
+    private int toStart(int cell) {
+        return GridAstar.heuristic(cell % width, cell / width, start % width,
+                                   start / width);
+    }
+
+    /**
+     * Joins the forward half (start to meet) and the backward half (meet to a goal).
+     * The start cell is not included.
+     */
+    private GridPath buildPath(int meet) {
+        int[] cells = new int[gValue[FORWARD][meet] + gValue[BACKWARD][meet]];
+        int i = gValue[FORWARD][meet] - 1;
+        for (int cell = meet; cell != start; cell = parent[FORWARD][cell]) {
+            cells[i--] = cell;
+        }
+        i = gValue[FORWARD][meet];
+        for (int cell = parent[BACKWARD][meet]; cell != -1; cell = parent[BACKWARD][cell]) {
+            cells[i++] = cell;
+        }
+        return new GridPath(cells, cells.length, width);
+    }
+
+    /**
+     * Starts a new search generation, clearing the stamps once the counter wraps.
+     */
+    private void nextGeneration() {
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            for (int side = FORWARD; side <= BACKWARD; side++) {
+                Arrays.fill(seenStamp[side], 0);
+                Arrays.fill(closedStamp[side], 0);
+            }
+            generation = 1;
+        }
+    }
+}
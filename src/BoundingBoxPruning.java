@@ -0,0 +1,49 @@
+/**
+ * The BoundingBoxPruning Class keeps the search inside the smallest box holding the
+ * start and the target, grown by a margin on every side. Paths that have to leave the
+ * box get longer or aren't found (then GridAstar searches again without pruning), so a
+ * bigger margin trades expanded cells for fewer longer paths.
+ *
+ * @author Alexander Telich
+ */
+public class BoundingBoxPruning implements SearchPruning {
+    private final int margin;
+    private int width;
+    private int minX, minY, maxX, maxY;
+
+    /**
+     * Constructor declaration for BoundingBoxPruning
+     *
+     * @param margin number of cells the box reaches past the start and the target
+     */
+    public BoundingBoxPruning(int margin) {
+        this.margin = margin;
+    }
+
+    @Override
+    public void begin(GridView gameMap, int start, int target) {
+        width = gameMap.getLengthX();
+        int startX = start % width, startY = start / width;
+        int targetX = target % width, targetY = target / width;
+        minX = Math.min(startX, targetX) - margin;
+        minY = Math.min(startY, targetY) - margin;
+        maxX = Math.max(startX, targetX) + margin;
+        maxY = Math.max(startY, targetY) + margin;
+    }
+
+    @Override
+    public boolean prune(int from, int cell, int expandedCount) {
+        int x = cell % width, y = cell / width;
+        return x < minX || x > maxX || y < minY || y > maxY;
+    }
+
+    @Override
+    public boolean canHideGoal(int[] goalCells, int goalCount) {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "box";
+    }
+}
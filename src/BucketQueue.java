@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/**
+ * The BucketQueue Class is an OpenList for small non-negative integer keys, which is
+ * what A* produces on our maps since getTraverseCost() is always 1 and the heuristic is
+ * a whole number of moves. Every key has its own bucket, kept as an intrusive doubly
+ * linked list over cell indices, so insert, decreaseKey and contains are O(1) and poll
+ * only has to walk forward over empty buckets.
+ *
+ * Cells with the same key come out last in, first out, which favors the cells that
+ * were reached most recently (the deepest ones) when f values tie.
+ *
+ * @author Alexander Telich
+ */
+public class BucketQueue implements OpenList {
+    private static final int NONE = -1;
+
+    // first cell of every bucket, indexed by key
+    private int[] head = new int[64];
+    // links of the bucket list each cell is in
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+    // key of each cell, -1 when the cell is not in the queue
+    private int[] keyOf = new int[0];
+    // no bucket below this key holds a cell
+    private int minKey;
+    private int maxKey;
+    private int size;
+
+    public BucketQueue() {
+        Arrays.fill(head, NONE);
+    }
+
+    @Override
+    public void resize(int cells) {
+        if (keyOf.length != cells) {
+            next = new int[cells];
+            prev = new int[cells];
+            keyOf = new int[cells];
+            Arrays.fill(keyOf, NONE);
+        }
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        for (int key = minKey; key <= maxKey && size > 0; key++) {
+            for (int cell = head[key]; cell != NONE; cell = next[cell]) {
+                keyOf[cell] = NONE;
+                size--;
+            }
+            head[key] = NONE;
+        }
+        size = 0;
+        minKey = 0;
+        maxKey = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int cell) {
+        return keyOf[cell] != NONE;
+    }
+
+    @Override
+    public void insert(int cell, int key) {
+        if (key >= head.length) {
+            int oldLength = head.length;
+            head = Arrays.copyOf(head, Math.max(key + 1, oldLength * 2));
+            Arrays.fill(head, oldLength, head.length, NONE);
+        }
+        if (size == 0) {
+            minKey = key;
+            maxKey = key;
+        } else {
+            minKey = Math.min(minKey, key);
+            maxKey = Math.max(maxKey, key);
+        }
+
+        keyOf[cell] = key;
+        prev[cell] = NONE;
+        next[cell] = head[key];
+        if (head[key] != NONE) prev[head[key]] = cell;
+        head[key] = cell;
+        size++;
+    }
+
+    @Override
+    public void decreaseKey(int cell, int key) {
+        unlink(cell);
+        insert(cell, key);
+    }
+
+    @Override
+    public int poll() {
+        while (head[minKey] == NONE) {
+            minKey++;
+        }
+        int cell = head[minKey];
+        unlink(cell);
+        return cell;
+    }
+
+    /**
+     * Takes the cell out of its bucket.
+     */
+    private void unlink(int cell) {
+        int key = keyOf[cell];
+        if (prev[cell] != NONE) next[prev[cell]] = next[cell];
+        else head[key] = next[cell];
+        if (next[cell] != NONE) prev[next[cell]] = prev[cell];
+        keyOf[cell] = NONE;
+        size--;
+    }
+}
@@ -0,0 +1,311 @@
+import java.util.Arrays;
+
+/**
+ * The ComponentIndex Class labels the connected areas of free cells of a map, so two
+ * cells with different labels can't have a path between them and a planner can give
+ * up on a footman without flooding everything it can reach first.
+ *
+ * GameMap owns the index and tells it about every cell that changes, like
+ * NeighborCache. A freed cell joins the areas around it, and the smaller ones are
+ * relabelled as the biggest. A blocked cell can only split its area when the free
+ * cells around it aren't already next to each other, and only then is the area
+ * searched from each side to see which parts still meet. Labels are read without
+ * locking, so a copy is made before the live map changes one a snapshot still uses.
+ *
+ * @author Alexander Telich
+ */
+public class ComponentIndex {
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private final int width, height;
+    // area of every cell, 0 for blocked cells
+    private final int[] label;
+    // number of cells of every label
+    private int[] size;
+    private int nextLabel;
+    // scratch for the searches that look for splits, only used by the live map
+    private int[] seenStamp, queue;
+    private int generation;
+
+    /**
+     * Labels the areas of a map.
+     *
+     * @param map the map as it is now
+     */
+    public ComponentIndex(GridView map) {
+        this.width = map.getLengthX();
+        this.height = map.getLengthY();
+        this.label = new int[width * height];
+        this.size = new int[16];
+        this.seenStamp = new int[width * height];
+        this.queue = new int[width * height];
+        for (int cell = 0; cell < label.length; cell++) {
+            label[cell] = map.isBlocked(cell) ? 0 : -1;
+        }
+        build();
+    }
+
+    private ComponentIndex(ComponentIndex other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.label = other.label.clone();
+        this.size = other.size.clone();
+        this.nextLabel = other.nextLabel;
+        // the copy takes over as the live one, the original is only read from now on
+        this.seenStamp = other.seenStamp;
+        this.queue = other.queue;
+        this.generation = other.generation;
+    }
+
+    /**
+     * Gives the area of a cell.
+     *
+     * @param index y * width + x of the cell
+     *
+     * @return label of the cell's area, 0 if the cell is blocked
+     */
+    public int getLabel(int index) {
+        return label[index];
+    }
+
+    /**
+     * Tells you if a path from the cell to one of the goal cells may exist. A footman
+     * can stand on a cell the map has as blocked, so then the areas next to it count.
+     *
+     * @param cell      flat index (y * width + x) of the footman's cell
+     * @param goalCells flat indices of the goal cells
+     * @param goalCount number of entries of goalCells that are used
+     *
+     * @return false if none of the goal cells can be reached from the cell
+     */
+    public boolean mayReach(int cell, int[] goalCells, int goalCount) {
+        if (label[cell] != 0) {
+            return reaches(label[cell], goalCells, goalCount);
+        }
+        int x = cell % width, y = cell / width;
+        for (int d = 0; d < 8; d++) {
+            int nx = x + DX[d], ny = y + DY[d];
+            if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+            int area = label[ny * width + nx];
+            if (area != 0 && reaches(area, goalCells, goalCount)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Updates the labels around a cell that became blocked or free.
+     *
+     * @param index   y * width + x of the changed cell
+     * @param blocked true if the cell is blocked now
+     */
+    public void cellChanged(int index, boolean blocked) {
+        if (blocked) {
+            cellBlocked(index);
+        } else {
+            cellFreed(index);
+        }
+    }
+
+    /**
+     * @return a copy that won't see later changes
+     */
+    public ComponentIndex copy() {
+        return new ComponentIndex(this);
+    }
+
+    private boolean reaches(int area, int[] goalCells, int goalCount) {
+        for (int i = 0; i < goalCount; i++) {
+            if (label[goalCells[i]] == area) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Labels the areas from scratch. Free cells are marked -1 first.
+     */
+    private void build() {
+        Arrays.fill(size, 0);
+        nextLabel = 0;
+        for (int cell = 0; cell < label.length; cell++) {
+            if (label[cell] != -1) continue;
+            int area = newLabel();
+            label[cell] = area;
+            size[area] = 1 + relabel(cell, -1, area);
+        }
+    }
+
+    /**
+     * The freed cell joins the biggest area around it and the others are relabelled
+     * as that one.
+     */
+    private void cellFreed(int index) {
+        int x = index % width, y = index / width;
+        int keep = 0;
+        for (int d = 0; d < 8; d++) {
+            int nx = x + DX[d], ny = y + DY[d];
+            if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+            int area = label[ny * width + nx];
+            if (area != 0 && (keep == 0 || size[area] > size[keep])) keep = area;
+        }
+        if (keep == 0) {
+            keep = newLabel();
+        }
+        label[index] = keep;
+        size[keep]++;
+        for (int d = 0; d < 8; d++) {
+            int nx = x + DX[d], ny = y + DY[d];
+            if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+            int neighbor = ny * width + nx;
+            int area = label[neighbor];
+            if (area == 0 || area == keep) continue;
+            size[keep] += size[area];
+            size[area] = 0;
+            label[neighbor] = keep;
+            relabel(neighbor, area, keep);
+        }
+    }
+
+    /**
+     * Takes the cell out of its area. When the free cells around it fall into more
+     * than one group that don't touch, the area is searched from one group, and if the
+     * search runs out before meeting all the others, what it found is a new area.
+     * That goes on with the groups it didn't meet until only one is left.
+     */
+    private void cellBlocked(int index) {
+        int area = label[index];
+        label[index] = 0;
+        size[area]--;
+
+        // group the free neighbors, any two of them a move apart are in the same group
+        int x = index % width, y = index / width;
+        int[] cells = new int[8];
+        int[] group = new int[8];
+        int count = 0;
+        for (int d = 0; d < 8; d++) {
+            int nx = x + DX[d], ny = y + DY[d];
+            if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+            int neighbor = ny * width + nx;
+            if (label[neighbor] == 0) continue;
+            group[count] = count;
+            for (int i = 0; i < count; i++) {
+                if (Math.abs(cells[i] % width - nx) <= 1 &&
+                    Math.abs(cells[i] / width - ny) <= 1) {
+                    group[find(group, i)] = find(group, count);
+                }
+            }
+            cells[count++] = neighbor;
+        }
+        int groups = 0;
+        for (int i = 0; i < count; i++) {
+            group[i] = find(group, i);
+            if (group[i] == i) groups++;
+        }
+
+        // true for the groups that have their own label by now
+        boolean[] done = new boolean[8];
+        while (groups > 1) {
+            int first = 0;
+            while (done[group[first]]) {
+                first++;
+            }
+            nextGeneration();
+            int head = 0, tail = 0;
+            queue[tail++] = cells[first];
+            seenStamp[cells[first]] = generation;
+            int unmet = groups - 1;
+            while (head < tail && unmet > 0) {
+                int cell = queue[head++];
+                int cx = cell % width, cy = cell / width;
+                for (int d = 0; d < 8; d++) {
+                    int nx = cx + DX[d], ny = cy + DY[d];
+                    if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                    int next = ny * width + nx;
+                    if (label[next] != area || seenStamp[next] == generation) continue;
+                    seenStamp[next] = generation;
+                    queue[tail++] = next;
+                    for (int i = 0; i < count; i++) {
+                        if (cells[i] != next || done[group[i]]) continue;
+                        // count the group once, the first time one of its cells is seen
+                        boolean seenBefore = false;
+                        for (int j = 0; j < count; j++) {
+                            if (j != i && group[j] == group[i] &&
+                                seenStamp[cells[j]] == generation) {
+                                seenBefore = true;
+                            }
+                        }
+                        if (!seenBefore && group[i] != group[first]) unmet--;
+                    }
+                }
+            }
+            if (unmet == 0) {
+                // the rest of the groups all meet, so they stay one area
+                return;
+            }
+            int split = newLabel();
+            for (int i = 0; i < tail; i++) {
+                label[queue[i]] = split;
+            }
+            size[split] = tail;
+            size[area] -= tail;
+            for (int i = 0; i < count; i++) {
+                if (group[i] == i && seenStamp[cells[i]] == generation) {
+                    done[i] = true;
+                    groups--;
+                }
+            }
+        }
+        if (nextLabel > label.length) {
+            // labels of split off areas add up on a long game, so start over
+            for (int cell = 0; cell < label.length; cell++) {
+                if (label[cell] != 0) label[cell] = -1;
+            }
+            build();
+        }
+    }
+
+    private static int find(int[] group, int i) {
+        while (group[i] != i) {
+            i = group[i];
+        }
+        return i;
+    }
+
+    /**
+     * Relabels every cell reachable from the given one over cells labelled from.
+     *
+     * @return number of cells relabelled, not counting the given one
+     */
+    private int relabel(int start, int from, int to) {
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width, y = cell / width;
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int next = ny * width + nx;
+                if (label[next] != from) continue;
+                label[next] = to;
+                queue[tail++] = next;
+            }
+        }
+        return tail - 1;
+    }
+
+    private int newLabel() {
+        if (nextLabel + 1 >= size.length) {
+            size = Arrays.copyOf(size, size.length * 2);
+        }
+        return ++nextLabel;
+    }
+
+    private void nextGeneration() {
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(seenStamp, 0);
+            generation = 1;
+        }
+    }
+}
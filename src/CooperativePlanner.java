@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * The CooperativePlanner Class is a windowed cooperative A* (WHCA*) PathPlanner for
+ * maps with several of our footmen on them. It searches in (x, y, turn) space, where
+ * a footman can also wait a turn on its cell, and it avoids every cell and swap the
+ * other footmen have put in the shared ReservationTable. Once a path is found its
+ * first window turns are reserved for this footman.
+ *
+ * Only the next window turns are planned around the other footmen; the rest of the
+ * path just walks down the DistanceField to the goal, which also serves as the
+ * heuristic. That is why footmen should plan again every window / 2 turns (see
+ * getReplanInterval).
+ *
+ * Footmen plan one after the other in a fixed order, each one seeing the reservations
+ * of the ones before it, so planners sharing a table must not search at the same time.
+ * That is also why they share one set of search arrays, kept with the table: those
+ * take cells * (window + 1) entries each, too many to have one set per footman on a
+ * big map. Call setUnit before every search.
+ *
+ * Waiting shows up in the returned path as the same cell twice in a row.
+ *
+ * @author Alexander Telich
+ */
+public class CooperativePlanner implements PathPlanner {
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private final ReservationTable reservations;
+    private final int window;
+    private int width, height;
+    private int unit;
+    private int startTurn;
+
+    // distance of every cell to the nearest goal cell, ignoring the other footmen
+    private final DistanceField distances;
+
+    // search arrays shared with the other planners of the table
+    private final SearchSpace space;
+
+    private int expandedCount;
+
+    /**
+     * Constructor declaration for CooperativePlanner
+     *
+     * @param width        x length of the map
+     * @param height       y length of the map
+     * @param reservations table shared by the planners of all the footmen
+     * @param distances    distances to the goal, registered as a map listener
+     */
+    public CooperativePlanner(int width, int height, ReservationTable reservations,
+                              DistanceField distances) {
+        this.reservations = reservations;
+        this.window = reservations.getWindow();
+        this.space = reservations.getSearchSpace();
+        this.distances = distances;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Says which footman the next search is for and at which turn it starts.
+     *
+     * @param unit      unit ID of the footman, used for its reservations
+     * @param startTurn turn the footman is standing on its start cell
+     */
+    public void setUnit(int unit, int startTurn) {
+        this.unit = unit;
+        this.startTurn = startTurn;
+    }
+
+    /**
+     * @return how many turns a footman should follow its path before planning again
+     */
+    public int getReplanInterval() {
+        return Math.max(1, window / 2);
+    }
+
+    @Override
+    public GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                           int goalCount, int targetX, int targetY) {
+        width = gameMap.getLengthX();
+        height = gameMap.getLengthY();
+        space.resize(width, height, window);
+        distances.update(gameMap, goalCells, goalCount);
+        reservations.release(unit);
+        expandedCount = 0;
+
+        int cells = width * height;
+        int start = startY * width + startX;
+        if (distances.getDistance(start) == Heuristic.UNREACHABLE) {
+            return null;
+        }
+
+        int generation = space.nextGeneration();
+        int[] gValue = space.gValue;
+        int[] parent = space.parent;
+        int[] seenStamp = space.seenStamp;
+        int[] closedStamp = space.closedStamp;
+        int[] goalStamp = space.goalStamp;
+        IndexedMinHeap openList = space.openList;
+        for (int i = 0; i < goalCount; i++) {
+            goalStamp[goalCells[i]] = generation;
+        }
+
+        gValue[start] = 0;
+        parent[start] = -1;
+        seenStamp[start] = generation;
+        openList.push(start, distances.getDistance(start));
+
+        int end = -1;
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            int cell = current % cells;
+            int turn = current / cells;
+            // a goal the footman can stay on ends the path, the window's edge ends the
+            // part planned in time
+            if ((goalStamp[cell] == generation && staysFree(cell, turn)) ||
+                turn == window) {
+                end = current;
+                break;
+            }
+            closedStamp[current] = generation;
+            expandedCount++;
+
+            int x = cell % width, y = cell / width;
+            int open = gameMap.getNeighborMask(cell);
+            // directions 0 - 7 move, 8 waits on the cell
+            for (int d = 0; d <= 8; d++) {
+                int next = cell;
+                if (d < 8) {
+                    if ((open & (1 << d)) == 0) continue;
+                    next = (y + DY[d]) * width + x + DX[d];
+                }
+                int distance = distances.getDistance(next);
+                if (distance == Heuristic.UNREACHABLE) continue;
+                if (!reservations.canMove(cell, next, startTurn + turn, unit)) continue;
+
+                int state = (turn + 1) * cells + next;
+                if (closedStamp[state] == generation) continue;
+                int tentativeG = gValue[current] + 1;
+                if (seenStamp[state] != generation) {
+                    seenStamp[state] = generation;
+                    gValue[state] = tentativeG;
+                    parent[state] = current;
+                    openList.push(state, tentativeG + distance);
+                } else if (tentativeG < gValue[state]) {
+                    gValue[state] = tentativeG;
+                    parent[state] = current;
+                    openList.update(state, tentativeG + distance);
+                }
+            }
+        }
+
+        // boxed in by the others for the whole window, so it stays where it is and
+        // plans again once they moved on
+        if (end < 0) {
+            return waitInPlace(start);
+        }
+        return buildPath(end, cells);
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    /**
+     * @return true if no other footman has the cell reserved after the turn offset
+     */
+    private boolean staysFree(int cell, int turn) {
+        for (int t = turn + 1; t <= window; t++) {
+            int owner = reservations.getOwner(cell, startTurn + t);
+            if (owner != ReservationTable.NONE && owner != unit) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Builds a path that waits on the start cell for the whole window, reserving the
+     * cell for the turns no other footman has it.
+     */
+    private GridPath waitInPlace(int start) {
+        int[] path = new int[window];
+        Arrays.fill(path, start);
+        for (int turn = 0; turn <= window; turn++) {
+            reservations.reserve(start, startTurn + turn, unit);
+        }
+        return new GridPath(path, path.length, width);
+    }
+
+    /**
+     * Walks back over the planned states reserving each of them, then finishes the
+     * path past the window by always stepping to a neighbor closer to the goal. A
+     * footman that gets to its goal inside the window keeps the goal cell reserved
+     * until the end of the window.
+     */
+    private GridPath buildPath(int end, int cells) {
+        // the cells past the window
+        int[] tail = new int[16];
+        int cell = end % cells;
+        int steps = 0;
+        while (distances.getDistance(cell) > 0) {
+            int x = cell % width, y = cell / width;
+            int next = cell;
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int s = ny * width + nx;
+                if (distances.getDistance(s) < distances.getDistance(next)) next = s;
+            }
+            if (next == cell || steps == cells) break;
+            if (steps == tail.length) {
+                tail = Arrays.copyOf(tail, steps * 2);
+            }
+            tail[steps++] = next;
+            cell = next;
+        }
+
+        // one cell per turn of the window, then the tail
+        int endTurn = end / cells;
+        int[] path = new int[endTurn + steps];
+        System.arraycopy(tail, 0, path, endTurn, steps);
+        for (int turn = endTurn + 1; turn <= window; turn++) {
+            reservations.reserve(end % cells, startTurn + turn, unit);
+        }
+        for (int state = end; state >= 0; state = space.parent[state]) {
+            int stateCell = state % cells;
+            reservations.reserve(stateCell, startTurn + state / cells, unit);
+            if (state / cells > 0) {
+                path[state / cells - 1] = stateCell;
+            }
+        }
+        return new GridPath(path, path.length, width);
+    }
+
+    /**
+     * The per state search arrays, state = turn offset * cells + cell, of the
+     * cooperative planners that share a ReservationTable.
+     */
+    static final class SearchSpace {
+        private int width, height, window;
+        private int[] gValue;
+        private int[] parent;
+        private int[] seenStamp;
+        private int[] closedStamp;
+        private int[] goalStamp;
+        private int generation;
+        private final IndexedMinHeap openList = new IndexedMinHeap();
+
+        private void resize(int width, int height, int window) {
+            if (gValue != null && this.width == width && this.height == height &&
+                this.window == window) {
+                return;
+            }
+            this.width = width;
+            this.height = height;
+            this.window = window;
+            int cells = width * height;
+            int states = cells * (window + 1);
+            gValue = new int[states];
+            parent = new int[states];
+            seenStamp = new int[states];
+            closedStamp = new int[states];
+            goalStamp = new int[cells];
+            generation = 0;
+            openList.resize(states);
+        }
+
+        /**
+         * Starts a new search, clearing the stamps once the counter wraps.
+         *
+         * @return the generation the search stamps its states with
+         */
+        private int nextGeneration() {
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(seenStamp, 0);
+                Arrays.fill(closedStamp, 0);
+                Arrays.fill(goalStamp, 0);
+                generation = 1;
+            }
+            openList.clear();
+            return generation;
+        }
+    }
+}
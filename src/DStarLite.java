@@ -0,0 +1,272 @@
+import java.util.Arrays;
+
+/**
+ * The DStarLite Class is an incremental PathPlanner. It searches backwards from the goal
+ * cells to the footman and keeps its g/rhs values between calls, so when the enemy
+ * moves only the cells around the freed and the newly blocked cell have to be repaired
+ * instead of searching the whole map again. The footman moving along its path is
+ * handled with the usual key modifier km instead of re-sorting the queue.
+ *
+ * The planner has to be registered with GameMap.addChangeListener so it hears about
+ * the cells that change. A search with different goal cells or a different map size
+ * starts over from scratch.
+ *
+ * @author Alexander Telich
+ */
+public class DStarLite implements PathPlanner, GameMap.ChangeListener {
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private int width, height;
+    private GridView map;
+
+    // cost-to-goal estimates of every cell, consistent when g == rhs
+    private int[] gValue;
+    private int[] rhs;
+    private boolean[] isGoal;
+    // inconsistent cells, keyed by (k1 << 32 | k2)
+    private final IndexedMinHeap queue = new IndexedMinHeap();
+    private int keyModifier;
+    private int lastStart = -1;
+
+    // goals the search tree was built for
+    private int[] goals = new int[0];
+
+    // cells that changed since the last search, deduplicated with changedStamp
+    private int[] changedCells = new int[16];
+    private int changedCount;
+    private boolean[] changedStamp;
+
+    private int expandedCount;
+
+    /**
+     * Constructor declaration for DStarLite
+     *
+     * @param width  x length of the map
+     * @param height y length of the map
+     */
+    public DStarLite(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public void cellChanged(int index, boolean blocked) {
+        if (changedStamp == null || changedStamp[index]) return;
+        changedStamp[index] = true;
+        if (changedCount == changedCells.length) {
+            changedCells = Arrays.copyOf(changedCells, changedCount * 2);
+        }
+        changedCells[changedCount++] = index;
+    }
+
+    @Override
+    public GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                           int goalCount, int targetX, int targetY) {
+        this.map = gameMap;
+        int start = startY * width + startX;
+        expandedCount = 0;
+
+        if (gValue == null || !GridAstar.sameGoals(goals, goalCells, goalCount) ||
+            gameMap.getLengthX() != width || gameMap.getLengthY() != height) {
+            initialize(gameMap, start, goalCells, goalCount);
+        } else {
+            keyModifier += heuristic(lastStart, start);
+            lastStart = start;
+            repairChangedCells();
+        }
+
+        computeShortestPath(start);
+        return buildPath(start);
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    /**
+     * Throws the old search tree away and seeds the queue with the goal cells.
+     */
+    private void initialize(GridView gameMap, int start, int[] goalCells, int goalCount) {
+        width = gameMap.getLengthX();
+        height = gameMap.getLengthY();
+        int cells = width * height;
+        if (gValue == null || gValue.length != cells) {
+            gValue = new int[cells];
+            rhs = new int[cells];
+            isGoal = new boolean[cells];
+            changedStamp = new boolean[cells];
+            queue.resize(cells);
+        } else {
+            queue.clear();
+            Arrays.fill(isGoal, false);
+        }
+        Arrays.fill(gValue, INFINITY);
+        Arrays.fill(rhs, INFINITY);
+        clearChangedCells();
+
+        goals = Arrays.copyOf(goalCells, goalCount);
+        keyModifier = 0;
+        lastStart = start;
+        for (int goal : goals) {
+            isGoal[goal] = true;
+            if (!map.isBlocked(goal)) {
+                rhs[goal] = 0;
+                queue.push(goal, calculateKey(goal, start));
+            }
+        }
+    }
+
+    /**
+     * A changed cell changes the cost of the edges to its 8 neighbors, so the rhs of
+     * the cell and of each neighbor is recomputed.
+     */
+    private void repairChangedCells() {
+        for (int i = 0; i < changedCount; i++) {
+            int cell = changedCells[i];
+            int x = cell % width, y = cell / width;
+            updateRhs(cell);
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                updateRhs(ny * width + nx);
+            }
+        }
+        clearChangedCells();
+    }
+
+    private void clearChangedCells() {
+        for (int i = 0; i < changedCount; i++) {
+            changedStamp[changedCells[i]] = false;
+        }
+        changedCount = 0;
+    }
+
+    /**
+     * Expands inconsistent cells until the start is consistent and nothing in the
+     * queue can still lower its cost.
+     */
+    private void computeShortestPath(int start) {
+        while (!queue.isEmpty() &&
+               (queue.peekKey() < calculateKey(start, start) ||
+                rhs[start] > gValue[start])) {
+            int u = queue.peek();
+            long oldKey = queue.peekKey();
+            long newKey = calculateKey(u, start);
+            expandedCount++;
+
+            if (oldKey < newKey) {
+                queue.update(u, newKey);
+            } else if (gValue[u] > rhs[u]) {
+                gValue[u] = rhs[u];
+                queue.remove(u);
+                int x = u % width, y = u / width;
+                for (int d = 0; d < 8; d++) {
+                    int nx = x + DX[d], ny = y + DY[d];
+                    if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                    int s = ny * width + nx;
+                    if (!isGoal[s] && !map.isBlocked(s) && !map.isBlocked(u)) {
+                        if (gValue[u] + 1 < rhs[s]) {
+                            rhs[s] = gValue[u] + 1;
+                            updateVertex(s, start);
+                        }
+                    }
+                }
+            } else {
+                gValue[u] = INFINITY;
+                updateRhs(u);
+                int x = u % width, y = u / width;
+                for (int d = 0; d < 8; d++) {
+                    int nx = x + DX[d], ny = y + DY[d];
+                    if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                    updateRhs(ny * width + nx);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes rhs of a cell from its neighbors and fixes its place in the queue.
+     */
+    private void updateRhs(int cell) {
+        if (!isGoal[cell]) {
+            int best = INFINITY;
+            if (!map.isBlocked(cell)) {
+                int x = cell % width, y = cell / width;
+                int open = map.getNeighborMask(cell);
+                for (int d = 0; d < 8; d++) {
+                    if ((open & (1 << d)) == 0) continue;
+                    best = Math.min(best, gValue[(y + DY[d]) * width + x + DX[d]] + 1);
+                }
+            }
+            rhs[cell] = best;
+        } else if (map.isBlocked(cell)) {
+            rhs[cell] = INFINITY;
+        } else {
+            rhs[cell] = 0;
+        }
+        updateVertex(cell, lastStart);
+    }
+
+    /**
+     * Makes sure a cell is in the queue exactly when it is inconsistent.
+     */
+    private void updateVertex(int cell, int start) {
+        boolean queued = queue.contains(cell);
+        if (gValue[cell] != rhs[cell]) {
+            if (queued) {
+                queue.update(cell, calculateKey(cell, start));
+            } else {
+                queue.push(cell, calculateKey(cell, start));
+            }
+        } else if (queued) {
+            queue.remove(cell);
+        }
+    }
+
+    private long calculateKey(int cell, int start) {
+        int k2 = Math.min(gValue[cell], rhs[cell]);
+        int k1 = k2 >= INFINITY ? INFINITY : k2 + heuristic(start, cell) + keyModifier;
+        return (long) k1 << 32 | k2;
+    }
+
+    private int heuristic(int a, int b) {
+        return Math.max(Math.abs(a % width - b % width), Math.abs(a / width - b / width));
+    }
+
+    /**
+     * Follows the cheapest neighbor from the start until a goal cell is reached. The
+     * start itself may be left with only its rhs up to date, but its neighbors' g
+     * values are final.
+     */
+    private GridPath buildPath(int start) {
+        if (rhs[start] >= INFINITY && !isGoal[start]) {
+            return null;
+        }
+        int[] cells = new int[16];
+        int cell = start;
+        int steps = 0;
+        while (!isGoal[cell]) {
+            int x = cell % width, y = cell / width;
+            int next = -1;
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int s = ny * width + nx;
+                if (map.isBlocked(s)) continue;
+                if (next < 0 || gValue[s] < gValue[next]) next = s;
+            }
+            if (next < 0 || gValue[next] >= INFINITY || steps == gValue.length) {
+                return null;
+            }
+            if (steps == cells.length) {
+                cells = Arrays.copyOf(cells, steps * 2);
+            }
+            cells[steps++] = next;
+            cell = next;
+        }
+        return new GridPath(cells, steps, width);
+    }
+}
@@ -0,0 +1,148 @@
+import java.util.ArrayDeque;
+
+/**
+ * The DeadEndPruning Class marks the cells no shortest path has to pass through, and
+ * keeps searches from walking into them. A free cell whose free neighbors are all next
+ * to each other is such a cell, since going from one neighbor to another directly is
+ * shorter than going through it. Taking it away leaves every other distance as it
+ * was, so the cells are peeled off one at a time until none is left, which eats up
+ * dead-end corridors, pockets and the corners of rooms. The cells around the townhall
+ * are where every path ends, so they and the way to them are never peeled.
+ *
+ * Since the shortcut only needs the two neighbors to be free, the enemy footman can't
+ * make a dead cell needed, and the cells are worked out once on the map without it,
+ * like LandmarkTable does. A search may still leave a dead cell it starts in, but it
+ * never goes from a live cell into a dead one (other than a goal), so it stays
+ * admissible. When a goal is deep inside a dead region the search may find nothing,
+ * and only then does GridAstar have to search again without pruning.
+ *
+ * The cells are never changed after build, so one instance can be shared by all the
+ * footmen.
+ *
+ * @author Alexander Telich
+ */
+public class DeadEndPruning implements SearchPruning {
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private final boolean[] dead;
+    private int deadCount;
+
+    private DeadEndPruning(boolean[] dead) {
+        this.dead = dead;
+    }
+
+    /**
+     * Finds the dead cells of a map.
+     *
+     * @param gameMap the map, its enemy footman is left out
+     *
+     * @return the new pruning
+     */
+    public static DeadEndPruning build(GameMap gameMap) {
+        int width = gameMap.getLengthX();
+        int height = gameMap.getLengthY();
+        boolean[] blocked = new boolean[width * height];
+        boolean[] keep = new boolean[width * height];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int type = gameMap.getPosition(x, y);
+                blocked[y * width + x] = type == 1 || type == 3;
+                if (!blocked[y * width + x]) {
+                    queue.add(y * width + x);
+                }
+                if (type != 3) continue;
+                for (int d = 0; d < 8; d++) {
+                    int nx = x + DX[d], ny = y + DY[d];
+                    if (nx >= 0 && ny >= 0 && nx < width && ny < height) {
+                        keep[ny * width + nx] = true;
+                    }
+                }
+            }
+        }
+
+        DeadEndPruning pruning = new DeadEndPruning(new boolean[width * height]);
+        boolean[] dead = pruning.dead;
+        int[] neighbors = new int[8];
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            if (dead[cell] || keep[cell]) continue;
+            int x = cell % width, y = cell / width;
+            int count = 0;
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int next = ny * width + nx;
+                if (!blocked[next] && !dead[next]) {
+                    neighbors[count++] = next;
+                }
+            }
+            if (!allAdjacent(neighbors, count, width)) continue;
+            dead[cell] = true;
+            pruning.deadCount++;
+            // the neighbors lost one of theirs, so they may be dead now too
+            for (int i = 0; i < count; i++) {
+                queue.add(neighbors[i]);
+            }
+        }
+        return pruning;
+    }
+
+    /**
+     * @return number of cells searches won't walk into
+     */
+    public int getDeadCount() {
+        return deadCount;
+    }
+
+    /**
+     * @param cell flat index (y * width + x) of the cell
+     *
+     * @return true if no shortest path between two live cells goes through the cell
+     */
+    public boolean isDead(int cell) {
+        return dead[cell];
+    }
+
+    @Override
+    public void begin(GridView gameMap, int start, int target) {
+    }
+
+    @Override
+    public boolean prune(int from, int cell, int expandedCount) {
+        return dead[cell] && !dead[from];
+    }
+
+    /**
+     * A search from any cell reaches every live goal it can reach at all, so only a
+     * dead goal can be hidden.
+     */
+    @Override
+    public boolean canHideGoal(int[] goalCells, int goalCount) {
+        for (int i = 0; i < goalCount; i++) {
+            if (dead[goalCells[i]]) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "deadend";
+    }
+
+    /**
+     * @return true if every two of the cells are at most one move apart
+     */
+    private static boolean allAdjacent(int[] cells, int count, int width) {
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                if (Math.abs(cells[i] % width - cells[j] % width) > 1 ||
+                    Math.abs(cells[i] / width - cells[j] / width) > 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,284 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The DistanceField Class holds the exact number of moves from every cell to the
+ * nearest goal cell, from one breadth first search back from the goal cells. All of
+ * our footmen head for the same townhall, so one field serves every one of them: as a
+ * PathPlanner a footman just walks downhill, which costs O(path length), and as a
+ * Heuristic it makes GridAstar expand only the cells on a shortest path.
+ *
+ * The field has to be registered with GameMap.addChangeListener. When cells change it
+ * is repaired instead of rebuilt: cells that lost their last downhill neighbor are
+ * raised to unreachable first, then the distances flow back in from the cells around
+ * them (and from any freed cell) with a small Dijkstra.
+ *
+ * Several footmen can search the same field at once, since update is synchronized and
+ * does nothing once the field is up to date.
+ *
+ * @author Alexander Telich
+ */
+public class DistanceField implements PathPlanner, Heuristic, GameMap.ChangeListener {
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private int width, height;
+    private int[] distance;
+    private boolean[] isGoal;
+    // goals the field was built for
+    private int[] goals;
+
+    // cells that changed since the last update, deduplicated with changedStamp
+    private int[] changedCells = new int[16];
+    private int changedCount;
+    private boolean[] changedStamp;
+
+    private final ArrayDeque<Integer> raised = new ArrayDeque<>();
+    private final IndexedMinHeap lowered = new IndexedMinHeap();
+    private int touchedCount;
+
+    /**
+     * Constructor declaration for DistanceField
+     *
+     * @param width  x length of the map
+     * @param height y length of the map
+     */
+    public DistanceField(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public synchronized void cellChanged(int index, boolean blocked) {
+        if (distance == null || changedStamp[index]) return;
+        changedStamp[index] = true;
+        if (changedCount == changedCells.length) {
+            changedCells = Arrays.copyOf(changedCells, changedCount * 2);
+        }
+        changedCells[changedCount++] = index;
+    }
+
+    /**
+     * Brings the field up to date with the map: rebuilds it when the goals or the map
+     * size are new, otherwise repairs the cells that changed since the last update.
+     *
+     * @param gameMap   the map as it is now
+     * @param goalCells flat indices of the goal cells
+     * @param goalCount number of entries of goalCells that are used
+     */
+    public synchronized void update(GridView gameMap, int[] goalCells, int goalCount) {
+        if (distance == null || !GridAstar.sameGoals(goals, goalCells, goalCount) ||
+            gameMap.getLengthX() != width || gameMap.getLengthY() != height) {
+            build(gameMap, goalCells, goalCount);
+        } else if (changedCount > 0) {
+            repair(gameMap);
+        } else {
+            touchedCount = 0;
+        }
+    }
+
+    /**
+     * @param cell flat index (y * width + x) of the cell
+     *
+     * @return number of moves from the cell to the nearest goal, or UNREACHABLE
+     */
+    public int getDistance(int cell) {
+        int d = distance[cell];
+        return d >= INFINITY ? UNREACHABLE : d;
+    }
+
+    @Override
+    public int estimate(int cell, int target) {
+        return getDistance(cell);
+    }
+
+    @Override
+    public GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                           int goalCount, int targetX, int targetY) {
+        update(gameMap, goalCells, goalCount);
+        int cell = startY * width + startX;
+        if (distance[cell] >= INFINITY) {
+            return null;
+        }
+
+        int[] steps = new int[distance[cell]];
+        for (int i = 0; i < steps.length; i++) {
+            int x = cell % width, y = cell / width;
+            int open = gameMap.getNeighborMask(cell);
+            for (int d = 0; d < 8; d++) {
+                if ((open & (1 << d)) == 0) continue;
+                int next = (y + DY[d]) * width + x + DX[d];
+                if (distance[next] == distance[cell] - 1) {
+                    cell = next;
+                    break;
+                }
+            }
+            steps[i] = cell;
+        }
+        return new GridPath(steps, steps.length, width);
+    }
+
+    /**
+     * Number of cells the last update had to set a distance for.
+     *
+     * @return count of touched cells
+     */
+    @Override
+    public int getExpandedCount() {
+        return touchedCount;
+    }
+
+    /**
+     * Breadth first search back from the goal cells over the whole map.
+     */
+    private void build(GridView gameMap, int[] goalCells, int goalCount) {
+        width = gameMap.getLengthX();
+        height = gameMap.getLengthY();
+        int cells = width * height;
+        if (distance == null || distance.length != cells) {
+            distance = new int[cells];
+            isGoal = new boolean[cells];
+            changedStamp = new boolean[cells];
+            lowered.resize(cells);
+        } else {
+            Arrays.fill(isGoal, false);
+        }
+        Arrays.fill(distance, INFINITY);
+        clearChangedCells();
+        touchedCount = 0;
+
+        goals = Arrays.copyOf(goalCells, goalCount);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int goal : goals) {
+            isGoal[goal] = true;
+            if (!gameMap.isBlocked(goal) && distance[goal] != 0) {
+                distance[goal] = 0;
+                queue.add(goal);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            touchedCount++;
+            int x = cell % width, y = cell / width;
+            int open = gameMap.getNeighborMask(cell);
+            for (int d = 0; d < 8; d++) {
+                if ((open & (1 << d)) == 0) continue;
+                int next = (y + DY[d]) * width + x + DX[d];
+                if (distance[next] == INFINITY) {
+                    distance[next] = distance[cell] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fixes the field after cells changed. A blocked cell raises every cell that was
+     * only downhill through it, then all the raised and freed cells get their
+     * distance back from their neighbors and pass it on in order of distance.
+     */
+    private void repair(GridView gameMap) {
+        touchedCount = 0;
+        lowered.clear();
+
+        for (int i = 0; i < changedCount; i++) {
+            int cell = changedCells[i];
+            if (gameMap.isBlocked(cell) && distance[cell] < INFINITY) {
+                distance[cell] = INFINITY;
+                raised.add(cell);
+            }
+        }
+        // raised cells are kept in changedCells after the changed ones to reseed them
+        int seedCount = changedCount;
+        while (!raised.isEmpty()) {
+            int cell = raised.poll();
+            touchedCount++;
+            int x = cell % width, y = cell / width;
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int next = ny * width + nx;
+                if (distance[next] >= INFINITY || isGoal[next] ||
+                    hasDownhillNeighbor(gameMap, next)) {
+                    continue;
+                }
+                distance[next] = INFINITY;
+                raised.add(next);
+                if (seedCount == changedCells.length) {
+                    changedCells = Arrays.copyOf(changedCells, seedCount * 2);
+                }
+                changedCells[seedCount++] = next;
+            }
+        }
+
+        for (int i = 0; i < seedCount; i++) {
+            int cell = changedCells[i];
+            if (gameMap.isBlocked(cell)) continue;
+            int best = isGoal[cell] ? 0 : bestFromNeighbors(gameMap, cell);
+            if (best < distance[cell]) {
+                distance[cell] = best;
+                push(cell, best);
+            }
+        }
+        while (!lowered.isEmpty()) {
+            int cell = lowered.poll();
+            touchedCount++;
+            int x = cell % width, y = cell / width;
+            int open = gameMap.getNeighborMask(cell);
+            for (int d = 0; d < 8; d++) {
+                if ((open & (1 << d)) == 0) continue;
+                int next = (y + DY[d]) * width + x + DX[d];
+                if (distance[cell] + 1 < distance[next]) {
+                    distance[next] = distance[cell] + 1;
+                    push(next, distance[next]);
+                }
+            }
+        }
+        clearChangedCells();
+    }
+
+    private void push(int cell, int key) {
+        if (lowered.contains(cell)) {
+            lowered.update(cell, key);
+        } else {
+            lowered.push(cell, key);
+        }
+    }
+
+    /**
+     * @return true if an open neighbor of the cell is one move closer to the goal
+     */
+    private boolean hasDownhillNeighbor(GridView gameMap, int cell) {
+        int x = cell % width, y = cell / width;
+        int open = gameMap.getNeighborMask(cell);
+        for (int d = 0; d < 8; d++) {
+            if ((open & (1 << d)) == 0) continue;
+            if (distance[(y + DY[d]) * width + x + DX[d]] == distance[cell] - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return one more than the smallest distance of an open neighbor of the cell
+     */
+    private int bestFromNeighbors(GridView gameMap, int cell) {
+        int x = cell % width, y = cell / width;
+        int open = gameMap.getNeighborMask(cell);
+        int best = INFINITY;
+        for (int d = 0; d < 8; d++) {
+            if ((open & (1 << d)) == 0) continue;
+            best = Math.min(best, distance[(y + DY[d]) * width + x + DX[d]] + 1);
+        }
+        return Math.min(best, INFINITY);
+    }
+
+    private void clearChangedCells() {
+        for (int i = 0; i < changedCount; i++) {
+            changedStamp[changedCells[i]] = false;
+        }
+        changedCount = 0;
+    }
+}
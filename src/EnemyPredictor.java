@@ -0,0 +1,214 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The EnemyPredictor Class guesses where the enemy units will be over the next turns
+ * from where they were seen so far. A unit that moved on its last turn is expected to
+ * go on the same way, sliding along whatever it runs into, until it can't go on, and
+ * to stay there. A unit that didn't move is expected to stay where it is. That fits
+ * units walking to a spot and standing guard there, like the blocker, which is what
+ * the enemy units on these maps do.
+ *
+ * The agent tells it where the units are every turn with observe, and it counts how
+ * often the cell it expected a unit on was the right one.
+ *
+ * @author Alexander Telich
+ */
+public class EnemyPredictor {
+    private final int horizon;
+    private final int confidence;
+    // the two last cells every unit was seen on, by unit ID: {before, now}
+    private final Map<Integer, int[]> history = new HashMap<>();
+    // cell every unit is expected on at the next observation, by unit ID
+    private final Map<Integer, Integer> expected = new HashMap<>();
+    private int hits, guesses;
+
+    /**
+     * Constructor declaration for EnemyPredictor
+     *
+     * @param horizon    number of turns ahead the trajectories go
+     * @param confidence number of moves along its trajectory a unit is trusted to
+     *                   make before it may stop anywhere
+     */
+    public EnemyPredictor(int horizon, int confidence) {
+        this.horizon = Math.max(1, horizon);
+        this.confidence = Math.max(0, confidence);
+    }
+
+    /**
+     * Records where the enemy units are now. Units that aren't given any more are
+     * forgotten.
+     *
+     * @param units where every enemy unit stands, by unit ID
+     * @param width x length of the map
+     */
+    public void observe(Map<Integer, AstarAgent.MapLocation> units, int width) {
+        history.keySet().retainAll(units.keySet());
+        for (Map.Entry<Integer, AstarAgent.MapLocation> unit : units.entrySet()) {
+            int cell = unit.getValue().y * width + unit.getValue().x;
+            Integer guess = expected.get(unit.getKey());
+            if (guess != null) {
+                guesses++;
+                if (guess == cell) hits++;
+            }
+            int[] seen = history.get(unit.getKey());
+            if (seen == null) {
+                history.put(unit.getKey(), new int[]{cell, cell});
+            } else {
+                seen[0] = seen[1];
+                seen[1] = cell;
+            }
+        }
+        expected.clear();
+    }
+
+    /**
+     * Predicts the trajectories of the units from the last observation on.
+     *
+     * @param map the map as it is now, with the units on it
+     *
+     * @return the prediction, with the observed cells at time 0
+     */
+    public Prediction predict(GridView map) {
+        int[][] trajectories = new int[history.size()][];
+        int i = 0;
+        for (Map.Entry<Integer, int[]> unit : history.entrySet()) {
+            int[] trajectory = trajectory(map, unit.getValue()[0], unit.getValue()[1]);
+            trajectories[i++] = trajectory;
+            expected.put(unit.getKey(), trajectory[Math.min(1, trajectory.length - 1)]);
+        }
+        return new Prediction(trajectories, confidence);
+    }
+
+    /**
+     * @return number of observed unit positions that were predicted a turn before
+     */
+    public int getGuessCount() {
+        return guesses;
+    }
+
+    /**
+     * @return number of those the prediction got right
+     */
+    public int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Carries on the unit's last move until it is blocked.
+     */
+    private int[] trajectory(GridView map, int before, int now) {
+        int width = map.getLengthX();
+        int x = now % width, y = now / width;
+        int dx = Integer.signum(x - before % width);
+        int dy = Integer.signum(y - before / width);
+        if (dx == 0 && dy == 0) {
+            return new int[]{now};
+        }
+        int[] cells = new int[horizon + 1];
+        cells[0] = now;
+        int length = 1;
+        while (length <= horizon) {
+            if (isOpen(map, x + dx, y + dy)) {
+                x += dx;
+                y += dy;
+            } else if (dx != 0 && dy != 0 && isOpen(map, x + dx, y)) {
+                // slides along the wall, and keeps going that way
+                x += dx;
+                dy = 0;
+            } else if (dx != 0 && dy != 0 && isOpen(map, x, y + dy)) {
+                y += dy;
+                dx = 0;
+            } else {
+                break;
+            }
+            cells[length++] = y * width + x;
+        }
+        return Arrays.copyOf(cells, length);
+    }
+
+    private static boolean isOpen(GridView map, int x, int y) {
+        return x >= 0 && y >= 0 && x < map.getLengthX() && y < map.getLengthY() &&
+               !map.isBlocked(x, y);
+    }
+
+    /**
+     * Where the units are expected over the next turns. Time 0 is the turn of the
+     * observation the prediction was made from. Past the end of its trajectory a unit
+     * stays on the last cell. The first confidence moves of a trajectory are trusted:
+     * the unit is on a cell on the turn it gets there and on the turn after, while it
+     * leaves. Further along it may stop on any cell, so a cell it gets to stays taken
+     * from then on. It never changes, so planners on other threads can read it.
+     */
+    public static final class Prediction {
+        private final int[][] trajectories;
+        private final int confidence;
+
+        Prediction(int[][] trajectories, int confidence) {
+            this.trajectories = trajectories;
+            this.confidence = confidence;
+        }
+
+        /**
+         * @return number of units predicted
+         */
+        public int getUnitCount() {
+            return trajectories.length;
+        }
+
+        /**
+         * @param unit index of the unit, below getUnitCount
+         *
+         * @return number of turns the unit is predicted to move, plus one
+         */
+        public int getLength(int unit) {
+            return trajectories[unit].length;
+        }
+
+        /**
+         * @param unit index of the unit, below getUnitCount
+         * @param time turns after the prediction was made
+         *
+         * @return flat index (y * width + x) of the cell the unit is expected on
+         */
+        public int getCell(int unit, int time) {
+            int[] trajectory = trajectories[unit];
+            return trajectory[Math.min(time, trajectory.length - 1)];
+        }
+
+        /**
+         * @param unit index of the unit, below getUnitCount
+         * @param time turns after the prediction was made
+         *
+         * @return true if the unit is trusted to have left the cell it is expected on at
+         *         the time two turns later, false if it may stay there for good
+         */
+        public boolean isPassing(int unit, int time) {
+            return time < confidence && time < trajectories[unit].length - 1;
+        }
+
+        /**
+         * Tells you if a footman can't be on the cell at the given time: a unit is
+         * expected on it then, or got to it before and may not have left yet.
+         *
+         * @param cell flat index of the cell
+         * @param time turns after the prediction was made
+         *
+         * @return true if the cell is taken
+         */
+        public boolean isOccupied(int cell, int time) {
+            for (int unit = 0; unit < trajectories.length; unit++) {
+                int[] trajectory = trajectories[unit];
+                int last = Math.min(time, trajectory.length - 1);
+                for (int i = 0; i <= last; i++) {
+                    if (trajectory[i] == cell &&
+                        (i >= time - 1 || !isPassing(unit, i))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
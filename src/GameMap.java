@@ -1,5 +1,13 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Use the GameMap class to conceptualize the map.
@@ -25,6 +33,10 @@ import java.util.Set;
  * System.out.println("there is a townhall at (2, 3)");
  * }
  *
+ * To move every enemy unit at once, once per turn -
+ * int changed = gameMap.updateUnitLocations(enemyLocationsByUnitID);
+ * int[] cells = gameMap.getChangedCells(versionYouPlannedOn);
+ *
  * To get the location of the enemy footman -
  * int[][] enemyLocation = gameMap.getEnemyPosition();
  * int enemyX = enemyLocation[0];
@@ -37,11 +49,52 @@ import java.util.Set;
  * To print out the appearance of the board -
  * gameMap.printMap();
  *
+ * To get a read-only copy for a planner that won't change when the enemy moves -
+ * GameMap.Snapshot snapshot = gameMap.snapshot();
+ *
+ * To get one only for as long as the planners need it -
+ * GameMap.Snapshot snapshot = gameMap.acquireSnapshot();
+ * ...
+ * snapshot.release();
+ *
+ * The board is stored as one flat byte[] with a cell type per index (index = y *
+ * width + x), plus a long[] bitboard with one blocked bit per cell for the planners'
+ * hot path, a NeighborCache with the open neighbor directions of every cell and a
+ * ComponentIndex with the connected area of every cell, so mayReach can tell right
+ * away when there is no path. All of them are copy-on-write: taking a snapshot just
+ * shares them, and the next change to the map copies them first. That copy is skipped
+ * when the snapshot was only handed out by acquireSnapshot and every holder released
+ * it again, then the map is changed in place.
+ *
  * @author Patrick Do
  */
-public class GameMap {
+public class GameMap implements GridView {
+    // unit ID updateEnemyLocation moves, Sepia unit IDs are never negative
+    private static final int ENEMY_FOOTMAN = -1;
+    // number of batches getChangedCells can look back over
+    private static final int CHANGE_LOG_SIZE = 32;
     
-    private int[][] generatedMap;
+    private final int width, height;
+    // type of each cell, 0 free, 1 tree, 2 enemy, 3 townhall
+    private byte[] cells;
+    // one bit per cell, set when the cell type isn't 0
+    private long[] blocked;
+    // open neighbor directions of every cell
+    private NeighborCache neighbors;
+    // connected area of every cell, null while the constructor adds the trees
+    private ComponentIndex components;
+    // the snapshot sharing the current arrays, null once the map changed since
+    private Snapshot lastSnapshot;
+    // hash of the cell types, 0 until it is asked for after a change
+    private long fingerprint;
+    // bumped by every batch of unit moves that changed a cell, the map's version
+    private long changeCount;
+    // cells the last batches changed, the batch of version v in slot v % CHANGE_LOG_SIZE
+    private final int[][] changeLog = new int[CHANGE_LOG_SIZE][];
+    // cell every enemy unit stands on by unit ID
+    private final Map<Integer, Integer> unitCells = new HashMap<>();
+    // told about every cell that becomes blocked or free
+    private final List<ChangeListener> listeners = new ArrayList<>();
     private int[] enemyLocation = new int[2];
     
     /**
@@ -57,9 +110,7 @@ public class GameMap {
     public GameMap(int xExtent, int yExtent, AstarAgent.MapLocation enemyFootmanLoc,
                    Set<AstarAgent.MapLocation> resourceLocations,
                    AstarAgent.MapLocation townHallLoc) {
-        generatedMap = new int[xExtent][yExtent];
-        addResourceLocations(resourceLocations, generatedMap);
-        addTownHallLocation(townHallLoc);
+        this(xExtent, yExtent, resourceLocations, townHallLoc);
         enemyLocation[0] = enemyFootmanLoc.x;
         enemyLocation[1] = enemyFootmanLoc.y;
         updateEnemyLocation(enemyFootmanLoc);
@@ -77,9 +128,14 @@ public class GameMap {
     public GameMap(int xExtent, int yExtent,
                    Set<AstarAgent.MapLocation> resourceLocations,
                    AstarAgent.MapLocation townHallLoc) {
-        generatedMap = new int[xExtent][yExtent];
-        addResourceLocations(resourceLocations, generatedMap);
+        width = xExtent;
+        height = yExtent;
+        cells = new byte[xExtent * yExtent];
+        blocked = new long[(xExtent * yExtent + 63) >>> 6];
+        neighbors = new NeighborCache(xExtent, yExtent);
+        addResourceLocations(resourceLocations);
         addTownHallLocation(townHallLoc);
+        components = new ComponentIndex(this);
         enemyLocation[0] = -1;
         enemyLocation[1] = -1;
     }
@@ -94,7 +150,7 @@ public class GameMap {
      * @return
      */
     public int getPosition(int x, int y) {
-        return generatedMap[x][y];
+        return cells[y * width + x];
     }
     
     /**
@@ -106,8 +162,47 @@ public class GameMap {
      *
      * @return
      */
+    @Override
     public boolean isBlocked(int x, int y) {
-        return generatedMap[x][y] != 0;
+        return isBlocked(y * width + x);
+    }
+    
+    /**
+     * Tells you if the cell with the given flat index (y * width + x) is blocked.
+     *
+     * @param index
+     *
+     * @return
+     */
+    @Override
+    public boolean isBlocked(int index) {
+        return (blocked[index >>> 6] & (1L << index)) != 0;
+    }
+    
+    /**
+     * Tells you which neighbors of a cell can be walked to.
+     *
+     * @param index
+     *
+     * @return
+     */
+    @Override
+    public int getNeighborMask(int index) {
+        return neighbors.getMask(index);
+    }
+    
+    /**
+     * Tells you if a path from the cell to one of the goal cells may exist, without
+     * searching for one.
+     *
+     * @param index     y * width + x of the footman's cell
+     * @param goalCells flat indices of the goal cells
+     * @param goalCount number of entries of goalCells that are used
+     *
+     * @return false if none of the goal cells is in the same area as the cell
+     */
+    public boolean mayReach(int index, int[] goalCells, int goalCount) {
+        return components.mayReach(index, goalCells, goalCount);
     }
     
     /**
@@ -119,14 +214,30 @@ public class GameMap {
     public int[] getEnemyPosition() {
         return enemyLocation;
     }
-    
+
+    /**
+     * Gives the cell every enemy unit the map keeps track of stands on, so the agent
+     * can tell which cells they may step onto next.
+     *
+     * @return flat indices (y * width + x) of the cells, one per unit
+     */
+    public int[] getUnitCells() {
+        int[] unitCellArray = new int[unitCells.size()];
+        int i = 0;
+        for (int cell : unitCells.values()) {
+            unitCellArray[i++] = cell;
+        }
+        return unitCellArray;
+    }
+
     /**
      * Tells you the width of the GameMap.
      *
      * @return
      */
+    @Override
     public int getLengthX() {
-        return generatedMap.length;
+        return width;
     }
     
     /**
@@ -134,25 +245,220 @@ public class GameMap {
      *
      * @return
      */
+    @Override
     public int getLengthY() {
-        return generatedMap[0].length;
+        return height;
     }
     
+    /**
+     * Builds the board in the old int[x][y] layout. This is a copy for callers that
+     * still want a 2D array, changing it does not change the map.
+     *
+     * @return
+     */
     public int[][] getGeneratedMap() {
+        int[][] generatedMap = new int[width][height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                generatedMap[x][y] = cells[y * width + x];
+            }
+        }
         return generatedMap;
     }
     
+    /**
+     * Gives a read-only view of the map as it is now. The view shares the map's arrays
+     * until the map changes, so taking one is cheap, and it never sees later changes.
+     *
+     * @return
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = currentSnapshot();
+        snapshot.pinned = true;
+        return snapshot;
+    }
+    
+    /**
+     * Gives the same view as snapshot, but only until it is released: once every
+     * acquireSnapshot call was matched by Snapshot.release, and nobody got it from
+     * snapshot, the next change writes the map's arrays in place instead of copying
+     * them. A released snapshot must not be read any more.
+     *
+     * @return
+     */
+    public Snapshot acquireSnapshot() {
+        Snapshot snapshot = currentSnapshot();
+        snapshot.holds.incrementAndGet();
+        return snapshot;
+    }
+    
+    private Snapshot currentSnapshot() {
+        if (lastSnapshot == null) {
+            lastSnapshot = new Snapshot(width, height, cells, blocked, neighbors,
+                                        components);
+        }
+        return lastSnapshot;
+    }
+    
+    /**
+     * Hash of the size and of the type of every cell, so two maps that look the same
+     * have the same fingerprint. It is kept until the map changes.
+     *
+     * @return
+     */
+    public long getFingerprint() {
+        if (fingerprint == 0) {
+            long hash = 1125899906842597L + 31L * width + height;
+            for (byte cell : cells) {
+                hash = 31 * hash + cell;
+            }
+            fingerprint = hash == 0 ? 1 : hash;
+        }
+        return fingerprint;
+    }
+    
+    /**
+     * Counts the changes to the map, so caches can tell if anything they hold was
+     * computed on an older version of it without hashing the whole map. A batch of
+     * unit moves counts once however many cells it changed.
+     *
+     * @return number of times the map changed so far
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+    
+    /**
+     * Gives the cells that changed between blocked and free since a version of the
+     * map, so a planner or cache can check just those. The array must not be changed.
+     *
+     * @param sinceVersion getChangeCount of the version the caller knows about
+     *
+     * @return the cells, each once, or null if the map doesn't remember that far back
+     * and the caller has to treat everything as changed
+     */
+    public int[] getChangedCells(long sinceVersion) {
+        if (sinceVersion >= changeCount) {
+            return new int[0];
+        }
+        if (changeCount - sinceVersion > CHANGE_LOG_SIZE) {
+            return null;
+        }
+        if (changeCount - sinceVersion == 1) {
+            return changeLog[(int) (changeCount % CHANGE_LOG_SIZE)];
+        }
+        int length = 0;
+        for (long version = sinceVersion + 1; version <= changeCount; version++) {
+            length += changeLog[(int) (version % CHANGE_LOG_SIZE)].length;
+        }
+        int[] changed = new int[length];
+        length = 0;
+        for (long version = sinceVersion + 1; version <= changeCount; version++) {
+            int[] batch = changeLog[(int) (version % CHANGE_LOG_SIZE)];
+            System.arraycopy(batch, 0, changed, length, batch.length);
+            length += batch.length;
+        }
+        // a cell the enemy left and came back to is in more than one batch
+        Arrays.sort(changed);
+        int count = 0;
+        for (int i = 0; i < changed.length; i++) {
+            if (i == 0 || changed[i] != changed[i - 1]) {
+                changed[count++] = changed[i];
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+    
+    /**
+     * Registers a listener that is told about every cell that changes between blocked
+     * and free from now on.
+     *
+     * @param listener
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Stops telling the listener about changes.
+     *
+     * @param listener
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
     /**
      * Moves the footman from its last known position on the GameMap to its current
-     * new position.
+     * new position. Nothing changes if it is still where it was. Other enemy units
+     * stay where they are.
      *
      * @param enemyFootmanLoc
      */
     public void updateEnemyLocation(AstarAgent.MapLocation enemyFootmanLoc) {
-        generatedMap[enemyLocation[0]][enemyLocation[1]] = 0;
         enemyLocation[0] = enemyFootmanLoc.x;
         enemyLocation[1] = enemyFootmanLoc.y;
-        generatedMap[enemyLocation[0]][enemyLocation[1]] = 2;
+        moveUnits(Collections.singletonMap(ENEMY_FOOTMAN, enemyFootmanLoc), false);
+    }
+    
+    /**
+     * Puts every enemy unit where it stands now in one pass. Units that were on the
+     * map before but aren't given any more are taken off, so the map should get every
+     * moving enemy unit each turn. If any cell changed, the map gets one new version
+     * and getChangedCells gives the cells.
+     *
+     * @param unitLocations where every enemy unit stands, by unit ID
+     *
+     * @return number of cells that changed between blocked and free
+     */
+    public int updateUnitLocations(Map<Integer, AstarAgent.MapLocation> unitLocations) {
+        return moveUnits(unitLocations, true);
+    }
+    
+    /**
+     * Frees the cells the moved units left and blocks the ones they went to. A cell
+     * one unit leaves and another one enters stays blocked and isn't a change.
+     *
+     * @param moves         where the units stand now, by unit ID
+     * @param removeMissing true to take units that aren't in moves off the map
+     *
+     * @return number of cells that changed
+     */
+    private int moveUnits(Map<Integer, AstarAgent.MapLocation> moves,
+                          boolean removeMissing) {
+        Set<Integer> occupied = new HashSet<>();
+        for (AstarAgent.MapLocation location : moves.values()) {
+            occupied.add(location.y * width + location.x);
+        }
+        int[] changed = new int[unitCells.size() + moves.size()];
+        int count = 0;
+        Iterator<Map.Entry<Integer, Integer>> iter = unitCells.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Integer, Integer> unit = iter.next();
+            if (!moves.containsKey(unit.getKey())) {
+                if (!removeMissing) continue;
+                iter.remove();
+            }
+            int cell = unit.getValue();
+            // trees and the townhall stay, and so does a cell another unit moved to
+            if (cells[cell] == 2 && !occupied.contains(cell)) {
+                setCell(cell, 0);
+                changed[count++] = cell;
+            }
+        }
+        for (Map.Entry<Integer, AstarAgent.MapLocation> unit : moves.entrySet()) {
+            int cell = unit.getValue().y * width + unit.getValue().x;
+            unitCells.put(unit.getKey(), cell);
+            if (cells[cell] == 0) {
+                setCell(cell, 2);
+                changed[count++] = cell;
+            }
+        }
+        if (count > 0) {
+            changeCount++;
+            changeLog[(int) (changeCount % CHANGE_LOG_SIZE)] = Arrays.copyOf(changed, count);
+        }
+        return count;
     }
     
     /**
@@ -161,14 +467,12 @@ public class GameMap {
      * no new resources will be added to the board.
      *
      * @param resourceLocations
-     * @param generatedMap
      */
-    private void addResourceLocations(Set<AstarAgent.MapLocation> resourceLocations,
-                                      int[][] generatedMap) {
+    private void addResourceLocations(Set<AstarAgent.MapLocation> resourceLocations) {
         Iterator<AstarAgent.MapLocation> iter = resourceLocations.iterator();
         while (iter.hasNext()) {
             AstarAgent.MapLocation tree = iter.next();
-            generatedMap[tree.x][tree.y] = 1;
+            setCell(tree.y * width + tree.x, 1);
         }
     }
     
@@ -180,7 +484,41 @@ public class GameMap {
      * @param townHallLoc
      */
     private void addTownHallLocation(AstarAgent.MapLocation townHallLoc) {
-        generatedMap[townHallLoc.x][townHallLoc.y] = 3;
+        setCell(townHallLoc.y * width + townHallLoc.x, 3);
+    }
+    
+    /**
+     * Changes the type of a cell, first copying the arrays if a snapshot still uses
+     * them.
+     *
+     * @param index y * width + x
+     * @param type  0 free, 1 tree, 2 enemy, 3 townhall
+     */
+    private void setCell(int index, int type) {
+        if (lastSnapshot != null && lastSnapshot.isHeld()) {
+            cells = cells.clone();
+            blocked = blocked.clone();
+            neighbors = neighbors.copy();
+            components = components.copy();
+        }
+        lastSnapshot = null;
+        fingerprint = 0;
+        boolean wasBlocked = isBlocked(index);
+        cells[index] = (byte) type;
+        if (type == 0) {
+            blocked[index >>> 6] &= ~(1L << index);
+        } else {
+            blocked[index >>> 6] |= 1L << index;
+        }
+        if (wasBlocked != (type != 0)) {
+            neighbors.cellChanged(index, type != 0);
+            if (components != null) {
+                components.cellChanged(index, type != 0);
+            }
+            for (ChangeListener listener : listeners) {
+                listener.cellChanged(index, type != 0);
+            }
+        }
     }
     
     /**
@@ -189,11 +527,114 @@ public class GameMap {
      * off.
      */
     private void printMap() {
-        for (int k = 0; k < generatedMap[0].length; k++) {
-            for (int j = 0; j < generatedMap.length; j++) {
-                System.out.print(generatedMap[j][k] + " ");
+        for (int k = 0; k < height; k++) {
+            for (int j = 0; j < width; j++) {
+                System.out.print(cells[k * width + j] + " ");
             }
             System.out.println();
         }
     }
+    
+    /**
+     * Gets told when a cell of the GameMap becomes blocked or free, so planners can
+     * repair what they have cached instead of starting over.
+     */
+    public interface ChangeListener {
+        
+        /**
+         * Called after the cell changed.
+         *
+         * @param index   y * width + x of the cell
+         * @param blocked true if the cell is blocked now
+         */
+        void cellChanged(int index, boolean blocked);
+    }
+    
+    /**
+     * An immutable view of the GameMap at the time snapshot() was called. It can be
+     * read from any thread while the live map keeps changing.
+     */
+    public static final class Snapshot implements GridView {
+        private final int width, height;
+        private final byte[] cells;
+        private final long[] blocked;
+        private final NeighborCache neighbors;
+        private final ComponentIndex components;
+        // set once snapshot gave it out, then it is kept for good
+        private boolean pinned;
+        // acquireSnapshot calls not released yet, released on any thread
+        private final AtomicInteger holds = new AtomicInteger();
+        
+        private Snapshot(int width, int height, byte[] cells, long[] blocked,
+                         NeighborCache neighbors, ComponentIndex components) {
+            this.width = width;
+            this.height = height;
+            this.cells = cells;
+            this.blocked = blocked;
+            this.neighbors = neighbors;
+            this.components = components;
+        }
+        
+        /**
+         * Get the type of unit at the given position, same as GameMap.getPosition.
+         *
+         * @param x
+         * @param y
+         *
+         * @return
+         */
+        public int getPosition(int x, int y) {
+            return cells[y * width + x];
+        }
+        
+        @Override
+        public boolean isBlocked(int x, int y) {
+            return isBlocked(y * width + x);
+        }
+        
+        @Override
+        public boolean isBlocked(int index) {
+            return (blocked[index >>> 6] & (1L << index)) != 0;
+        }
+        
+        @Override
+        public int getNeighborMask(int index) {
+            return neighbors.getMask(index);
+        }
+        
+        /**
+         * Tells you if a path may exist, same as GameMap.mayReach.
+         *
+         * @param index
+         * @param goalCells
+         * @param goalCount
+         *
+         * @return
+         */
+        public boolean mayReach(int index, int[] goalCells, int goalCount) {
+            return components.mayReach(index, goalCells, goalCount);
+        }
+        
+        @Override
+        public int getLengthX() {
+            return width;
+        }
+        
+        @Override
+        public int getLengthY() {
+            return height;
+        }
+        
+        /**
+         * Gives back a snapshot that came from acquireSnapshot. It can be called from
+         * any thread, once per acquireSnapshot call.
+         */
+        public void release() {
+            holds.decrementAndGet();
+        }
+        
+        private boolean isHeld() {
+            return pinned || holds.get() > 0;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,326 @@
+import java.util.Arrays;
+
+/**
+ * The GridAstar Class is the search engine behind AstarAgent.AstarSearch. It works
+ * directly on flat cell indices (index = y * width + x) and keeps all of its per-cell
+ * state in primitive arrays that are reused between plans, so once the arrays have
+ * been sized for a map no objects are created per expanded node.
+ *
+ * Instead of clearing the arrays before every search, each search bumps a generation
+ * number and a cell only counts as seen/closed when its stamp matches the current
+ * generation.
+ *
+ * @author Alexander Telich
+ */
+public class GridAstar implements PathPlanner {
+    // offsets of the 8 neighbors in the same order AstarNode.getNeighbors() uses
+    static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    private int width, height;
+    // cost from the start to each cell
+    private int[] gValue;
+    // the cell each cell was reached from
+    private int[] parent;
+    // generation stamps telling us if gValue/parent are valid and if a cell is closed
+    private int[] seenStamp;
+    private int[] closedStamp;
+    // generation stamps marking the goal cells of the current search
+    private int[] goalStamp;
+    private int generation;
+
+    // frontier of the search, keyed by f value
+    private OpenList openList;
+
+    // estimate of the moves left, Chebyshev distance to the nearest goal when null
+    private Heuristic heuristic;
+    // goal cells of the current search
+    private int[] goalCells;
+    private int goalCount;
+
+    // neighbors to skip, none when null
+    private SearchPruning pruning;
+    private int prunedCount;
+    private boolean fellBack;
+
+    private int expandedCount;
+
+    /**
+     * Constructor declaration for GridAstar
+     *
+     * @param width  x length of the maps that will be searched
+     * @param height y length of the maps that will be searched
+     */
+    public GridAstar(int width, int height) {
+        this(width, height, new IndexedMinHeap());
+    }
+    
+    /**
+     * Constructor declaration for GridAstar with a specific open list
+     *
+     * @param width    x length of the maps that will be searched
+     * @param height   y length of the maps that will be searched
+     * @param openList the priority queue to keep the frontier in
+     */
+    public GridAstar(int width, int height, OpenList openList) {
+        this.openList = openList;
+        resize(width, height);
+    }
+
+    /**
+     * Makes sure the scratch arrays fit a map of the given size. Only allocates when
+     * the size actually changes.
+     *
+     * @param width  x length of the map
+     * @param height y length of the map
+     */
+    public void resize(int width, int height) {
+        if (gValue != null && this.width == width && this.height == height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        int cells = width * height;
+        gValue = new int[cells];
+        parent = new int[cells];
+        seenStamp = new int[cells];
+        closedStamp = new int[cells];
+        goalStamp = new int[cells];
+        generation = 0;
+        openList.resize(cells);
+    }
+    
+    /**
+     * Swaps the priority queue the frontier is kept in.
+     *
+     * @param openList an IndexedMinHeap or a BucketQueue
+     */
+    public void setOpenList(OpenList openList) {
+        openList.resize(width * height);
+        this.openList = openList;
+    }
+
+    /**
+     * Swaps the estimate of the moves left from a cell.
+     *
+     * @param heuristic a Heuristic such as a DistanceField, or null for the Chebyshev
+     *                  distance to the nearest goal cell
+     */
+    public void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Sets the strategy that picks neighbors to skip, such as the QuadrantPruning of the
+     * original AstarSearch.
+     *
+     * @param pruning the strategy, or null to search every neighbor
+     */
+    public void setPruning(SearchPruning pruning) {
+        this.pruning = pruning;
+    }
+
+    /**
+     * Runs A* from the start cell until one of the goal cells is closed. If the pruning
+     * skipped any neighbor and no goal was found, the neighbors that were skipped may
+     * have been the only way to it, so unless the pruning rules that out the search is
+     * run again without pruning.
+     *
+     * @param gameMap   the map to search, either the live GameMap or a snapshot of it
+     * @param startX    x coordinate of the footman
+     * @param startY    y coordinate of the footman
+     * @param goalCells flat indices of the cells that end the search
+     * @param goalCount number of entries of goalCells that are used
+     * @param targetX   x coordinate the heuristic measures to
+     * @param targetY   y coordinate the heuristic measures to
+     *
+     * @return the cells to move to, first move first, or null if none of the goal
+     * cells can be reached
+     */
+    @Override
+    public GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                           int goalCount, int targetX, int targetY) {
+        resize(gameMap.getLengthX(), gameMap.getLengthY());
+        fellBack = false;
+        GridPath path = run(gameMap, startX, startY, goalCells, goalCount, targetX,
+                            targetY, pruning);
+        if (path == null && prunedCount > 0 && pruning.canHideGoal(goalCells, goalCount)) {
+            int expanded = expandedCount;
+            fellBack = true;
+            path = run(gameMap, startX, startY, goalCells, goalCount, targetX, targetY,
+                       null);
+            expandedCount += expanded;
+        }
+        return path;
+    }
+
+    /**
+     * Number of cells expanded by the last search, the retry without pruning included.
+     *
+     * @return count of closed cells
+     */
+    @Override
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    /**
+     * @return true if the last search found nothing with pruning and was run again
+     * without it
+     */
+    public boolean didFallBack() {
+        return fellBack;
+    }
+
+    /**
+     * One A* search with the given pruning.
+     */
+    private GridPath run(GridView gameMap, int startX, int startY, int[] goalCells,
+                         int goalCount, int targetX, int targetY,
+                         SearchPruning pruning) {
+        nextGeneration();
+        expandedCount = 0;
+        prunedCount = 0;
+        openList.clear();
+        this.goalCells = goalCells;
+        this.goalCount = goalCount;
+
+        for (int i = 0; i < goalCount; i++) {
+            goalStamp[goalCells[i]] = generation;
+        }
+
+        int start = startY * width + startX;
+        int target = targetY * width + targetX;
+        int startEstimate = estimate(start, target);
+        if (startEstimate == Heuristic.UNREACHABLE) {
+            return null;
+        }
+        if (pruning != null) {
+            pruning.begin(gameMap, start, target);
+        }
+
+        gValue[start] = 0;
+        parent[start] = -1;
+        seenStamp[start] = generation;
+        openList.insert(start, startEstimate);
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+
+            if (goalStamp[current] == generation) {
+                return buildPath(current);
+            }
+
+            closedStamp[current] = generation;
+            expandedCount++;
+
+            int x = current % width;
+            int y = current / width;
+            int tentativeG = gValue[current] + 1;
+            int open = gameMap.getNeighborMask(current);
+
+            for (int i = 0; i < 8; i++) {
+                if ((open & (1 << i)) == 0) continue;
+
+                int nx = x + DX[i];
+                int ny = y + DY[i];
+                int neighbor = ny * width + nx;
+                if (closedStamp[neighbor] == generation) continue;
+                if (pruning != null && goalStamp[neighbor] != generation &&
+                    pruning.prune(current, neighbor, expandedCount)) {
+                    prunedCount++;
+                    continue;
+                }
+                int h = estimate(neighbor, target);
+                if (h == Heuristic.UNREACHABLE) continue;
+
+                if (seenStamp[neighbor] != generation) {
+                    seenStamp[neighbor] = generation;
+                    gValue[neighbor] = tentativeG;
+                    parent[neighbor] = current;
+                    openList.insert(neighbor, tentativeG + h);
+                } else if (tentativeG < gValue[neighbor]) {
+                    // the neighbor is not closed, so it is still in the open list
+                    gValue[neighbor] = tentativeG;
+                    parent[neighbor] = current;
+                    openList.decreaseKey(neighbor, tentativeG + h);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chebyshev distance, the same heuristic as AstarNode.getHeuristic.
+     */
+    static int heuristic(int x, int y, int targetX, int targetY) {
+        return Math.max(Math.abs(targetX - x), Math.abs(targetY - y));
+    }
+
+    /**
+     * Chebyshev distance to the nearest of the goal cells, or Heuristic.UNREACHABLE if
+     * there are none.
+     */
+    static int nearestGoal(int x, int y, int[] goalCells, int goalCount, int width) {
+        int best = Heuristic.UNREACHABLE;
+        for (int i = 0; i < goalCount; i++) {
+            best = Math.min(best, heuristic(x, y, goalCells[i] % width,
+                                            goalCells[i] / width));
+        }
+        return best;
+    }
+
+    /**
+     * Tells you if the goal cells a planner kept from an earlier search are the ones
+     * it is given now, in the same order, so what it built for them still holds.
+     *
+     * @param goals     goal cells kept, or null if there are none yet
+     * @param goalCells goal cells of the new search
+     * @param goalCount number of entries of goalCells that are used
+     *
+     * @return true if they are the same
+     */
+    static boolean sameGoals(int[] goals, int[] goalCells, int goalCount) {
+        if (goals == null || goals.length != goalCount) return false;
+        for (int i = 0; i < goalCount; i++) {
+            if (goals[i] != goalCells[i]) return false;
+        }
+        return true;
+    }
+
+    private int estimate(int cell, int target) {
+        if (heuristic != null) {
+            return heuristic.estimate(cell, target);
+        }
+        return nearestGoal(cell % width, cell / width, goalCells, goalCount, width);
+    }
+
+    /**
+     * Walks the parent array back from the goal cell. The start cell is not included.
+     */
+    private GridPath buildPath(int cell) {
+        int length = 0;
+        for (int step = cell; parent[step] != -1; step = parent[step]) {
+            length++;
+        }
+        int[] cells = new int[length];
+        for (int i = length - 1; i >= 0; i--) {
+            cells[i] = cell;
+            cell = parent[cell];
+        }
+        return new GridPath(cells, length, width);
+    }
+
+    /**
+     * Starts a new search generation, clearing the stamps once the counter wraps.
+     */
+    private void nextGeneration() {
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(seenStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            Arrays.fill(goalStamp, 0);
+            generation = 1;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * The GridPath Class is a path the way the planners build it: the flat indices (y *
+ * width + x) of the cells it moves to, first move first, packed in one int[], with a
+ * cursor at the next cell to move to. Walking the path only moves the cursor, so a
+ * turn of following it costs no allocation, where the Stack of MapLocations it
+ * replaces was a synchronized Vector with an object per step.
+ *
+ * The cells never change once the path is made, so paths can share their array:
+ * suffix gives the rest of a path from some step on without copying anything, which
+ * is how the path cache hands out cached paths and parts of them, and splice makes a
+ * new path when only a stretch of an old one has to change. Every path has a cursor
+ * of its own.
+ *
+ * @author Alexander Telich
+ */
+public final class GridPath {
+    private final int[] cells;
+    // cells[cursor] is the next cell, cells[end - 1] the last one
+    private int cursor;
+    private final int end;
+    private final int width;
+
+    /**
+     * Makes a path of the first length cells of the array. The array is used as it
+     * is, so it must not be changed afterwards.
+     *
+     * @param cells  flat indices of the cells the path moves to, first move first
+     * @param length number of cells of the array in the path
+     * @param width  x length of the map
+     */
+    public GridPath(int[] cells, int length, int width) {
+        this(cells, 0, length, width);
+    }
+
+    private GridPath(int[] cells, int cursor, int end, int width) {
+        this.cells = cells;
+        this.cursor = cursor;
+        this.end = end;
+        this.width = width;
+    }
+
+    /**
+     * A path with no moves, for a footman that is where it has to be.
+     *
+     * @param width x length of the map
+     *
+     * @return the empty path
+     */
+    public static GridPath empty(int width) {
+        return new GridPath(new int[0], 0, 0, width);
+    }
+
+    /**
+     * @return number of cells left to move to
+     */
+    public int size() {
+        return end - cursor;
+    }
+
+    /**
+     * @return true if there are no cells left to move to
+     */
+    public boolean isEmpty() {
+        return cursor == end;
+    }
+
+    /**
+     * Gives a cell of the rest of the path.
+     *
+     * @param step 0 for the next cell, 1 for the one after it, and so on
+     *
+     * @return flat index of the cell
+     */
+    public int get(int step) {
+        if (step < 0 || step >= end - cursor) {
+            throw new IndexOutOfBoundsException("step " + step + " of " + (end - cursor));
+        }
+        return cells[cursor + step];
+    }
+
+    /**
+     * @param step 0 for the next cell, 1 for the one after it, and so on
+     *
+     * @return x coordinate of the cell
+     */
+    public int getX(int step) {
+        return get(step) % width;
+    }
+
+    /**
+     * @param step 0 for the next cell, 1 for the one after it, and so on
+     *
+     * @return y coordinate of the cell
+     */
+    public int getY(int step) {
+        return get(step) / width;
+    }
+
+    /**
+     * Moves the cursor past the next cell.
+     *
+     * @return flat index of the cell that was next
+     */
+    public int next() {
+        if (cursor == end) {
+            throw new NoSuchElementException();
+        }
+        return cells[cursor++];
+    }
+
+    /**
+     * Where the next cell is in the array this path shares with its suffixes and the
+     * path it came from. Counting from there tells how far a cell found earlier is
+     * ahead now, which is what PathIndex does.
+     *
+     * @return index of the next cell in the array
+     */
+    public int getPosition() {
+        return cursor;
+    }
+
+    /**
+     * @return x length of the map the path is on
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gives the rest of the path from a step on, sharing the cells with this path.
+     * The new path has its own cursor, so walking one doesn't move the other.
+     *
+     * @param step 0 for all of the rest of the path, 1 to leave out the next cell, and
+     *             so on
+     *
+     * @return the new path
+     */
+    public GridPath suffix(int step) {
+        if (step < 0 || step > end - cursor) {
+            throw new IndexOutOfBoundsException("step " + step + " of " + (end - cursor));
+        }
+        return new GridPath(cells, cursor + step, end, width);
+    }
+
+    /**
+     * Makes a new path that is the rest of this one with the steps from one step to
+     * another swapped for the rest of a second path.
+     *
+     * @param from        first step that is replaced, 0 for the next cell
+     * @param to          first step after the replaced ones that is kept
+     * @param replacement the steps that go in their place
+     *
+     * @return the new path
+     */
+    public GridPath splice(int from, int to, GridPath replacement) {
+        if (from < 0 || from > to || to > end - cursor) {
+            throw new IndexOutOfBoundsException("steps " + from + " to " + to + " of " +
+                                                (end - cursor));
+        }
+        int kept = end - cursor - to;
+        int[] spliced = new int[from + replacement.size() + kept];
+        System.arraycopy(cells, cursor, spliced, 0, from);
+        System.arraycopy(replacement.cells, replacement.cursor, spliced, from,
+                         replacement.size());
+        System.arraycopy(cells, cursor + to, spliced, from + replacement.size(), kept);
+        return new GridPath(spliced, spliced.length, width);
+    }
+
+    /**
+     * Goes over the cells left, first move first, without moving the cursor.
+     *
+     * @param action what to do with each cell
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = cursor; i < end; i++) {
+            action.accept(cells[i]);
+        }
+    }
+
+    /**
+     * Goes over the cells left, first move first, without moving the cursor.
+     *
+     * @return an iterator over the flat indices of the cells
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = cursor;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next == end) {
+                    throw new NoSuchElementException();
+                }
+                return cells[next++];
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the cells left, first move first
+     */
+    public int[] toArray() {
+        return Arrays.copyOfRange(cells, cursor, end);
+    }
+}
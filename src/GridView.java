@@ -0,0 +1,48 @@
+/**
+ * The GridView interface is the read-only side of a map that the planners search.
+ * Cells can be asked for by coordinates or by flat index (index = y * width + x),
+ * which is what the search engines use on their hot path.
+ *
+ * @author Alexander Telich
+ */
+public interface GridView {
+    
+    /**
+     * @return the width of the map
+     */
+    int getLengthX();
+    
+    /**
+     * @return the height of the map
+     */
+    int getLengthY();
+    
+    /**
+     * Tells you if the given space is blocked by a tree, an enemy or a townhall.
+     *
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     *
+     * @return true if the cell can't be walked on
+     */
+    boolean isBlocked(int x, int y);
+    
+    /**
+     * Tells you if the cell with the given flat index is blocked.
+     *
+     * @param index y * width + x
+     *
+     * @return true if the cell can't be walked on
+     */
+    boolean isBlocked(int index);
+    
+    /**
+     * Tells you which of the 8 neighbors of a cell are on the map and not blocked.
+     *
+     * @param index y * width + x
+     *
+     * @return bit mask with bit d set if the neighbor in direction d is open, using the
+     * direction numbering of GridAstar.DX/DY
+     */
+    int getNeighborMask(int index);
+}
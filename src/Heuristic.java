@@ -0,0 +1,24 @@
+/**
+ * The Heuristic interface lets GridAstar estimate the cost to the goal with something
+ * better than the Chebyshev distance it uses by default.
+ *
+ * @author Alexander Telich
+ */
+public interface Heuristic {
+
+    /**
+     * Returned for a cell the goal can't be reached from at all.
+     */
+    int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Estimates the number of moves left from a cell. It must never be more than the
+     * real number of moves, or A* may not find the shortest path.
+     *
+     * @param cell   flat index (y * width + x) of the cell
+     * @param target flat index of the cell the search is headed for
+     *
+     * @return lower bound of the moves from cell to the goal, or UNREACHABLE
+     */
+    int estimate(int cell, int target);
+}
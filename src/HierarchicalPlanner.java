@@ -0,0 +1,682 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The HierarchicalPlanner Class is an HPA* PathPlanner for maps that are too big to
+ * search cell by cell. The map is cut into square clusters, and wherever two side by
+ * side clusters touch through open cells an entrance is made (one in the middle of a
+ * short opening, one at each end of a long one). The entrance cells are the nodes of
+ * an abstract graph, with an edge of cost 1 across every entrance and an edge between
+ * every two nodes of a cluster that can reach each other inside it.
+ *
+ * A plan connects the start and the goal cells to the nodes of their clusters, searches
+ * the abstract graph and then turns each abstract edge into cells. That refinement
+ * only happens for edges a path actually uses, and is remembered until the cluster
+ * changes.
+ *
+ * The planner has to be registered with GameMap.addChangeListener. A changed cell only
+ * marks its cluster (and the clusters sharing that border) dirty, and only those are
+ * rebuilt before the next plan.
+ *
+ * HPA* paths are close to, but not always, the shortest ones: they go through the
+ * entrances, and clusters that only touch diagonally at a corner are not connected in
+ * the abstract graph. The refined path is smoothed: a breadth first search of a few
+ * moves around each of its cells looks for a shorter way to a later cell of the path
+ * or to another goal cell. That takes out most of the detours through the entrances,
+ * but a path can still be a few moves longer than the shortest one, more so with
+ * small clusters.
+ * When the abstract graph has no path the whole map is searched with GridAstar before
+ * giving up.
+ *
+ * @author Alexander Telich
+ */
+public class HierarchicalPlanner implements PathPlanner, GameMap.ChangeListener {
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+    // openings at least this long get an entrance at both ends
+    private static final int LONG_ENTRANCE = 6;
+    // moves around a path cell that are searched for a shortcut
+    private static final int SMOOTHING_RADIUS = 8;
+
+    private final int clusterSize;
+    private int width, height;
+    private int clustersX, clustersY;
+    private GridView map;
+    private boolean built;
+
+    // entrance pairs along the border right of / below each cluster, flattened as
+    // {cellInThisCluster, cellInNeighbor, ...}
+    private int[][] rightEntrances;
+    private int[][] bottomEntrances;
+    // nodes of each cluster and the distances between them inside the cluster
+    private int[][] clusterNodes;
+    private int[][] clusterDistances;
+    // index of a node cell in its cluster's node list
+    private int[] nodeIndex;
+    // refined cell paths of intra cluster edges, keyed by (from << 32 | to)
+    private List<Map<Long, int[]>> refinedEdges;
+
+    private boolean[] dirty;
+    private boolean[] rebuild;
+    private int rebuiltClusters;
+
+    // scratch for the cluster limited BFS
+    private int[] bfsDistance;
+    private int[] bfsParent;
+    private int[] bfsStamp;
+    private int bfsGeneration;
+    private int[] bfsQueue;
+
+    // scratch for the abstract search
+    private int[] gValue;
+    private int[] parent;
+    private int[] seenStamp;
+    private int[] closedStamp;
+    private int generation;
+    private final IndexedMinHeap openList = new IndexedMinHeap();
+
+    // position of every cell on the path being smoothed, valid when the stamp matches
+    private int[] pathPosition;
+    private int[] pathStamp;
+    private int pathGeneration;
+
+    // distances from the start and from each goal to the cells of their clusters
+    private int[] startDistance;
+    private int[][] goalDistance = new int[0][];
+
+    private GridAstar fallback;
+    private int expandedCount;
+
+    /**
+     * Constructor declaration for HierarchicalPlanner
+     *
+     * @param width       x length of the map
+     * @param height      y length of the map
+     * @param clusterSize side length of a cluster in cells
+     */
+    public HierarchicalPlanner(int width, int height, int clusterSize) {
+        this.clusterSize = clusterSize;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public void cellChanged(int index, boolean blocked) {
+        if (!built) return;
+        int x = index % width, y = index / width;
+        int cx = x / clusterSize, cy = y / clusterSize;
+        markDirty(cx, cy);
+        // an entrance needs both sides open, so the cluster across the border changes too
+        if (x % clusterSize == 0) markDirty(cx - 1, cy);
+        if (x % clusterSize == clusterSize - 1) markDirty(cx + 1, cy);
+        if (y % clusterSize == 0) markDirty(cx, cy - 1);
+        if (y % clusterSize == clusterSize - 1) markDirty(cx, cy + 1);
+    }
+
+    @Override
+    public GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                           int goalCount, int targetX, int targetY) {
+        this.map = gameMap;
+        expandedCount = 0;
+        rebuiltClusters = 0;
+        if (!built || gameMap.getLengthX() != width || gameMap.getLengthY() != height) {
+            buildAll();
+        } else {
+            rebuildDirty();
+        }
+
+        int start = startY * width + startX;
+        int goal = abstractSearch(start, goalCells, goalCount, targetX, targetY);
+        if (goal < 0) {
+            if (fallback == null) {
+                fallback = new GridAstar(width, height);
+            }
+            GridPath path = fallback.search(gameMap, startX, startY, goalCells,
+                                            goalCount, targetX, targetY);
+            expandedCount += fallback.getExpandedCount();
+            return path;
+        }
+        return refine(start, goal, goalCells, goalCount);
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    /**
+     * Number of clusters that had to be rebuilt before the last plan.
+     *
+     * @return count of rebuilt clusters
+     */
+    public int getRebuiltClusterCount() {
+        return rebuiltClusters;
+    }
+
+    private void markDirty(int cx, int cy) {
+        if (cx < 0 || cy < 0 || cx >= clustersX || cy >= clustersY) return;
+        dirty[cy * clustersX + cx] = true;
+    }
+
+    /**
+     * Builds every entrance and cluster from scratch.
+     */
+    private void buildAll() {
+        width = map.getLengthX();
+        height = map.getLengthY();
+        clustersX = (width + clusterSize - 1) / clusterSize;
+        clustersY = (height + clusterSize - 1) / clusterSize;
+        int clusters = clustersX * clustersY;
+        int cells = width * height;
+
+        rightEntrances = new int[clusters][];
+        bottomEntrances = new int[clusters][];
+        clusterNodes = new int[clusters][];
+        clusterDistances = new int[clusters][];
+        refinedEdges = new ArrayList<>(clusters);
+        dirty = new boolean[clusters];
+        rebuild = new boolean[clusters];
+        nodeIndex = new int[cells];
+        bfsDistance = new int[cells];
+        bfsParent = new int[cells];
+        bfsStamp = new int[cells];
+        bfsQueue = new int[cells];
+        gValue = new int[cells];
+        parent = new int[cells];
+        seenStamp = new int[cells];
+        closedStamp = new int[cells];
+        pathPosition = new int[cells];
+        pathStamp = new int[cells];
+        openList.resize(cells);
+        startDistance = new int[clusterSize * clusterSize];
+
+        for (int c = 0; c < clusters; c++) {
+            refinedEdges.add(new HashMap<>());
+            buildEntrances(c);
+        }
+        for (int c = 0; c < clusters; c++) {
+            buildCluster(c);
+        }
+        rebuiltClusters = clusters;
+        built = true;
+    }
+
+    /**
+     * Rebuilds the borders of every dirty cluster, then the nodes and distances of the
+     * dirty clusters and their neighbors, whose entrances may have moved.
+     */
+    private void rebuildDirty() {
+        for (int c = 0; c < dirty.length; c++) {
+            if (!dirty[c]) continue;
+            int cx = c % clustersX, cy = c / clustersX;
+            buildEntrances(c);
+            rebuild[c] = true;
+            if (cx > 0) {
+                buildEntrances(c - 1);
+                rebuild[c - 1] = true;
+            }
+            if (cy > 0) {
+                buildEntrances(c - clustersX);
+                rebuild[c - clustersX] = true;
+            }
+            if (cx + 1 < clustersX) rebuild[c + 1] = true;
+            if (cy + 1 < clustersY) rebuild[c + clustersX] = true;
+            dirty[c] = false;
+        }
+        for (int c = 0; c < rebuild.length; c++) {
+            if (rebuild[c]) {
+                rebuild[c] = false;
+                buildCluster(c);
+                rebuiltClusters++;
+            }
+        }
+    }
+
+    /**
+     * Finds the entrances on the right and bottom border of a cluster.
+     */
+    private void buildEntrances(int cluster) {
+        int cx = cluster % clustersX, cy = cluster / clustersX;
+        int x0 = cx * clusterSize, y0 = cy * clusterSize;
+        int x1 = Math.min(x0 + clusterSize, width), y1 = Math.min(y0 + clusterSize, height);
+
+        rightEntrances[cluster] = x1 < width
+                                  ? findEntrances(x1 - 1, y0, 0, 1, 1, 0, y1 - y0)
+                                  : new int[0];
+        bottomEntrances[cluster] = y1 < height
+                                   ? findEntrances(x0, y1 - 1, 1, 0, 0, 1, x1 - x0)
+                                   : new int[0];
+    }
+
+    /**
+     * Walks along a border and makes entrances out of its open stretches.
+     *
+     * @param x      x of the first border cell on this cluster's side
+     * @param y      y of the first border cell on this cluster's side
+     * @param stepX  step along the border
+     * @param stepY  step along the border
+     * @param crossX step from this cluster's cell to the neighbor's cell
+     * @param crossY step from this cluster's cell to the neighbor's cell
+     * @param length number of cells along the border
+     *
+     * @return entrance pairs {cellInThisCluster, cellInNeighbor, ...}
+     */
+    private int[] findEntrances(int x, int y, int stepX, int stepY, int crossX, int crossY,
+                                int length) {
+        int[] pairs = new int[length * 4];
+        int count = 0;
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean open = i < length && straightOpen(x, y, stepX, stepY, crossX, crossY, i);
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 >= LONG_ENTRANCE) {
+                    count = addPair(pairs, count, x, y, stepX, stepY, crossX, crossY,
+                                    runStart, runStart);
+                    count = addPair(pairs, count, x, y, stepX, stepY, crossX, crossY,
+                                    runEnd, runEnd);
+                } else {
+                    int middle = (runStart + runEnd) / 2;
+                    count = addPair(pairs, count, x, y, stepX, stepY, crossX, crossY,
+                                    middle, middle);
+                }
+                runStart = -1;
+            }
+        }
+
+        // crossings that only exist as a diagonal step, since corners can be cut
+        for (int i = 0; i + 1 < length; i++) {
+            if (straightOpen(x, y, stepX, stepY, crossX, crossY, i) ||
+                straightOpen(x, y, stepX, stepY, crossX, crossY, i + 1)) {
+                continue;
+            }
+            if (open(x, y, stepX, stepY, 0, 0, i) &&
+                open(x, y, stepX, stepY, crossX, crossY, i + 1)) {
+                count = addPair(pairs, count, x, y, stepX, stepY, crossX, crossY, i, i + 1);
+            }
+            if (open(x, y, stepX, stepY, 0, 0, i + 1) &&
+                open(x, y, stepX, stepY, crossX, crossY, i)) {
+                count = addPair(pairs, count, x, y, stepX, stepY, crossX, crossY, i + 1, i);
+            }
+        }
+        return Arrays.copyOf(pairs, count);
+    }
+
+    private boolean straightOpen(int x, int y, int stepX, int stepY, int crossX,
+                                 int crossY, int i) {
+        return open(x, y, stepX, stepY, 0, 0, i) &&
+               open(x, y, stepX, stepY, crossX, crossY, i);
+    }
+
+    private boolean open(int x, int y, int stepX, int stepY, int crossX, int crossY,
+                         int i) {
+        return !map.isBlocked((y + stepY * i + crossY) * width + x + stepX * i + crossX);
+    }
+
+    private int addPair(int[] pairs, int count, int x, int y, int stepX, int stepY,
+                        int crossX, int crossY, int i, int j) {
+        pairs[count++] = (y + stepY * i) * width + x + stepX * i;
+        pairs[count++] = (y + stepY * j + crossY) * width + x + stepX * j + crossX;
+        return count;
+    }
+
+    /**
+     * Collects the nodes of a cluster from the entrances on its four borders and finds
+     * the distance between every two of them inside the cluster.
+     */
+    private void buildCluster(int cluster) {
+        int cx = cluster % clustersX, cy = cluster / clustersX;
+        int[] nodes = new int[0];
+        nodes = addNodes(nodes, rightEntrances[cluster], 0);
+        nodes = addNodes(nodes, bottomEntrances[cluster], 0);
+        if (cx > 0) nodes = addNodes(nodes, rightEntrances[cluster - 1], 1);
+        if (cy > 0) nodes = addNodes(nodes, bottomEntrances[cluster - clustersX], 1);
+
+        int count = nodes.length;
+        int[] distances = new int[count * count];
+        for (int i = 0; i < count; i++) {
+            nodeIndex[nodes[i]] = i;
+        }
+        for (int i = 0; i < count; i++) {
+            clusterBfs(nodes[i], cluster);
+            for (int j = 0; j < count; j++) {
+                distances[i * count + j] = bfsDistanceTo(nodes[j]);
+            }
+        }
+        clusterNodes[cluster] = nodes;
+        clusterDistances[cluster] = distances;
+        refinedEdges.get(cluster).clear();
+    }
+
+    /**
+     * Adds one side of every entrance pair to the node list, skipping duplicates.
+     */
+    private int[] addNodes(int[] nodes, int[] pairs, int side) {
+        for (int i = side; i < pairs.length; i += 2) {
+            boolean known = false;
+            for (int node : nodes) {
+                if (node == pairs[i]) {
+                    known = true;
+                    break;
+                }
+            }
+            if (!known) {
+                nodes = Arrays.copyOf(nodes, nodes.length + 1);
+                nodes[nodes.length - 1] = pairs[i];
+            }
+        }
+        return nodes;
+    }
+
+    private int clusterOf(int cell) {
+        return (cell / width / clusterSize) * clustersX + (cell % width) / clusterSize;
+    }
+
+    /**
+     * Breadth first search from a cell that never leaves the given cluster.
+     */
+    private void clusterBfs(int from, int cluster) {
+        bfsGeneration++;
+        int cx = cluster % clustersX, cy = cluster / clustersX;
+        int x0 = cx * clusterSize, y0 = cy * clusterSize;
+        int x1 = Math.min(x0 + clusterSize, width), y1 = Math.min(y0 + clusterSize, height);
+
+        int head = 0, tail = 0;
+        bfsQueue[tail++] = from;
+        bfsStamp[from] = bfsGeneration;
+        bfsDistance[from] = 0;
+        bfsParent[from] = -1;
+        while (head < tail) {
+            int cell = bfsQueue[head++];
+            int x = cell % width, y = cell / width;
+            int open = map.getNeighborMask(cell);
+            for (int d = 0; d < 8; d++) {
+                if ((open & (1 << d)) == 0) continue;
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < x0 || ny < y0 || nx >= x1 || ny >= y1) continue;
+                int next = ny * width + nx;
+                if (bfsStamp[next] == bfsGeneration) continue;
+                bfsStamp[next] = bfsGeneration;
+                bfsDistance[next] = bfsDistance[cell] + 1;
+                bfsParent[next] = cell;
+                bfsQueue[tail++] = next;
+            }
+        }
+    }
+
+    private int bfsDistanceTo(int cell) {
+        return bfsStamp[cell] == bfsGeneration ? bfsDistance[cell] : INFINITY;
+    }
+
+    /**
+     * Index of a cell inside its cluster's square, used for the start and goal
+     * distance tables.
+     */
+    private int localIndex(int cell) {
+        return (cell / width % clusterSize) * clusterSize + cell % width % clusterSize;
+    }
+
+    /**
+     * Copies the distances of the last cluster BFS into a per cluster table.
+     */
+    private void saveBfs(int cluster, int[] table) {
+        Arrays.fill(table, INFINITY);
+        int cx = cluster % clustersX, cy = cluster / clustersX;
+        int x0 = cx * clusterSize, y0 = cy * clusterSize;
+        int x1 = Math.min(x0 + clusterSize, width), y1 = Math.min(y0 + clusterSize, height);
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                int cell = y * width + x;
+                table[localIndex(cell)] = bfsDistanceTo(cell);
+            }
+        }
+    }
+
+    /**
+     * A* over the abstract graph with the start and the goal cells added to it.
+     *
+     * @return the goal cell that was reached, or -1
+     */
+    private int abstractSearch(int start, int[] goals, int goalCount, int targetX,
+                               int targetY) {
+        if (goalDistance.length < goalCount) {
+            goalDistance = Arrays.copyOf(goalDistance, goalCount);
+        }
+        for (int i = 0; i < goalCount; i++) {
+            if (goalDistance[i] == null) {
+                goalDistance[i] = new int[clusterSize * clusterSize];
+            }
+            if (map.isBlocked(goals[i])) {
+                Arrays.fill(goalDistance[i], INFINITY);
+                continue;
+            }
+            clusterBfs(goals[i], clusterOf(goals[i]));
+            saveBfs(clusterOf(goals[i]), goalDistance[i]);
+        }
+        clusterBfs(start, clusterOf(start));
+        saveBfs(clusterOf(start), startDistance);
+
+        generation++;
+        openList.clear();
+        gValue[start] = 0;
+        parent[start] = -1;
+        seenStamp[start] = generation;
+        openList.insert(start, heuristic(start, targetX, targetY));
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            for (int i = 0; i < goalCount; i++) {
+                if (goals[i] == current) return current;
+            }
+            closedStamp[current] = generation;
+            expandedCount++;
+
+            int cluster = clusterOf(current);
+            int[] nodes = clusterNodes[cluster];
+
+            if (current == start) {
+                for (int node : nodes) {
+                    relax(current, node, startDistance[localIndex(node)], targetX, targetY);
+                }
+            } else if (isNode(current, nodes)) {
+                int[] distances = clusterDistances[cluster];
+                int from = nodeIndex[current];
+                for (int j = 0; j < nodes.length; j++) {
+                    relax(current, nodes[j], distances[from * nodes.length + j],
+                          targetX, targetY);
+                }
+            }
+            for (int i = 0; i < goalCount; i++) {
+                if (clusterOf(goals[i]) == cluster) {
+                    relax(current, goals[i], goalDistance[i][localIndex(current)],
+                          targetX, targetY);
+                }
+            }
+            relaxEntrances(current, cluster, targetX, targetY);
+        }
+        return -1;
+    }
+
+    private boolean isNode(int cell, int[] nodes) {
+        int i = nodeIndex[cell];
+        return i < nodes.length && nodes[i] == cell;
+    }
+
+    /**
+     * Follows every entrance of the cluster that starts at the given cell.
+     */
+    private void relaxEntrances(int cell, int cluster, int targetX, int targetY) {
+        int cx = cluster % clustersX, cy = cluster / clustersX;
+        relaxPairs(cell, rightEntrances[cluster], 0, targetX, targetY);
+        relaxPairs(cell, bottomEntrances[cluster], 0, targetX, targetY);
+        if (cx > 0) relaxPairs(cell, rightEntrances[cluster - 1], 1, targetX, targetY);
+        if (cy > 0) {
+            relaxPairs(cell, bottomEntrances[cluster - clustersX], 1, targetX, targetY);
+        }
+    }
+
+    private void relaxPairs(int cell, int[] pairs, int side, int targetX, int targetY) {
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (pairs[i + side] == cell) {
+                relax(cell, pairs[i + 1 - side], 1, targetX, targetY);
+            }
+        }
+    }
+
+    private void relax(int from, int to, int cost, int targetX, int targetY) {
+        if (cost >= INFINITY || from == to || closedStamp[to] == generation) return;
+        int tentativeG = gValue[from] + cost;
+        if (seenStamp[to] != generation) {
+            seenStamp[to] = generation;
+            gValue[to] = tentativeG;
+            parent[to] = from;
+            openList.insert(to, tentativeG + heuristic(to, targetX, targetY));
+        } else if (tentativeG < gValue[to]) {
+            gValue[to] = tentativeG;
+            parent[to] = from;
+            openList.decreaseKey(to, tentativeG + heuristic(to, targetX, targetY));
+        }
+    }
+
+    private int heuristic(int cell, int targetX, int targetY) {
+        return GridAstar.heuristic(cell % width, cell / width, targetX, targetY);
+    }
+
+    /**
+     * Turns the abstract path into cells. Steps between neighboring cells are taken as
+     * they are, longer edges stay inside one cluster and are refined with a cluster
+     * BFS the first time they are used.
+     */
+    private GridPath refine(int start, int goal, int[] goals, int goalCount) {
+        // the edges come goal first, so they are put in from the back
+        List<int[]> edges = new ArrayList<>();
+        int length = 0;
+        for (int cell = goal; cell != start; cell = parent[cell]) {
+            int[] edge = refineEdge(parent[cell], cell);
+            edges.add(edge);
+            length += edge.length;
+        }
+        int[] cells = new int[length + 1];
+        cells[0] = start;
+        for (int[] edge : edges) {
+            System.arraycopy(edge, 0, cells, length - edge.length + 1, edge.length);
+            length -= edge.length;
+        }
+        return smooth(cells, goals, goalCount);
+    }
+
+    /**
+     * Shortens a path wherever one of its cells gets to a later one, or to any goal
+     * cell, in fewer moves than the path takes, going by a breadth first search of
+     * SMOOTHING_RADIUS moves around the cell. The shortcut that saves the most moves
+     * is taken.
+     *
+     * @param cells     the start cell followed by the cells of the path
+     * @param goals     flat indices of the goal cells
+     * @param goalCount number of entries of goals that are used
+     *
+     * @return the path without the start cell
+     */
+    private GridPath smooth(int[] cells, int[] goals, int goalCount) {
+        pathGeneration++;
+        if (pathGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(pathStamp, 0);
+            pathGeneration = 1;
+        }
+        // a path that comes back to a cell is cut at its last visit
+        for (int i = 0; i < cells.length; i++) {
+            pathPosition[cells[i]] = i;
+            pathStamp[cells[i]] = pathGeneration;
+        }
+        // the path may as well end on any other goal
+        for (int i = 0; i < goalCount; i++) {
+            pathPosition[goals[i]] = cells.length - 1;
+            pathStamp[goals[i]] = pathGeneration;
+        }
+
+        int[] smoothed = new int[cells.length - 1];
+        int count = 0;
+        int i = 0;
+        while (i < cells.length - 1) {
+            i = pathPosition[cells[i]];
+            if (i == cells.length - 1) break;
+            int best = localBfs(cells[i], i);
+            if (best < 0) {
+                smoothed[count++] = cells[++i];
+                continue;
+            }
+            count += bfsDistance[best];
+            for (int cell = best, j = count - 1; cell != cells[i]; cell = bfsParent[cell]) {
+                smoothed[j--] = cell;
+            }
+            i = pathPosition[best];
+        }
+        return new GridPath(smoothed, count, width);
+    }
+
+    /**
+     * Breadth first search up to SMOOTHING_RADIUS moves from a cell of the path being
+     * smoothed.
+     *
+     * @return the path or goal cell it gets to in the most moves fewer than the path
+     *         takes, or -1 if none
+     */
+    private int localBfs(int from, int position) {
+        bfsGeneration++;
+        int head = 0, tail = 0;
+        bfsQueue[tail++] = from;
+        bfsStamp[from] = bfsGeneration;
+        bfsDistance[from] = 0;
+        bfsParent[from] = -1;
+        int best = -1, bestSaving = 0;
+        while (head < tail) {
+            int cell = bfsQueue[head++];
+            if (pathStamp[cell] == pathGeneration &&
+                pathPosition[cell] - position - bfsDistance[cell] > bestSaving) {
+                best = cell;
+                bestSaving = pathPosition[cell] - position - bfsDistance[cell];
+            }
+            if (bfsDistance[cell] == SMOOTHING_RADIUS) continue;
+            int x = cell % width, y = cell / width;
+            int open = map.getNeighborMask(cell);
+            for (int d = 0; d < 8; d++) {
+                if ((open & (1 << d)) == 0) continue;
+                int next = (y + DY[d]) * width + x + DX[d];
+                if (bfsStamp[next] == bfsGeneration) continue;
+                bfsStamp[next] = bfsGeneration;
+                bfsDistance[next] = bfsDistance[cell] + 1;
+                bfsParent[next] = cell;
+                bfsQueue[tail++] = next;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The cells after from, up to and including to, of one abstract edge.
+     */
+    private int[] refineEdge(int from, int to) {
+        if (Math.abs(from % width - to % width) <= 1 &&
+            Math.abs(from / width - to / width) <= 1) {
+            return new int[]{to};
+        }
+        int cluster = clusterOf(from);
+        long key = (long) from << 32 | to;
+        int[] cells = refinedEdges.get(cluster).get(key);
+        if (cells == null) {
+            clusterBfs(from, cluster);
+            cells = new int[bfsDistance[to]];
+            for (int cell = to, i = cells.length - 1; cell != from; cell = bfsParent[cell]) {
+                cells[i--] = cell;
+            }
+            refinedEdges.get(cluster).put(key, cells);
+        }
+        return cells;
+    }
+}
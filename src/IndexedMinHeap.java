@@ -0,0 +1,186 @@
+import java.util.Arrays;
+
+/**
+ * The IndexedMinHeap Class is a 4-ary min-heap of cell indices. A position array maps
+ * every cell to its slot in the heap (or -1), which gives O(1) contains and lets
+ * decreaseKey sift the entry up from where it is in O(log n).
+ *
+ * A 4-ary heap is used rather than a binary one since it is half as deep and the four
+ * children of a slot sit next to each other in memory.
+ *
+ * Keys are stored as longs so planners with two part keys (like DStarLite) can pack
+ * both parts into one key and use push/update/remove, which also allow a key to go up.
+ *
+ * @author Alexander Telich
+ */
+public class IndexedMinHeap implements OpenList {
+    private static final int ARITY = 4;
+
+    // heap slots, cells[i] has priority keys[i]
+    private int[] cells = new int[0];
+    private long[] keys = new long[0];
+    // slot of every cell in the heap, -1 when the cell is not in it
+    private int[] position = new int[0];
+    private int size;
+
+    @Override
+    public void resize(int cellCount) {
+        if (position.length != cellCount) {
+            cells = new int[cellCount];
+            keys = new long[cellCount];
+            position = new int[cellCount];
+            Arrays.fill(position, -1);
+        }
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        // only the cells still in the heap have a position set
+        for (int i = 0; i < size; i++) {
+            position[cells[i]] = -1;
+        }
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int cell) {
+        return position[cell] >= 0;
+    }
+
+    @Override
+    public void insert(int cell, int key) {
+        siftUp(size++, cell, key);
+    }
+
+    @Override
+    public void decreaseKey(int cell, int key) {
+        siftUp(position[cell], cell, key);
+    }
+    
+    /**
+     * Adds a cell that is not in the heap yet with a long key.
+     *
+     * @param cell flat index of the cell
+     * @param key  priority of the cell, smaller comes out first
+     */
+    public void push(int cell, long key) {
+        siftUp(size++, cell, key);
+    }
+    
+    /**
+     * Changes the key of a cell in the heap, in either direction.
+     *
+     * @param cell flat index of the cell
+     * @param key  new priority of the cell
+     */
+    public void update(int cell, long key) {
+        int i = position[cell];
+        if (key < keys[i]) {
+            siftUp(i, cell, key);
+        } else {
+            siftDown(i, cell, key);
+        }
+    }
+    
+    /**
+     * Takes a cell out of the heap.
+     *
+     * @param cell flat index of a cell that is in the heap
+     */
+    public void remove(int cell) {
+        int i = position[cell];
+        position[cell] = -1;
+        size--;
+        if (i < size) {
+            int lastCell = cells[size];
+            long lastKey = keys[size];
+            // the last entry may belong above or below the hole
+            if (i > 0 && lastKey < keys[(i - 1) / ARITY]) {
+                siftUp(i, lastCell, lastKey);
+            } else {
+                siftDown(i, lastCell, lastKey);
+            }
+        }
+    }
+    
+    /**
+     * @return the cell with the smallest key, without removing it
+     */
+    public int peek() {
+        return cells[0];
+    }
+    
+    /**
+     * @return the smallest key in the heap
+     */
+    public long peekKey() {
+        return keys[0];
+    }
+
+    @Override
+    public int poll() {
+        int top = cells[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            siftDown(0, cells[size], keys[size]);
+        }
+        return top;
+    }
+
+    /**
+     * Moves the hole at slot i up until the key fits, then stores the cell there.
+     */
+    private void siftUp(int i, int cell, long key) {
+        while (i > 0) {
+            int up = (i - 1) / ARITY;
+            if (keys[up] <= key) break;
+            move(up, i);
+            i = up;
+        }
+        place(i, cell, key);
+    }
+
+    /**
+     * Moves the hole at slot i down until the key fits, then stores the cell there.
+     */
+    private void siftDown(int i, int cell, long key) {
+        while (true) {
+            int first = i * ARITY + 1;
+            if (first >= size) break;
+
+            int last = Math.min(first + ARITY, size);
+            int best = first;
+            for (int child = first + 1; child < last; child++) {
+                if (keys[child] < keys[best]) best = child;
+            }
+            if (key <= keys[best]) break;
+            move(best, i);
+            i = best;
+        }
+        place(i, cell, key);
+    }
+
+    private void move(int from, int to) {
+        cells[to] = cells[from];
+        keys[to] = keys[from];
+        position[cells[to]] = to;
+    }
+
+    private void place(int i, int cell, long key) {
+        cells[i] = cell;
+        keys[i] = key;
+        position[cell] = i;
+    }
+}
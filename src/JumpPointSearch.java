@@ -0,0 +1,433 @@
+import java.util.Arrays;
+
+/**
+ * The JumpPointSearch Class is a PathPlanner for our 8-connected maps where every move
+ * costs 1. Instead of pushing every neighbor onto the open list it follows each
+ * direction as far as it can go and only stops at jump points - cells with a forced
+ * neighbor (a neighbor that can only be reached optimally through that cell) or a
+ * goal cell - so the many equally long paths through open areas are never expanded.
+ *
+ * Diagonal moves past a blocked corner are allowed, same as in GridAstar, so the
+ * forced neighbor rules are the ones from the original JPS paper.
+ *
+ * In JPS+ mode the jump distances are precomputed for every cell and direction and the
+ * search only reads them. A table only fits the map it was built for, so JPS+ should be
+ * given GameMap snapshots. Registered with GameMap.addChangeListener it repairs only the
+ * rows, columns and diagonals that lead through the cells that changed when it gets a
+ * new snapshot; otherwise a new snapshot rebuilds the whole table.
+ *
+ * Directions use the same numbering as GridAstar.DX/DY: even numbers are straight
+ * moves, odd numbers diagonal ones, and d - 1 / d + 1 of a diagonal are its two
+ * straight parts.
+ *
+ * @author Alexander Telich
+ */
+public class JumpPointSearch implements PathPlanner, GameMap.ChangeListener {
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private final boolean precomputed;
+    private int width, height;
+    private GridView map;
+
+    // per cell search state, valid when the stamp matches the generation
+    private int[] gValue;
+    private int[] parent;
+    // direction the cell was jumped to in, -1 for the start
+    private byte[] arrivedFrom;
+    private int[] seenStamp;
+    private int[] closedStamp;
+    private int[] goalStamp;
+    private int generation;
+    private OpenList openList = new IndexedMinHeap();
+
+    // goals of the current search, JPS+ needs them to cut jumps short
+    private int[] goalCells;
+    private int goalCount;
+
+    // JPS+ table, cell * 8 + direction. A positive value is the number of steps to the
+    // next jump point, otherwise it is minus the number of free steps before a wall.
+    private short[] jumpDistance;
+    private GridView jumpDistanceMap;
+
+    // cells that changed since the table was last brought up to date
+    private int[] changedCells = new int[16];
+    private int changedCount;
+    // JPS+ cells whose entry for the direction is repaired, as cell * 8 + direction
+    private int[] repairStack = new int[64];
+    private int repairCount;
+
+    private int expandedCount;
+
+    /**
+     * Constructor declaration for JumpPointSearch
+     *
+     * @param width       x length of the maps that will be searched
+     * @param height      y length of the maps that will be searched
+     * @param precomputed true for JPS+, false for plain JPS
+     */
+    public JumpPointSearch(int width, int height, boolean precomputed) {
+        this.precomputed = precomputed;
+        resize(width, height);
+    }
+
+    private void resize(int width, int height) {
+        if (gValue != null && this.width == width && this.height == height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        int cells = width * height;
+        gValue = new int[cells];
+        parent = new int[cells];
+        arrivedFrom = new byte[cells];
+        seenStamp = new int[cells];
+        closedStamp = new int[cells];
+        goalStamp = new int[cells];
+        generation = 0;
+        openList.resize(cells);
+        jumpDistanceMap = null;
+    }
+
+    @Override
+    public synchronized void cellChanged(int index, boolean blocked) {
+        if (!precomputed || jumpDistance == null) return;
+        if (changedCount == changedCells.length) {
+            changedCells = Arrays.copyOf(changedCells, changedCount * 2);
+        }
+        changedCells[changedCount++] = index;
+    }
+
+    @Override
+    public GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                           int goalCount, int targetX, int targetY) {
+        resize(gameMap.getLengthX(), gameMap.getLengthY());
+        this.map = gameMap;
+        this.goalCells = goalCells;
+        this.goalCount = goalCount;
+        if (precomputed && jumpDistanceMap != gameMap) {
+            updateJumpDistances();
+        }
+
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(seenStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            Arrays.fill(goalStamp, 0);
+            generation = 1;
+        }
+        expandedCount = 0;
+        openList.clear();
+        for (int i = 0; i < goalCount; i++) {
+            goalStamp[goalCells[i]] = generation;
+        }
+
+        int start = startY * width + startX;
+        gValue[start] = 0;
+        parent[start] = -1;
+        arrivedFrom[start] = -1;
+        seenStamp[start] = generation;
+        openList.insert(start, GridAstar.nearestGoal(startX, startY, goalCells, goalCount,
+                                                     width));
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            if (goalStamp[current] == generation) {
+                return buildPath(current);
+            }
+            closedStamp[current] = generation;
+            expandedCount++;
+
+            int x = current % width;
+            int y = current / width;
+            int directions = successorDirections(x, y, arrivedFrom[current]);
+
+            for (int d = 0; d < 8; d++) {
+                if ((directions & (1 << d)) == 0) continue;
+
+                if (precomputed) {
+                    tableJump(current, x, y, d);
+                } else {
+                    int jumpPoint = jump(x, y, d);
+                    if (jumpPoint >= 0) {
+                        relax(current, jumpPoint, d);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    /**
+     * Puts the jump point on the open list if this is the cheapest way to it so far.
+     */
+    private void relax(int from, int to, int direction) {
+        if (closedStamp[to] == generation) return;
+
+        int steps = Math.max(Math.abs(to % width - from % width),
+                             Math.abs(to / width - from / width));
+        int tentativeG = gValue[from] + steps;
+        int f = tentativeG + GridAstar.nearestGoal(to % width, to / width, goalCells,
+                                                   goalCount, width);
+
+        if (seenStamp[to] != generation) {
+            seenStamp[to] = generation;
+            gValue[to] = tentativeG;
+            parent[to] = from;
+            arrivedFrom[to] = (byte) direction;
+            openList.insert(to, f);
+        } else if (tentativeG < gValue[to]) {
+            gValue[to] = tentativeG;
+            parent[to] = from;
+            arrivedFrom[to] = (byte) direction;
+            openList.decreaseKey(to, f);
+        }
+    }
+
+    /**
+     * The directions worth following from a cell: every free direction for the start,
+     * otherwise the natural neighbors of the direction we arrived in plus its forced
+     * neighbors.
+     *
+     * @return bit mask with bit d set for every direction d to follow
+     */
+    private int successorDirections(int x, int y, int direction) {
+        if (direction < 0) {
+            return 0xFF;
+        }
+        int directions = 1 << direction | forcedDirections(x, y, direction);
+        if ((direction & 1) == 1) {
+            directions |= 1 << ((direction + 7) & 7) | 1 << ((direction + 1) & 7);
+        }
+        return directions;
+    }
+
+    /**
+     * Forced neighbors of a cell entered by moving in the given direction. For a
+     * straight move that is a diagonal ahead whose side cell is blocked, for a
+     * diagonal move it is a diagonal to the side whose cell behind us is blocked.
+     *
+     * @return bit mask with bit d set for every forced direction d
+     */
+    private int forcedDirections(int x, int y, int direction) {
+        int forced = 0;
+        if ((direction & 1) == 0) {
+            int left = (direction + 6) & 7, right = (direction + 2) & 7;
+            if (blocked(x + DX[left], y + DY[left]) &&
+                !blocked(x + DX[(direction + 7) & 7], y + DY[(direction + 7) & 7])) {
+                forced |= 1 << ((direction + 7) & 7);
+            }
+            if (blocked(x + DX[right], y + DY[right]) &&
+                !blocked(x + DX[(direction + 1) & 7], y + DY[(direction + 1) & 7])) {
+                forced |= 1 << ((direction + 1) & 7);
+            }
+        } else {
+            int left = (direction + 5) & 7, right = (direction + 3) & 7;
+            if (blocked(x + DX[left], y + DY[left]) &&
+                !blocked(x + DX[(direction + 6) & 7], y + DY[(direction + 6) & 7])) {
+                forced |= 1 << ((direction + 6) & 7);
+            }
+            if (blocked(x + DX[right], y + DY[right]) &&
+                !blocked(x + DX[(direction + 2) & 7], y + DY[(direction + 2) & 7])) {
+                forced |= 1 << ((direction + 2) & 7);
+            }
+        }
+        return forced;
+    }
+
+    /**
+     * Walks from (x, y) in the given direction until it reaches a jump point.
+     *
+     * @return flat index of the jump point, or -1 if a wall comes first
+     */
+    private int jump(int x, int y, int direction) {
+        int dx = DX[direction], dy = DY[direction];
+        while (true) {
+            x += dx;
+            y += dy;
+            if (blocked(x, y)) return -1;
+
+            int cell = y * width + x;
+            if (goalStamp[cell] == generation) return cell;
+            if (forcedDirections(x, y, direction) != 0) return cell;
+            if ((direction & 1) == 1 &&
+                (jump(x, y, (direction + 7) & 7) >= 0 ||
+                 jump(x, y, (direction + 1) & 7) >= 0)) {
+                return cell;
+            }
+        }
+    }
+
+    /**
+     * JPS+ version of jump: reads the jump point out of the table, but stops early at
+     * a goal cell in the way, or for a diagonal move at the cell that lines up with a
+     * goal's row or column.
+     */
+    private void tableJump(int current, int x, int y, int direction) {
+        int distance = jumpDistance[current * 8 + direction];
+        int reach = Math.abs(distance);
+        int dx = DX[direction], dy = DY[direction];
+
+        for (int i = 0; i < goalCount; i++) {
+            int gx = goalCells[i] % width - x;
+            int gy = goalCells[i] / width - y;
+            int steps;
+            if ((direction & 1) == 0) {
+                // the goal has to be straight ahead
+                if (dx == 0 ? gx != 0 || gy * dy <= 0 : gy != 0 || gx * dx <= 0) continue;
+                steps = Math.abs(gx + gy);
+            } else {
+                if (gx * dx <= 0 || gy * dy <= 0) continue;
+                steps = Math.min(Math.abs(gx), Math.abs(gy));
+            }
+            if (steps <= reach) {
+                relax(current, (y + steps * dy) * width + x + steps * dx, direction);
+            }
+        }
+
+        if (distance > 0) {
+            relax(current, (y + distance * dy) * width + x + distance * dx, direction);
+        }
+    }
+
+    /**
+     * Brings the JPS+ table up to date with the current map: repairs the entries around
+     * the cells that changed when it heard of any, otherwise builds it again, since
+     * the map may have changed without telling this planner.
+     */
+    private void updateJumpDistances() {
+        int[] changed;
+        synchronized (this) {
+            changed = Arrays.copyOf(changedCells, changedCount);
+            changedCount = 0;
+        }
+        if (jumpDistanceMap == null || changed.length == 0) {
+            buildJumpDistances();
+            return;
+        }
+        // an entry depends on the next cell in its direction, the cells around that
+        // one and, for a diagonal, the straight entries of the next cell, so the
+        // entries pointing into the 3x3 block of a changed cell are repaired, and
+        // whatever points at an entry that changed after them
+        for (int pass = 0; pass < 2; pass++) {
+            for (int cell : changed) {
+                int x = cell % width, y = cell / width;
+                for (int nx = x - 1; nx <= x + 1; nx++) {
+                    for (int ny = y - 1; ny <= y + 1; ny++) {
+                        for (int direction = pass; direction < 8; direction += 2) {
+                            pushRepair(nx - DX[direction], ny - DY[direction],
+                                       direction);
+                        }
+                    }
+                }
+            }
+            while (repairCount > 0) {
+                int entry = repairStack[--repairCount];
+                int cell = entry >> 3, direction = entry & 7;
+                int x = cell % width, y = cell / width;
+                short distance = (short) jumpDistanceFrom(x, y, direction);
+                if (distance == jumpDistance[entry]) continue;
+                jumpDistance[entry] = distance;
+                pushRepair(x - DX[direction], y - DY[direction], direction);
+                if ((direction & 1) == 0) {
+                    // the diagonals through here stop at the cell if it has a straight
+                    // jump point
+                    int left = (direction + 7) & 7, right = (direction + 1) & 7;
+                    pushRepair(x - DX[left], y - DY[left], left);
+                    pushRepair(x - DX[right], y - DY[right], right);
+                }
+            }
+        }
+        jumpDistanceMap = map;
+    }
+
+    private void pushRepair(int x, int y, int direction) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return;
+        if (repairCount == repairStack.length) {
+            repairStack = Arrays.copyOf(repairStack, repairCount * 2);
+        }
+        repairStack[repairCount++] = (y * width + x) * 8 + direction;
+    }
+
+    /**
+     * Fills the JPS+ table for the current map. Straight directions are done first
+     * since a diagonal jump stops at any cell that has a straight jump point.
+     */
+    private void buildJumpDistances() {
+        int cells = width * height;
+        if (jumpDistance == null || jumpDistance.length != cells * 8) {
+            jumpDistance = new short[cells * 8];
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            for (int direction = pass; direction < 8; direction += 2) {
+                int dx = DX[direction], dy = DY[direction];
+                // visit cells so the next cell in the direction is always done first
+                for (int j = 0; j < height; j++) {
+                    int y = dy > 0 ? height - 1 - j : j;
+                    for (int i = 0; i < width; i++) {
+                        int x = dx > 0 ? width - 1 - i : i;
+                        jumpDistance[(y * width + x) * 8 + direction] =
+                                (short) jumpDistanceFrom(x, y, direction);
+                    }
+                }
+            }
+        }
+        jumpDistanceMap = map;
+    }
+
+    /**
+     * Jump distance of one cell, using the already computed value of the next cell.
+     */
+    private int jumpDistanceFrom(int x, int y, int direction) {
+        int nx = x + DX[direction], ny = y + DY[direction];
+        if (blocked(nx, ny)) return 0;
+
+        int next = ny * width + nx;
+        boolean jumpPoint = forcedDirections(nx, ny, direction) != 0;
+        if (!jumpPoint && (direction & 1) == 1) {
+            jumpPoint = jumpDistance[next * 8 + ((direction + 7) & 7)] > 0 ||
+                        jumpDistance[next * 8 + ((direction + 1) & 7)] > 0;
+        }
+        if (jumpPoint) return 1;
+
+        int nextDistance = jumpDistance[next * 8 + direction];
+        return nextDistance > 0 ? nextDistance + 1 : nextDistance - 1;
+    }
+
+    private boolean blocked(int x, int y) {
+        return x < 0 || y < 0 || x >= width || y >= height ||
+               map.isBlocked(y * width + x);
+    }
+
+    /**
+     * Walks back over the jump points and fills in every cell in between, so the path
+     * still moves one cell per step. The start cell is not included.
+     */
+    private GridPath buildPath(int cell) {
+        int length = 0;
+        for (int step = cell; parent[step] != -1; step = parent[step]) {
+            length += GridAstar.heuristic(step % width, step / width,
+                                          parent[step] % width, parent[step] / width);
+        }
+        int[] cells = new int[length];
+        int i = length;
+        while (parent[cell] != -1) {
+            int from = parent[cell];
+            int x = cell % width, y = cell / width;
+            int stepX = Integer.signum(from % width - x);
+            int stepY = Integer.signum(from / width - y);
+            while (y * width + x != from) {
+                cells[--i] = y * width + x;
+                x += stepX;
+                y += stepY;
+            }
+            cell = from;
+        }
+        return new GridPath(cells, length, width);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * The LandmarkHeuristic Class is the ALT (A*, Landmarks, Triangle inequality)
+ * Heuristic. For a landmark L the triangle inequality gives
+ * |d(L, goal) - d(L, cell)| <= d(cell, goal), and the estimate is the best of those
+ * bounds over the landmarks of a LandmarkTable, or the Chebyshev distance when that is
+ * higher. In maze-like maps that is much closer to the real distance than Chebyshev
+ * alone, so GridAstar expands far fewer cells.
+ *
+ * The table is read-only and can be shared, but every footman needs its own
+ * LandmarkHeuristic since setGoals keeps the goals of its search.
+ *
+ * @author Alexander Telich
+ */
+public class LandmarkHeuristic implements Heuristic {
+    private final LandmarkTable table;
+    private final int width;
+    // landmark distances of every goal cell, goal * landmarks + landmark
+    private short[] goalDistances = new short[0];
+    private int[] goalCells = new int[0];
+
+    /**
+     * Constructor declaration for LandmarkHeuristic
+     *
+     * @param table distances from the landmarks, built for the map being searched
+     * @param width x length of the map
+     */
+    public LandmarkHeuristic(LandmarkTable table, int width) {
+        this.table = table;
+        this.width = width;
+    }
+
+    /**
+     * Sets the cells the next searches count as reaching the goal, the estimate is to
+     * the nearest of them.
+     *
+     * @param goalCells flat indices of the goal cells
+     * @param goalCount number of entries of goalCells that are used
+     */
+    public void setGoals(int[] goalCells, int goalCount) {
+        int landmarks = table.getLandmarkCount();
+        if (this.goalCells.length != goalCount) {
+            this.goalCells = new int[goalCount];
+            goalDistances = new short[goalCount * landmarks];
+        }
+        for (int i = 0; i < goalCount; i++) {
+            this.goalCells[i] = goalCells[i];
+            for (int l = 0; l < landmarks; l++) {
+                goalDistances[i * landmarks + l] = table.getDistance(l, goalCells[i]);
+            }
+        }
+    }
+
+    @Override
+    public int estimate(int cell, int target) {
+        int landmarks = table.getLandmarkCount();
+        int x = cell % width, y = cell / width;
+        int best = UNREACHABLE;
+        for (int i = 0; i < goalCells.length; i++) {
+            int goal = goalCells[i];
+            int bound = Math.max(Math.abs(goal % width - x), Math.abs(goal / width - y));
+            for (int l = 0; l < landmarks; l++) {
+                int fromGoal = goalDistances[i * landmarks + l];
+                int fromCell = table.getDistance(l, cell);
+                if (fromGoal == LandmarkTable.NONE && fromCell == LandmarkTable.NONE) {
+                    continue;
+                }
+                if (fromGoal == LandmarkTable.NONE || fromCell == LandmarkTable.NONE) {
+                    // the landmark reaches only one of them, so they aren't connected
+                    bound = UNREACHABLE;
+                    break;
+                }
+                bound = Math.max(bound, Math.abs(fromGoal - fromCell));
+            }
+            best = Math.min(best, bound);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,231 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The LandmarkTable Class holds the distance from a few landmark cells to every cell
+ * of a map, which LandmarkHeuristic turns into the ALT lower bound. The landmarks are
+ * picked farthest first: each new one is the cell furthest from all the landmarks
+ * chosen so far, so they end up spread around the edges of the map.
+ *
+ * The distances are measured on the map without the enemy footman. The enemy can only
+ * make paths longer, so the bounds stay admissible wherever it moves. Each landmark
+ * has a short[] with one distance per cell, NONE for cells it can't reach.
+ *
+ * Building the table takes one breadth first search per landmark, so it can be
+ * written out with write and read back with read instead of building it again every
+ * episode. matches tells if a table read back belongs to the current map.
+ *
+ * @author Alexander Telich
+ */
+public class LandmarkTable {
+    public static final short NONE = -1;
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private final int width, height;
+    // hash of the trees and the townhall the table was built for
+    private final long fingerprint;
+    private final int[] landmarks;
+    private final short[][] distances;
+
+    private LandmarkTable(int width, int height, long fingerprint, int[] landmarks,
+                          short[][] distances) {
+        this.width = width;
+        this.height = height;
+        this.fingerprint = fingerprint;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Picks the landmarks of a map and measures the distance from each to every cell.
+     *
+     * @param gameMap       the map, its enemy footman is left out
+     * @param landmarkCount number of landmarks to pick
+     *
+     * @return the new table
+     */
+    public static LandmarkTable build(GameMap gameMap, int landmarkCount) {
+        int width = gameMap.getLengthX();
+        int height = gameMap.getLengthY();
+        boolean[] blocked = staticObstacles(gameMap);
+
+        int first = 0;
+        while (first < blocked.length && blocked[first]) {
+            first++;
+        }
+        if (first == blocked.length) {
+            return new LandmarkTable(width, height, fingerprint(gameMap), new int[0],
+                                     new short[0][]);
+        }
+
+        // distance from every cell to the nearest landmark so far
+        int[] nearest = new int[blocked.length];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        int[] landmarks = new int[landmarkCount];
+        short[][] distances = new short[landmarkCount][];
+        // start from the cell furthest from the first open cell
+        int[] fromFirst = nearest.clone();
+        int next = farthest(breadthFirst(blocked, width, height, first), fromFirst);
+        int count = 0;
+        while (count < landmarkCount && next >= 0) {
+            landmarks[count] = next;
+            distances[count] = breadthFirst(blocked, width, height, next);
+            next = farthest(distances[count], nearest);
+            count++;
+        }
+        return new LandmarkTable(width, height, fingerprint(gameMap),
+                                 Arrays.copyOf(landmarks, count),
+                                 Arrays.copyOf(distances, count));
+    }
+
+    /**
+     * Reads a table written by write.
+     *
+     * @param in stream to read from
+     *
+     * @return the table
+     *
+     * @throws IOException if the stream can't be read
+     */
+    public static LandmarkTable read(DataInputStream in) throws IOException {
+        int width = in.readInt();
+        int height = in.readInt();
+        long fingerprint = in.readLong();
+        int count = in.readInt();
+        int[] landmarks = new int[count];
+        short[][] distances = new short[count][width * height];
+        for (int i = 0; i < count; i++) {
+            landmarks[i] = in.readInt();
+            for (int cell = 0; cell < width * height; cell++) {
+                distances[i][cell] = in.readShort();
+            }
+        }
+        return new LandmarkTable(width, height, fingerprint, landmarks, distances);
+    }
+
+    /**
+     * Writes the table so read can load it again in a later episode.
+     *
+     * @param out stream to write to
+     *
+     * @throws IOException if the stream can't be written
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeLong(fingerprint);
+        out.writeInt(landmarks.length);
+        for (int i = 0; i < landmarks.length; i++) {
+            out.writeInt(landmarks[i]);
+            for (short distance : distances[i]) {
+                out.writeShort(distance);
+            }
+        }
+    }
+
+    /**
+     * Tells you if the table was built for a map with the same size, trees and
+     * townhall as the given one.
+     *
+     * @param gameMap the map to check
+     *
+     * @return true if the table can be used on the map
+     */
+    public boolean matches(GameMap gameMap) {
+        return gameMap.getLengthX() == width && gameMap.getLengthY() == height &&
+               fingerprint(gameMap) == fingerprint;
+    }
+
+    /**
+     * @return number of landmarks in the table
+     */
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * @param landmark index of the landmark
+     * @param cell     flat index (y * width + x) of the cell
+     *
+     * @return moves from the landmark to the cell, or NONE if it can't be reached
+     */
+    public short getDistance(int landmark, int cell) {
+        return distances[landmark][cell];
+    }
+
+    /**
+     * Cells with a tree or the townhall. The enemy footman's cell counts as open.
+     */
+    private static boolean[] staticObstacles(GameMap gameMap) {
+        int width = gameMap.getLengthX();
+        int height = gameMap.getLengthY();
+        boolean[] blocked = new boolean[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int type = gameMap.getPosition(x, y);
+                blocked[y * width + x] = type == 1 || type == 3;
+            }
+        }
+        return blocked;
+    }
+
+    private static long fingerprint(GameMap gameMap) {
+        boolean[] blocked = staticObstacles(gameMap);
+        long hash = 1125899906842597L;
+        for (int cell = 0; cell < blocked.length; cell++) {
+            if (blocked[cell]) {
+                hash = 31 * hash + cell;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Lowers the distance to the nearest landmark with a new landmark's distances and
+     * returns the open cell that is now furthest from all of them, or -1 if every
+     * cell it can reach is a landmark already.
+     */
+    private static int farthest(short[] distance, int[] nearest) {
+        int best = -1;
+        for (int cell = 0; cell < nearest.length; cell++) {
+            if (distance[cell] == NONE) continue;
+            nearest[cell] = Math.min(nearest[cell], distance[cell]);
+            if (nearest[cell] > 0 && (best < 0 || nearest[cell] > nearest[best])) {
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Distances from one cell to every cell, capped at Short.MAX_VALUE. A capped
+     * distance is still a lower bound of the real one, so the ALT bounds stay
+     * admissible on maps that big.
+     */
+    private static short[] breadthFirst(boolean[] blocked, int width, int height,
+                                        int source) {
+        short[] distance = new short[blocked.length];
+        Arrays.fill(distance, NONE);
+        distance[source] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            int x = cell % width, y = cell / width;
+            int next = Math.min(distance[cell] + 1, Short.MAX_VALUE);
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int neighbor = ny * width + nx;
+                if (blocked[neighbor] || distance[neighbor] != NONE) continue;
+                distance[neighbor] = (short) next;
+                queue.add(neighbor);
+            }
+        }
+        return distance;
+    }
+}
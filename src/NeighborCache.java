@@ -0,0 +1,87 @@
+/**
+ * The NeighborCache Class keeps one byte per cell saying which of its 8 neighbors can
+ * be walked to. Bit d is set when the neighbor in direction d (GridAstar.DX/DY
+ * numbering) is on the map and not blocked, so a search only has to test bits instead
+ * of building neighbor objects and checking bounds.
+ *
+ * GameMap owns the cache and tells it about every cell that changes, and since the
+ * mask of a cell only depends on its neighbors, only the 8 cells around the changed
+ * one are touched.
+ *
+ * @author Alexander Telich
+ */
+public class NeighborCache {
+    private final int width, height;
+    private final byte[] masks;
+    
+    /**
+     * Builds the masks for an empty map of the given size, where only the edges of the
+     * map take neighbors away.
+     *
+     * @param width  x length of the map
+     * @param height y length of the map
+     */
+    public NeighborCache(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.masks = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int mask = 0;
+                for (int d = 0; d < 8; d++) {
+                    int nx = x + GridAstar.DX[d], ny = y + GridAstar.DY[d];
+                    if (nx >= 0 && ny >= 0 && nx < width && ny < height) {
+                        mask |= 1 << d;
+                    }
+                }
+                masks[y * width + x] = (byte) mask;
+            }
+        }
+    }
+    
+    private NeighborCache(NeighborCache other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.masks = other.masks.clone();
+    }
+    
+    /**
+     * Gives the open neighbor directions of a cell.
+     *
+     * @param index y * width + x of the cell
+     *
+     * @return bit mask with bit d set if the neighbor in direction d is open
+     */
+    public int getMask(int index) {
+        return masks[index] & 0xFF;
+    }
+    
+    /**
+     * Updates the masks of the cells around a cell that became blocked or free.
+     *
+     * @param index   y * width + x of the changed cell
+     * @param blocked true if the cell is blocked now
+     */
+    public void cellChanged(int index, boolean blocked) {
+        int x = index % width, y = index / width;
+        for (int d = 0; d < 8; d++) {
+            int nx = x + GridAstar.DX[d], ny = y + GridAstar.DY[d];
+            if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+            // from the neighbor, the changed cell is in the opposite direction
+            int bit = 1 << ((d + 4) & 7);
+            int neighbor = ny * width + nx;
+            if (blocked) {
+                masks[neighbor] &= ~bit;
+            } else {
+                masks[neighbor] |= bit;
+            }
+        }
+    }
+    
+    /**
+     * @return a copy that won't see later changes
+     */
+    public NeighborCache copy() {
+        return new NeighborCache(this);
+    }
+}
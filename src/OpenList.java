@@ -0,0 +1,64 @@
+/**
+ * The OpenList interface is the priority queue GridAstar keeps its frontier in. Entries
+ * are cell indices with int keys (the f value), and every implementation knows where
+ * each cell is stored so membership is O(1) and a better key can be applied in place
+ * instead of removing and re-adding the cell.
+ *
+ * @author Alexander Telich
+ */
+public interface OpenList {
+    
+    /**
+     * Makes room for the given number of cells and empties the list.
+     *
+     * @param cells number of cells in the map being searched
+     */
+    void resize(int cells);
+    
+    /**
+     * Removes every entry.
+     */
+    void clear();
+    
+    /**
+     * @return true if there are no entries left
+     */
+    boolean isEmpty();
+    
+    /**
+     * @return number of entries in the list
+     */
+    int size();
+    
+    /**
+     * Tells you if the cell is currently in the list.
+     *
+     * @param cell flat index of the cell
+     *
+     * @return true if the cell is in the list
+     */
+    boolean contains(int cell);
+    
+    /**
+     * Adds a cell that is not in the list yet.
+     *
+     * @param cell flat index of the cell
+     * @param key  priority of the cell, smaller comes out first
+     */
+    void insert(int cell, int key);
+    
+    /**
+     * Lowers the key of a cell that is already in the list.
+     *
+     * @param cell flat index of the cell
+     * @param key  new priority, must not be larger than the current one
+     */
+    void decreaseKey(int cell, int key);
+    
+    /**
+     * Removes the cell with the smallest key.
+     *
+     * @return flat index of the removed cell
+     */
+    int poll();
+}
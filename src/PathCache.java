@@ -0,0 +1,383 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The PathCache Class remembers the paths that were planned, keyed by the fingerprint
+ * of the map they were planned on (GameMap.getFingerprint) and by the start and goal
+ * cells. The runners play the same map for many episodes and the enemy moves the same
+ * way every time, so after the first episode almost every plan is a hit.
+ *
+ * A path is stored as its start cell and one byte per move with the direction of the
+ * move (GridAstar.DX/DY numbering), which is also how write puts it into the player
+ * data. When an episode starts on a map that isn't the one the cache was filled on,
+ * startEpisode throws every path away.
+ *
+ * The cache holds at most setCapacity paths and evicts the least recently used one
+ * when it is full. A footman that starts on a cell of a cached path to the same goals
+ * gets the rest of that path, since every part of a path is a path too. To find those
+ * cells the paths of the map as it is now are indexed cell by cell, and the index is
+ * dropped whenever setMapVersion is told the map changed (GameMap.getChangeCount), so
+ * it only ever covers one version of the map. The cells of a path are decoded once
+ * and every lookup gets a GridPath view of them, so a hit copies nothing.
+ *
+ * All methods are synchronized since footmen are planned in parallel.
+ *
+ * @author Alexander Telich
+ */
+public class PathCache {
+    // "PCH1", so read can tell it isn't looking at a path cache
+    private static final int MAGIC = 0x50434831;
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // fingerprint of the map the episodes the paths came from started on
+    private long episodeMap;
+    private int capacity = DEFAULT_CAPACITY;
+    // least recently used first
+    private final LinkedHashMap<Key, CachedPath> paths =
+            new LinkedHashMap<Key, CachedPath>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, CachedPath> eldest) {
+                    if (size() <= capacity) return false;
+                    unindex(eldest.getValue());
+                    evictions++;
+                    return true;
+                }
+            };
+    // cells of the indexed paths, keyed like paths but with the cell as the start
+    private final Map<Key, Suffix> onPath = new HashMap<>();
+    // GameMap.getChangeCount the index is for
+    private long mapVersion = -1;
+    private int hits, suffixHits, misses, evictions, puts;
+
+    /**
+     * Tells the cache a new episode starts on the given map, throwing the cached paths
+     * away if they were planned on a different one.
+     *
+     * @param mapFingerprint fingerprint of the map at the start of the episode
+     */
+    public synchronized void startEpisode(long mapFingerprint) {
+        if (mapFingerprint != episodeMap) {
+            paths.clear();
+            episodeMap = mapFingerprint;
+        }
+        clearIndex();
+    }
+
+    /**
+     * Sets the number of paths the cache holds before it starts evicting, evicting the
+     * least recently used paths right away if there are more.
+     *
+     * @param capacity maximum number of paths, at least 1
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        Iterator<CachedPath> iter = paths.values().iterator();
+        while (paths.size() > this.capacity) {
+            CachedPath eldest = iter.next();
+            iter.remove();
+            unindex(eldest);
+            evictions++;
+        }
+    }
+
+    /**
+     * Tells the cache which version of the map the next lookups and paths are for.
+     * When the version changed the partial path index is dropped, the paths themselves
+     * stay since the map can change back.
+     *
+     * @param changeCount GameMap.getChangeCount of the map as it is now
+     */
+    public synchronized void setMapVersion(long changeCount) {
+        if (changeCount != mapVersion) {
+            clearIndex();
+            mapVersion = changeCount;
+        }
+    }
+
+    /**
+     * Looks up a path planned before on the same map with the same start and goals, or
+     * a path to the same goals that goes through the start.
+     *
+     * @param mapFingerprint fingerprint of the map as it is now
+     * @param width          x length of the map
+     * @param start          flat index of the footman's cell
+     * @param goalCells      flat indices of the goal cells
+     * @param goalCount      number of entries of goalCells that are used
+     *
+     * @return the path, first move first, with a cursor of its own, or null if there
+     * is no such path in the cache
+     */
+    public synchronized GridPath get(long mapFingerprint, int width, int start,
+                                     int[] goalCells, int goalCount) {
+        Key key = new Key(mapFingerprint, start, Arrays.copyOf(goalCells, goalCount));
+        CachedPath entry = paths.get(key);
+        if (entry != null) {
+            hits++;
+            index(entry, width);
+            return entry.path(width).suffix(0);
+        }
+        Suffix suffix = onPath.get(key);
+        // get also marks the path as used
+        if (suffix != null && paths.get(suffix.entry.key) == suffix.entry) {
+            hits++;
+            suffixHits++;
+            return suffix.entry.path(width).suffix(suffix.offset);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores a path. Paths with a step that isn't a move to a neighbor (like a
+     * cooperative footman waiting) are not stored.
+     *
+     * @param mapFingerprint fingerprint of the map the path was planned on
+     * @param width          x length of the map
+     * @param start          flat index of the footman's cell
+     * @param goalCells      flat indices of the goal cells
+     * @param goalCount      number of entries of goalCells that are used
+     * @param path           the path, first move first
+     */
+    public synchronized void put(long mapFingerprint, int width, int start,
+                                 int[] goalCells, int goalCount, GridPath path) {
+        byte[] moves = new byte[path.size()];
+        int x = start % width, y = start / width;
+        for (int i = 0; i < moves.length; i++) {
+            int nextX = path.getX(i), nextY = path.getY(i);
+            int direction = direction(nextX - x, nextY - y);
+            if (direction < 0) return;
+            moves[i] = (byte) direction;
+            x = nextX;
+            y = nextY;
+        }
+        Key key = new Key(mapFingerprint, start, Arrays.copyOf(goalCells, goalCount));
+        CachedPath entry = new CachedPath(key, moves);
+        CachedPath old = paths.put(entry.key, entry);
+        if (old != null) {
+            unindex(old);
+        }
+        index(entry, width);
+        puts++;
+    }
+
+    /**
+     * @return number of paths in the cache
+     */
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    /**
+     * @return number of lookups that found a path, whole or partial
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that got the rest of a path that started elsewhere
+     */
+    public synchronized int getSuffixHits() {
+        return suffixHits;
+    }
+
+    /**
+     * @return number of lookups that didn't find a path
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of paths thrown out to make room for new ones
+     */
+    public synchronized int getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of paths stored with put so far, so callers can tell whether the
+     * cache changed even when it is full
+     */
+    public synchronized int getPutCount() {
+        return puts;
+    }
+
+    /**
+     * Writes every path so read can load them in a later run. They are written least
+     * recently used first, so read keeps the order.
+     *
+     * @param out stream to write to
+     *
+     * @throws IOException if the stream can't be written
+     */
+    public synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(episodeMap);
+        out.writeInt(paths.size());
+        for (CachedPath entry : paths.values()) {
+            Key key = entry.key;
+            out.writeLong(key.map);
+            out.writeInt(key.start);
+            out.writeByte(key.goals.length);
+            for (int goal : key.goals) {
+                out.writeInt(goal);
+            }
+            out.writeInt(entry.moves.length);
+            out.write(entry.moves);
+        }
+    }
+
+    /**
+     * Replaces the cached paths with the ones written by write. If there are more
+     * than the capacity, the least recently used ones are left out.
+     *
+     * @param in stream to read from
+     *
+     * @throws IOException if the stream can't be read or holds no path cache
+     */
+    public synchronized void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a path cache");
+        }
+        paths.clear();
+        clearIndex();
+        episodeMap = in.readLong();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long map = in.readLong();
+            int start = in.readInt();
+            int[] goals = new int[in.readUnsignedByte()];
+            for (int j = 0; j < goals.length; j++) {
+                goals[j] = in.readInt();
+            }
+            byte[] moves = new byte[in.readInt()];
+            in.readFully(moves);
+            CachedPath entry = new CachedPath(new Key(map, start, goals), moves);
+            paths.put(entry.key, entry);
+        }
+    }
+
+    /**
+     * Adds the cells of a path of the current map version to the index, except the
+     * last one since it is a goal.
+     */
+    private void index(CachedPath entry, int width) {
+        if (entry.indexed) return;
+        entry.indexed = true;
+        GridPath path = entry.path(width);
+        for (int i = 1; i < path.size(); i++) {
+            onPath.put(new Key(entry.key.map, path.get(i - 1), entry.key.goals),
+                       new Suffix(entry, i));
+        }
+    }
+
+    /**
+     * Takes the cells of an evicted or replaced path out of the index, unless a newer
+     * path took them over.
+     */
+    private void unindex(CachedPath entry) {
+        if (!entry.indexed) return;
+        entry.indexed = false;
+        GridPath path = entry.path;
+        for (int i = 1; i < path.size(); i++) {
+            Key key = new Key(entry.key.map, path.get(i - 1), entry.key.goals);
+            Suffix suffix = onPath.get(key);
+            if (suffix != null && suffix.entry == entry) {
+                onPath.remove(key);
+            }
+        }
+    }
+
+    private void clearIndex() {
+        onPath.clear();
+        for (CachedPath entry : paths.values()) {
+            entry.indexed = false;
+        }
+    }
+
+    /**
+     * @return the direction of a move by (dx, dy), or -1 if it doesn't go to a neighbor
+     */
+    private static int direction(int dx, int dy) {
+        for (int d = 0; d < 8; d++) {
+            if (GridAstar.DX[d] == dx && GridAstar.DY[d] == dy) return d;
+        }
+        return -1;
+    }
+
+    private static final class CachedPath {
+        final Key key;
+        final byte[] moves;
+        // set while the cells are in the index, which is cleared for every map version
+        boolean indexed;
+        // the cells the moves go to, decoded the first time they are needed; lookups
+        // get suffixes of it, which share the cells and never move this cursor
+        GridPath path;
+
+        CachedPath(Key key, byte[] moves) {
+            this.key = key;
+            this.moves = moves;
+        }
+
+        GridPath path(int width) {
+            if (path == null || path.getWidth() != width) {
+                int[] cells = new int[moves.length];
+                int x = key.start % width, y = key.start / width;
+                for (int i = 0; i < moves.length; i++) {
+                    x += GridAstar.DX[moves[i]];
+                    y += GridAstar.DY[moves[i]];
+                    cells[i] = y * width + x;
+                }
+                path = new GridPath(cells, cells.length, width);
+            }
+            return path;
+        }
+    }
+
+    /**
+     * A cell of an indexed path: the path goes on from its move number offset.
+     */
+    private static final class Suffix {
+        final CachedPath entry;
+        final int offset;
+
+        Suffix(CachedPath entry, int offset) {
+            this.entry = entry;
+            this.offset = offset;
+        }
+    }
+
+    private static final class Key {
+        final long map;
+        final int start;
+        final int[] goals;
+
+        Key(long map, int start, int[] goals) {
+            this.map = map;
+            this.start = start;
+            this.goals = goals;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return map == other.map && start == other.start &&
+                   Arrays.equals(goals, other.goals);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Long.hashCode(map) * 31 + start) * 31 + Arrays.hashCode(goals);
+        }
+    }
+}
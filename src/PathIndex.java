@@ -0,0 +1,65 @@
+import java.util.Arrays;
+
+/**
+ * The PathIndex Class answers whether a cell is on the rest of a footman's path, and
+ * how far along it, without walking the path. Checking the cells the enemy changed
+ * against the path by walking it took time in the length of the path every turn.
+ *
+ * The index keeps the position in the path's array of every cell of the path, stamped
+ * with a generation so indexing a new path doesn't have to clear the old one. Walking
+ * the path needs no update: a position before the path's cursor has been walked
+ * already.
+ *
+ * @author Alexander Telich
+ */
+public class PathIndex {
+    // array position of every cell of the path, valid where stamp is generation
+    private int[] position = new int[0];
+    private int[] stamp = new int[0];
+    private int generation;
+
+    /**
+     * Indexes a new path, forgetting the old one.
+     *
+     * @param path   the path, with its cursor at the next move
+     * @param width  x length of the map
+     * @param height y length of the map
+     */
+    public void index(GridPath path, int width, int height) {
+        if (position.length != width * height) {
+            position = new int[width * height];
+            stamp = new int[width * height];
+            generation = 0;
+        }
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        // first move first, so a cell the path stays on for a few turns keeps its
+        // last step, which is the one walked last
+        int start = path.getPosition();
+        for (int i = 0; i < path.size(); i++) {
+            int cell = path.get(i);
+            stamp[cell] = generation;
+            position[cell] = start + i;
+        }
+    }
+
+    /**
+     * Tells you how many moves ahead a cell is on the part of the path that is left.
+     *
+     * @param path the indexed path, walked as far as the footman has got
+     * @param cell flat index (y * width + x) of the cell
+     *
+     * @return 1 if the cell is the next one, 2 for the one after, and so on, or -1 if
+     * the cell isn't on the rest of the path
+     */
+    public int stepsTo(GridPath path, int cell) {
+        if (cell >= stamp.length || stamp[cell] != generation ||
+            position[cell] < path.getPosition()) {
+            return -1;
+        }
+        return position[cell] - path.getPosition() + 1;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * The PathPlanner interface is what AstarAgent.AstarSearch hands a search to. Every
+ * planner takes the footman's position and the cells that count as reaching the
+ * townhall, and gives back a GridPath with the cells to move to.
+ *
+ * @author Alexander Telich
+ */
+public interface PathPlanner {
+    
+    /**
+     * Finds a path from the start to any of the goal cells.
+     *
+     * @param gameMap   the map to search
+     * @param startX    x coordinate of the footman
+     * @param startY    y coordinate of the footman
+     * @param goalCells flat indices (y * width + x) of the cells that end the search
+     * @param goalCount number of entries of goalCells that are used
+     * @param targetX   x coordinate the heuristic measures to
+     * @param targetY   y coordinate the heuristic measures to
+     *
+     * @return the cells to move to, first move first, or null if none of the goal
+     * cells can be reached
+     */
+    GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                    int goalCount, int targetX, int targetY);
+    
+    /**
+     * Number of nodes expanded by the last search.
+     *
+     * @return count of closed nodes
+     */
+    int getExpandedCount();
+}
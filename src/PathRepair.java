@@ -0,0 +1,80 @@
+import java.util.Arrays;
+
+/**
+ * The PathRepair Class finds short detours around the cells of a path an enemy unit
+ * moved onto, so a footman can go around them instead of planning its whole path
+ * again. The search is breadth first and gives up past a set number of moves, so it
+ * only ever looks at the cells near the blocked ones, however big the map is.
+ *
+ * @author Alexander Telich
+ */
+public class PathRepair {
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private int[] parent = new int[0];
+    private int[] depth = new int[0];
+    private int[] seenStamp = new int[0];
+    private int[] queue = new int[0];
+    private int generation;
+
+    /**
+     * Finds a shortest way from one cell to another that is no longer than maxLength
+     * moves.
+     *
+     * @param map       the map as it is now
+     * @param from      flat index (y * width + x) of the cell to start at
+     * @param to        flat index of the cell to get to
+     * @param maxLength most moves the detour may take
+     *
+     * @return the detour, first move first and ending on the cell to get to, or null
+     * if there is none that short
+     */
+    public GridPath detour(GridView map, int from, int to, int maxLength) {
+        int width = map.getLengthX();
+        int cells = width * map.getLengthY();
+        if (seenStamp.length != cells) {
+            parent = new int[cells];
+            depth = new int[cells];
+            seenStamp = new int[cells];
+            queue = new int[cells];
+            generation = 0;
+        }
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(seenStamp, 0);
+            generation = 1;
+        }
+
+        int head = 0, tail = 0;
+        queue[tail++] = from;
+        seenStamp[from] = generation;
+        depth[from] = 0;
+        parent[from] = -1;
+        while (head < tail && seenStamp[to] != generation) {
+            int cell = queue[head++];
+            if (depth[cell] == maxLength) break;
+            int x = cell % width, y = cell / width;
+            int neighbors = map.getNeighborMask(cell);
+            for (int d = 0; d < 8; d++) {
+                if ((neighbors & (1 << d)) == 0) continue;
+                int next = (y + DY[d]) * width + x + DX[d];
+                if (seenStamp[next] == generation) continue;
+                seenStamp[next] = generation;
+                depth[next] = depth[cell] + 1;
+                parent[next] = cell;
+                queue[tail++] = next;
+            }
+        }
+        if (seenStamp[to] != generation) {
+            return null;
+        }
+
+        // filled from the end back, the depth of the cell is its step
+        int[] path = new int[depth[to]];
+        for (int cell = to; cell != from; cell = parent[cell]) {
+            path[depth[cell] - 1] = cell;
+        }
+        return new GridPath(path, path.length, width);
+    }
+}
@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * The PathService Class answers batches of path queries outside of the Sepia agent
+ * lifecycle. A batch is split over a ForkJoinPool; every task takes a planner (and
+ * with it its scratch arrays) for itself from the planners of this service and puts it
+ * back when done, and all of them search the same immutable GameMap.Snapshot taken
+ * when the batch starts. No more planners are made than tasks ever ran at once, and
+ * none are left on the threads, so a service can run on a pool that outlives it, like
+ * the common pool. shutdown lets go of the planners.
+ *
+ * The GameMap itself is not thread safe, so it should only be changed from the thread
+ * that calls plan/planAll, or between batches. Changes made while a batch runs are
+ * not seen by that batch.
+ *
+ * Planners that keep state between searches of the same footman (DStarLite,
+ * HierarchicalPlanner) don't belong here, since a worker answers queries for many
+ * different starts and goals. GridAstar and JumpPointSearch are fine.
+ *
+ * Example:
+ * PathService service = new PathService(gameMap, 4);
+ * List<GridPath> paths = service.planAll(queries);
+ * service.shutdown();
+ *
+ * @author Alexander Telich
+ */
+public class PathService {
+    // below this many queries a task plans them itself instead of splitting again
+    private static final int BATCH_THRESHOLD = 16;
+
+    private final GameMap gameMap;
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private final Supplier<PathPlanner> plannerFactory;
+    // planners not in use by a task right now
+    private final ConcurrentLinkedQueue<PathPlanner> idlePlanners =
+            new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructor declaration for PathService that plans with GridAstar on a pool of
+     * its own.
+     *
+     * @param gameMap     map to answer queries on
+     * @param parallelism number of worker threads
+     */
+    public PathService(GameMap gameMap, int parallelism) {
+        this(gameMap, new ForkJoinPool(parallelism), true,
+             () -> new GridAstar(gameMap.getLengthX(), gameMap.getLengthY()));
+    }
+
+    /**
+     * Constructor declaration for PathService that runs on a pool owned by the caller.
+     *
+     * @param gameMap        map to answer queries on
+     * @param pool           pool to run the queries on, not shut down by this service
+     * @param plannerFactory makes a planner whenever every one made so far is in use
+     */
+    public PathService(GameMap gameMap, ForkJoinPool pool,
+                       Supplier<PathPlanner> plannerFactory) {
+        this(gameMap, pool, false, plannerFactory);
+    }
+
+    private PathService(GameMap gameMap, ForkJoinPool pool, boolean ownsPool,
+                        Supplier<PathPlanner> plannerFactory) {
+        this.gameMap = gameMap;
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.plannerFactory = plannerFactory;
+    }
+
+    /**
+     * Plans a single query on the calling thread.
+     *
+     * @param query start and goal of the path
+     *
+     * @return the path, first move first, or null if the goal can't be reached
+     */
+    public GridPath plan(Query query) {
+        GameMap.Snapshot snapshot = gameMap.acquireSnapshot();
+        PathPlanner planner = takePlanner();
+        try {
+            return plan(planner, snapshot, query, new int[1]);
+        } finally {
+            idlePlanners.offer(planner);
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Plans every query of the batch in parallel against one snapshot of the map.
+     *
+     * @param queries starts and goals of the paths
+     *
+     * @return the path of every query in the same order, null where the goal can't
+     * be reached
+     */
+    public List<GridPath> planAll(List<Query> queries) {
+        Query[] batch = queries.toArray(new Query[0]);
+        GridPath[] paths = new GridPath[batch.length];
+        if (batch.length > 0) {
+            GameMap.Snapshot snapshot = gameMap.acquireSnapshot();
+            try {
+                pool.invoke(new PlanRange(snapshot, batch, paths, 0, batch.length));
+            } finally {
+                snapshot.release();
+            }
+        }
+        return new ArrayList<>(Arrays.asList(paths));
+    }
+
+    /**
+     * Lets go of the planners and stops the worker threads if the pool was made by
+     * this service.
+     */
+    public void shutdown() {
+        idlePlanners.clear();
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    private PathPlanner takePlanner() {
+        PathPlanner planner = idlePlanners.poll();
+        return planner != null ? planner : plannerFactory.get();
+    }
+
+    private GridPath plan(PathPlanner planner, GameMap.Snapshot snapshot, Query query,
+                          int[] goalCells) {
+        goalCells[0] = query.goalY * snapshot.getLengthX() + query.goalX;
+        return planner.search(snapshot, query.startX, query.startY, goalCells, 1,
+                              query.goalX, query.goalY);
+    }
+
+    /**
+     * Plans queries [from, to) of a batch, splitting the range in half until it is
+     * small enough to plan on one worker.
+     */
+    private class PlanRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final GameMap.Snapshot snapshot;
+        private final Query[] queries;
+        private final GridPath[] paths;
+        private final int from, to;
+
+        PlanRange(GameMap.Snapshot snapshot, Query[] queries, GridPath[] paths, int from,
+                  int to) {
+            this.snapshot = snapshot;
+            this.queries = queries;
+            this.paths = paths;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                int[] goalCells = new int[1];
+                PathPlanner planner = takePlanner();
+                try {
+                    for (int i = from; i < to; i++) {
+                        paths[i] = plan(planner, snapshot, queries[i], goalCells);
+                    }
+                } finally {
+                    idlePlanners.offer(planner);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PlanRange(snapshot, queries, paths, from, middle),
+                          new PlanRange(snapshot, queries, paths, middle, to));
+            }
+        }
+    }
+
+    /**
+     * A path query: the footman at (startX, startY) has to get to (goalX, goalY).
+     */
+    public static final class Query {
+        public final int startX, startY;
+        public final int goalX, goalY;
+
+        public Query(int startX, int startY, int goalX, int goalY) {
+            this.startX = startX;
+            this.startY = startY;
+            this.goalX = goalX;
+            this.goalY = goalY;
+        }
+    }
+}
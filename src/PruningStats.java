@@ -0,0 +1,71 @@
+/**
+ * The PruningStats Class adds up what a SearchPruning strategy does to the searches it
+ * is used in. For every search it is given the expanded cells and the path length with
+ * the pruning and without it, so it can tell how many expansions the strategy saves
+ * and how much longer it makes the paths. Searching twice costs time, so the agent
+ * only does it when astar.measurePruning is set.
+ *
+ * Footmen are planned in parallel, so all methods are synchronized.
+ *
+ * @author Alexander Telich
+ */
+public class PruningStats {
+    private final String name;
+    private int searches, fallbacks, longerPaths;
+    private long expanded, baselineExpanded;
+    private long moves, baselineMoves;
+
+    /**
+     * Constructor declaration for PruningStats
+     *
+     * @param name name of the strategy being measured
+     */
+    public PruningStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds one search.
+     *
+     * @param expandedCount    cells expanded with the pruning, retry included
+     * @param length           moves of the path found with the pruning, -1 if none
+     * @param fellBack         true if the pruned search found nothing and was retried
+     * @param baselineExpanded cells expanded by the same search without pruning
+     * @param baselineLength   moves of the path found without pruning, -1 if none
+     */
+    public synchronized void record(int expandedCount, int length, boolean fellBack,
+                                    int baselineExpanded, int baselineLength) {
+        searches++;
+        if (fellBack) fallbacks++;
+        expanded += expandedCount;
+        this.baselineExpanded += baselineExpanded;
+        // a pruned search that finds nothing is retried, so both find a path or neither
+        if (length < 0 || baselineLength < 0) return;
+        moves += length;
+        baselineMoves += baselineLength;
+        if (length > baselineLength) longerPaths++;
+    }
+
+    /**
+     * @return fraction of the expansions of unpruned searches that the pruning saved,
+     * negative if it expanded more
+     */
+    public synchronized double getExpansionSavings() {
+        return baselineExpanded == 0 ? 0 : 1 - expanded / (double) baselineExpanded;
+    }
+
+    /**
+     * @return fraction by which the pruned paths were longer than the shortest ones
+     */
+    public synchronized double getOptimalityLoss() {
+        return baselineMoves == 0 ? 0 : moves / (double) baselineMoves - 1;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d searches, %.1f%% fewer expansions, %d longer paths " +
+                             "(%.2f%% more moves), %d retried without pruning",
+                             name, searches, 100 * getExpansionSavings(), longerPaths,
+                             100 * getOptimalityLoss(), fallbacks);
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * The QuadrantPruning Class is the pruning of the original AstarSearch. The map is cut
+ * into four quadrants around an origin (where the footman first stood), and neighbors
+ * outside the quadrant of the target are skipped until the search has expanded as
+ * many cells as the rectangle between the origin and the target holds.
+ *
+ * It isn't admissible: a wall across the target's quadrant makes the path longer, and
+ * the origin only fits the footman's first plan.
+ *
+ * @author Alexander Telich
+ */
+public class QuadrantPruning implements SearchPruning {
+    private int width;
+    private int originX, originY;
+    private int targetQuadrant;
+    private int area;
+
+    /**
+     * Sets the point the quadrants are measured from.
+     *
+     * @param x x coordinate of the origin
+     * @param y y coordinate of the origin
+     */
+    public void setOrigin(int x, int y) {
+        this.originX = x;
+        this.originY = y;
+    }
+
+    @Override
+    public void begin(GridView gameMap, int start, int target) {
+        width = gameMap.getLengthX();
+        int targetX = target % width, targetY = target / width;
+        targetQuadrant = getQuadrant(targetX, targetY);
+        area = Math.abs(targetX - originX) * Math.abs(targetY - originY);
+    }
+
+    @Override
+    public boolean prune(int from, int cell, int expandedCount) {
+        return expandedCount < area &&
+               getQuadrant(cell % width, cell / width) != targetQuadrant;
+    }
+
+    @Override
+    public boolean canHideGoal(int[] goalCells, int goalCount) {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "quadrant";
+    }
+
+    /**
+     * Same quadrant numbering as AstarAgent.Quadrant, relative to the origin.
+     */
+    private int getQuadrant(int x, int y) {
+        int cX = x - originX;
+        int cY = y - originY;
+
+        if (cX >= 0 && cY < 0) return 1;
+        else if (cX > 0 && cY >= 0) return 2;
+        else if (cX <= 0 && cY > 0) return 3;
+        else if (cX > 0 && cY <= 0) return 4;
+        return 0;
+    }
+}
@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * The ReservationTable Class records which footman will stand on which cell at which
+ * turn, so cooperative planners can keep their paths from running into each other.
+ *
+ * Only a window of turns ahead is ever reserved, so the table is a ring buffer of
+ * window + 1 time slots and the memory stays the same however long the episode runs.
+ * Every slot is a small open addressing hash table from cell to footman, tagged with
+ * the turn it holds: a slot still tagged with an old turn counts as empty and is
+ * cleared the first time a later turn reserves into it.
+ *
+ * @author Alexander Telich
+ */
+public class ReservationTable {
+    public static final int NONE = -1;
+    private static final int EMPTY = -1;
+
+    private final int window;
+    // turn every slot is holding reservations for, slot = turn % (window + 1)
+    private final int[] slotTurn;
+    // per slot hash table, keys are cells and owners[i] reserved keys[i]
+    private final int[][] keys;
+    private final int[][] owners;
+    private final int[] sizes;
+    // search arrays of the cooperative planners using the table, which never search
+    // at the same time
+    private final CooperativePlanner.SearchSpace searchSpace =
+            new CooperativePlanner.SearchSpace();
+
+    /**
+     * Constructor declaration for ReservationTable
+     *
+     * @param window number of turns ahead that can be reserved
+     */
+    public ReservationTable(int window) {
+        this.window = window;
+        slotTurn = new int[window + 1];
+        Arrays.fill(slotTurn, -1);
+        keys = new int[window + 1][];
+        owners = new int[window + 1][];
+        sizes = new int[window + 1];
+        for (int slot = 0; slot <= window; slot++) {
+            keys[slot] = new int[16];
+            owners[slot] = new int[16];
+            Arrays.fill(keys[slot], EMPTY);
+        }
+    }
+
+    /**
+     * @return number of turns ahead that can be reserved
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return the search arrays shared by the cooperative planners using the table
+     */
+    CooperativePlanner.SearchSpace getSearchSpace() {
+        return searchSpace;
+    }
+
+    /**
+     * Reserves a cell for a footman at a turn, unless another footman already has it.
+     *
+     * @param cell flat index of the cell
+     * @param turn turn the footman will be on the cell
+     * @param unit unit ID of the footman
+     *
+     * @return true if the footman has the cell at that turn now
+     */
+    public boolean reserve(int cell, int turn, int unit) {
+        int slot = turn % (window + 1);
+        if (slotTurn[slot] != turn) {
+            Arrays.fill(keys[slot], EMPTY);
+            sizes[slot] = 0;
+            slotTurn[slot] = turn;
+        }
+        if ((sizes[slot] + 1) * 2 > keys[slot].length) {
+            grow(slot);
+        }
+        int[] slotKeys = keys[slot];
+        int mask = slotKeys.length - 1;
+        int i = hash(cell) & mask;
+        while (slotKeys[i] != EMPTY && slotKeys[i] != cell) {
+            i = (i + 1) & mask;
+        }
+        if (slotKeys[i] == EMPTY) {
+            slotKeys[i] = cell;
+            sizes[slot]++;
+        } else if (owners[slot][i] != NONE && owners[slot][i] != unit) {
+            return false;
+        }
+        owners[slot][i] = unit;
+        return true;
+    }
+
+    /**
+     * @param cell flat index of the cell
+     * @param turn turn to look at
+     *
+     * @return unit ID of the footman that reserved the cell at that turn, or NONE
+     */
+    public int getOwner(int cell, int turn) {
+        int slot = turn % (window + 1);
+        if (slotTurn[slot] != turn) return NONE;
+        int[] slotKeys = keys[slot];
+        int mask = slotKeys.length - 1;
+        int i = hash(cell) & mask;
+        while (slotKeys[i] != EMPTY) {
+            if (slotKeys[i] == cell) return owners[slot][i];
+            i = (i + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /**
+     * Tells you if a footman may step from one cell to another between a turn and the
+     * next: the cell it moves to must not be reserved by anyone else, and it can't
+     * swap places with another footman coming the other way.
+     *
+     * @param from flat index of the cell the footman is on at the turn
+     * @param to   flat index of the cell it is on at the next turn, may equal from
+     * @param turn turn the move starts at
+     * @param unit unit ID of the footman
+     *
+     * @return true if the move doesn't collide with any reservation
+     */
+    public boolean canMove(int from, int to, int turn, int unit) {
+        int owner = getOwner(to, turn + 1);
+        if (owner != NONE && owner != unit) return false;
+        if (from == to) return true;
+        int other = getOwner(to, turn);
+        return other == NONE || other == unit || getOwner(from, turn + 1) != other;
+    }
+
+    /**
+     * Gives up every reservation of a footman, before it plans again.
+     *
+     * @param unit unit ID of the footman
+     */
+    public void release(int unit) {
+        for (int slot = 0; slot <= window; slot++) {
+            int[] slotOwners = owners[slot];
+            int[] slotKeys = keys[slot];
+            for (int i = 0; i < slotKeys.length; i++) {
+                // the key stays so the probe sequences through it still work
+                if (slotKeys[i] != EMPTY && slotOwners[i] == unit) {
+                    slotOwners[i] = NONE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Throws every reservation away.
+     */
+    public void clear() {
+        Arrays.fill(slotTurn, -1);
+    }
+
+    private void grow(int slot) {
+        int[] oldKeys = keys[slot];
+        int[] oldOwners = owners[slot];
+        int[] newKeys = new int[oldKeys.length * 2];
+        int[] newOwners = new int[oldKeys.length * 2];
+        Arrays.fill(newKeys, EMPTY);
+        int mask = newKeys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY) continue;
+            int i = hash(oldKeys[j]) & mask;
+            while (newKeys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            newKeys[i] = oldKeys[j];
+            newOwners[i] = oldOwners[j];
+        }
+        keys[slot] = newKeys;
+        owners[slot] = newOwners;
+    }
+
+    private static int hash(int cell) {
+        int h = cell * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+}
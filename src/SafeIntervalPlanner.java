@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SafeIntervalPlanner Class is Safe Interval Path Planning (SIPP) around the
+ * enemy units, going by where an EnemyPredictor expects them to be. Instead of a state
+ * per cell and turn it has one per safe interval of a cell: a run of turns in which no
+ * unit is expected on the cell or leaving it. Cells no unit is expected on have one
+ * interval that never ends, so the search is about as big as A* on the grid, yet a
+ * footman can wait a turn or two for a unit to walk past instead of going the long way
+ * around it, and it doesn't walk into where a unit is heading.
+ *
+ * A unit takes its cell on the turn it is there and on the turn after, so a footman
+ * never steps into a cell a unit is leaving or swaps cells with it. That only holds for
+ * the moves of a trajectory the prediction is confident of; further along the unit may
+ * stop anywhere, so a cell it gets to there is taken for good, as is the last cell of
+ * its trajectory. A path ends on a goal cell whose interval never ends, so the footman
+ * can stand there and attack.
+ *
+ * Times are turns after the one the search starts on. Waiting shows up in the
+ * returned path as the same cell twice in a row. Call setPrediction before every
+ * search; without a prediction the units are treated as trees.
+ *
+ * @author Alexander Telich
+ */
+public class SafeIntervalPlanner implements PathPlanner {
+    private static final int FOREVER = Integer.MAX_VALUE;
+    private static final int[] DX = GridAstar.DX;
+    private static final int[] DY = GridAstar.DY;
+
+    private int width, height, cells;
+    private EnemyPredictor.Prediction prediction;
+
+    // The first interval of cell c is state c, the others get states from cells on.
+    // Cells a unit is expected on are stamped with the generation in dynamicStamp; the
+    // rest have the one interval [0, FOREVER) and nothing set in the interval arrays.
+    private int[] dynamicStamp;
+    private int[] intervalStart, intervalEnd, stateCell, nextInterval;
+    private int stateCount;
+
+    // per state search arrays, gValue is the turn the footman gets there
+    private int[] gValue, parent, seenStamp, closedStamp;
+    private int[] goalStamp;
+    private int generation;
+    private final IndexedMinHeap openList = new IndexedMinHeap();
+
+    private int[] goals = new int[0];
+    private int goalCount;
+    private int expandedCount;
+
+    /**
+     * Constructor declaration for SafeIntervalPlanner
+     *
+     * @param width  x length of the map
+     * @param height y length of the map
+     */
+    public SafeIntervalPlanner(int width, int height) {
+        resize(width, height);
+    }
+
+    /**
+     * Sets the prediction the next searches plan around. It must be made on the turn
+     * the search starts on.
+     *
+     * @param prediction where the units are expected, or null to treat them as trees
+     */
+    public void setPrediction(EnemyPredictor.Prediction prediction) {
+        this.prediction = prediction;
+    }
+
+    @Override
+    public GridPath search(GridView gameMap, int startX, int startY, int[] goalCells,
+                           int goalCount, int targetX, int targetY) {
+        resize(gameMap.getLengthX(), gameMap.getLengthY());
+        nextGeneration();
+        buildIntervals();
+        openList.clear();
+        expandedCount = 0;
+        goals = goalCells;
+        this.goalCount = goalCount;
+        for (int i = 0; i < goalCount; i++) {
+            goalStamp[goalCells[i]] = generation;
+        }
+
+        // the footman is on its cell now whatever the prediction says, if no interval
+        // holds turn 0 it has to leave right away
+        int start = startY * width + startX;
+        int startState = intervalAt(start, 0);
+        if (startState < 0) {
+            startState = addState(start, 0, 0);
+            openList.resize(gValue.length);
+        }
+        gValue[startState] = 0;
+        parent[startState] = -1;
+        seenStamp[startState] = generation;
+        openList.push(startState, estimate(start));
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            closedStamp[current] = generation;
+            int cell = cellOf(current);
+            int time = gValue[current];
+            int end = endOf(current);
+            if (goalStamp[cell] == generation && end == FOREVER) {
+                return buildPath(current);
+            }
+            expandedCount++;
+
+            // the footman can wait here until the interval ends and then move
+            int latest = end == FOREVER ? FOREVER : end + 1;
+            int x = cell % width, y = cell / width;
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int next = ny * width + nx;
+                // the units' own cells are blocked on the map, but they move on
+                if (gameMap.isBlocked(next) && dynamicStamp[next] != generation) continue;
+                for (int state = next; state >= 0; state = nextOf(state)) {
+                    int from = startOf(state);
+                    if (from > latest) break;
+                    if (endOf(state) < time + 1 || closedStamp[state] == generation) {
+                        continue;
+                    }
+                    int arrival = Math.max(time + 1, from);
+                    if (seenStamp[state] != generation) {
+                        seenStamp[state] = generation;
+                        gValue[state] = arrival;
+                        parent[state] = current;
+                        openList.push(state, (long) arrival + estimate(next));
+                    } else if (arrival < gValue[state]) {
+                        gValue[state] = arrival;
+                        parent[state] = current;
+                        openList.update(state, (long) arrival + estimate(next));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Number of states expanded by the last search.
+     *
+     * @return count of closed states
+     */
+    @Override
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    private void resize(int width, int height) {
+        if (gValue != null && this.width == width && this.height == height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        this.cells = width * height;
+        dynamicStamp = new int[cells];
+        goalStamp = new int[cells];
+        intervalStart = new int[0];
+        intervalEnd = new int[0];
+        stateCell = new int[0];
+        nextInterval = new int[0];
+        gValue = new int[0];
+        parent = new int[0];
+        seenStamp = new int[0];
+        closedStamp = new int[0];
+        generation = 0;
+        ensureStates(cells + 64);
+    }
+
+    /**
+     * Turns the prediction into the safe intervals of the cells the units are expected
+     * on.
+     */
+    private void buildIntervals() {
+        stateCount = cells;
+        if (prediction == null) {
+            openList.resize(gValue.length);
+            return;
+        }
+        // turns every cell is taken, as [from, to] ranges
+        Map<Integer, List<int[]>> taken = new HashMap<>();
+        for (int unit = 0; unit < prediction.getUnitCount(); unit++) {
+            for (int time = 0; time < prediction.getLength(unit); time++) {
+                int to = prediction.isPassing(unit, time) ? time + 1 : FOREVER;
+                taken.computeIfAbsent(prediction.getCell(unit, time), c -> new ArrayList<>())
+                     .add(new int[]{time, to});
+            }
+        }
+        for (Map.Entry<Integer, List<int[]>> entry : taken.entrySet()) {
+            int cell = entry.getKey();
+            List<int[]> ranges = entry.getValue();
+            ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+            dynamicStamp[cell] = generation;
+            // an interval that ends at once marks a cell that is never free
+            intervalStart[cell] = FOREVER;
+            intervalEnd[cell] = -1;
+            stateCell[cell] = cell;
+            nextInterval[cell] = -1;
+            int last = cell;
+            int free = 0;
+            for (int[] range : ranges) {
+                if (range[0] > free) {
+                    last = addInterval(cell, last, free, range[0] - 1);
+                }
+                free = range[1] == FOREVER ? FOREVER : Math.max(free, range[1] + 1);
+                if (free == FOREVER) break;
+            }
+            if (free != FOREVER) {
+                addInterval(cell, last, free, FOREVER);
+            }
+        }
+        openList.resize(gValue.length);
+    }
+
+    /**
+     * Adds a safe interval to the cell after the last one it has.
+     *
+     * @return state of the interval
+     */
+    private int addInterval(int cell, int last, int from, int to) {
+        if (intervalStart[cell] == FOREVER) {
+            intervalStart[cell] = from;
+            intervalEnd[cell] = to;
+            return cell;
+        }
+        int state = addState(cell, from, to);
+        nextInterval[last] = state;
+        return state;
+    }
+
+    private int addState(int cell, int from, int to) {
+        ensureStates(stateCount + 1);
+        int state = stateCount++;
+        stateCell[state] = cell;
+        intervalStart[state] = from;
+        intervalEnd[state] = to;
+        nextInterval[state] = -1;
+        return state;
+    }
+
+    private void ensureStates(int count) {
+        if (count <= gValue.length) return;
+        int size = Math.max(count, gValue.length * 2);
+        intervalStart = Arrays.copyOf(intervalStart, size);
+        intervalEnd = Arrays.copyOf(intervalEnd, size);
+        stateCell = Arrays.copyOf(stateCell, size);
+        nextInterval = Arrays.copyOf(nextInterval, size);
+        gValue = Arrays.copyOf(gValue, size);
+        parent = Arrays.copyOf(parent, size);
+        seenStamp = Arrays.copyOf(seenStamp, size);
+        closedStamp = Arrays.copyOf(closedStamp, size);
+    }
+
+    /**
+     * @return the state of the cell's interval that holds the time, or -1
+     */
+    private int intervalAt(int cell, int time) {
+        for (int state = cell; state >= 0; state = nextOf(state)) {
+            if (startOf(state) <= time && endOf(state) >= time) return state;
+        }
+        return -1;
+    }
+
+    private boolean isDynamic(int state) {
+        return state >= cells || dynamicStamp[state] == generation;
+    }
+
+    private int cellOf(int state) {
+        return state < cells ? state : stateCell[state];
+    }
+
+    private int startOf(int state) {
+        return isDynamic(state) ? intervalStart[state] : 0;
+    }
+
+    private int endOf(int state) {
+        return isDynamic(state) ? intervalEnd[state] : FOREVER;
+    }
+
+    private int nextOf(int state) {
+        return isDynamic(state) ? nextInterval[state] : -1;
+    }
+
+    /**
+     * Chebyshev distance to the nearest goal cell.
+     */
+    private int estimate(int cell) {
+        return GridAstar.nearestGoal(cell % width, cell / width, goals, goalCount, width);
+    }
+
+    /**
+     * Follows the parents back to the start, putting in a wait for every turn the
+     * footman stays on a cell before it moves on.
+     */
+    private GridPath buildPath(int end) {
+        int[] path = new int[gValue[end]];
+        int i = path.length;
+        for (int state = end; parent[state] != -1; state = parent[state]) {
+            int before = parent[state];
+            path[--i] = cellOf(state);
+            for (int wait = gValue[state] - 1 - gValue[before]; wait > 0; wait--) {
+                path[--i] = cellOf(before);
+            }
+        }
+        return new GridPath(path, path.length, width);
+    }
+
+    /**
+     * Starts a new search generation, clearing the stamps once the counter wraps.
+     */
+    private void nextGeneration() {
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(dynamicStamp, 0);
+            Arrays.fill(goalStamp, 0);
+            Arrays.fill(seenStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            generation = 1;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * The SearchPruning interface lets GridAstar skip neighbors that are unlikely (or, for
+ * some strategies, certain) not to be on the path, so it expands fewer cells. A
+ * strategy that isn't admissible can make the path longer or hide the goal, and when a
+ * search that pruned anything finds nothing GridAstar searches again without pruning,
+ * unless canHideGoal says the pruning can't have been what hid it. Goal cells are never
+ * pruned.
+ *
+ * PruningStats measures what a strategy saves against searching without it.
+ *
+ * @author Alexander Telich
+ */
+public interface SearchPruning {
+
+    /**
+     * Called at the start of every search.
+     *
+     * @param gameMap the map being searched
+     * @param start   flat index (y * width + x) of the footman's cell
+     * @param target  flat index of the cell the search is headed for
+     */
+    void begin(GridView gameMap, int start, int target);
+
+    /**
+     * Tells the search whether to skip a neighbor.
+     *
+     * @param from          flat index of the cell being expanded
+     * @param cell          flat index of its neighbor
+     * @param expandedCount number of cells the search expanded so far
+     *
+     * @return true if the neighbor should not be added to the open list
+     */
+    boolean prune(int from, int cell, int expandedCount);
+
+    /**
+     * Tells whether a search that pruned neighbors and found none of the goal cells
+     * may have missed a path to them.
+     *
+     * @param goalCells flat indices of the goal cells
+     * @param goalCount number of entries of goalCells that are used
+     *
+     * @return false if no goal can be reached when the pruned search found none
+     */
+    boolean canHideGoal(int[] goalCells, int goalCount);
+
+    /**
+     * @return name of the strategy, as used by the astar.pruning setting
+     */
+    String getName();
+}
@@ -0,0 +1,83 @@
+/**
+ * Testing class for the AnytimePlanner. While enemy units walk around random maps,
+ * a search from a random cell with a random first weight has to find a path
+ * exactly when a breadth first search finds one, no longer than the weight and the
+ * reported bound allow. Searched again and again on the same map with the smallest
+ * budget, with the footman now and then taking the first step, the paths have to
+ * keep within those bounds and the search has to end on a shortest path. A footman
+ * with no path has to be told so without searching again while the map stays the
+ * same.
+ *
+ * @author Alexander Telich
+ */
+public class testAnytimePlanner {
+    private static final int MAX_CALLS = 1000;
+
+    /**
+     * Main method to test the AnytimePlanner against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(16, 1000, 20, 40, 4, world -> {
+            double weight = 1 + world.random.nextInt(9) / 4.0;
+            AnytimePlanner weighted = new AnytimePlanner(world.width, world.height,
+                                                         weight, 0);
+            AnytimePlanner anytime = new AnytimePlanner(world.width, world.height,
+                                                        weight, 0.25);
+            anytime.setBudget(1);
+            return () -> {
+                int start = world.randomOpenCell();
+                if (start < 0) return null;
+                int[] distances = world.distances();
+
+                GridPath path = world.search(weighted, start);
+                int length = testMaps.length(path);
+                int expected = distances[start];
+                if ((length < 0) != (expected < 0) ||
+                    length > 0 && (length > weight * expected ||
+                                   length > weighted.getBound() * expected + 1e-9)) {
+                    return "weighted path of " + length + " from " + start +
+                           ", expected " + expected + " at weight " + weight +
+                           " and bound " + weighted.getBound();
+                }
+                String failure = world.checkPath(start, path);
+                if (failure != null) return failure;
+                if (expected < 0) {
+                    int other = world.randomOpenCell();
+                    for (int cell : new int[]{start, other}) {
+                        if (distances[cell] >= 0) continue;
+                        if (world.search(weighted, cell) != null ||
+                            weighted.getExpandedCount() != 0) {
+                            return "searched again for a path from " + cell +
+                                   " that is known to have none";
+                        }
+                    }
+                }
+
+                int footman = start;
+                for (int call = 0; call < MAX_CALLS; call++) {
+                    path = world.search(anytime, footman);
+                    length = testMaps.length(path);
+                    expected = distances[footman];
+                    boolean done = !anytime.isImproving();
+                    if ((length < 0) != (expected < 0) ||
+                        length > 0 && (length > weight * expected ||
+                                       length > anytime.getBound() * expected + 1e-9) ||
+                        done && length != expected) {
+                        return "anytime path of " + length + " from " + footman +
+                               " after " + call + " calls, expected " + expected +
+                               " at weight " + weight;
+                    }
+                    failure = world.checkPath(footman, path);
+                    if (failure != null) return failure;
+                    if (done) return null;
+                    if (!path.isEmpty() && world.random.nextInt(4) == 0) {
+                        footman = path.get(0);
+                    }
+                }
+                return "still improving after " + MAX_CALLS + " calls";
+            };
+        });
+    }
+}
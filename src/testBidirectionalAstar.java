@@ -0,0 +1,30 @@
+/**
+ * Testing class for BidirectionalAstar. While enemy units walk around random maps,
+ * a search from a random cell has to find a path as short as a breadth first
+ * search does, or none when there is none.
+ *
+ * @author Alexander Telich
+ */
+public class testBidirectionalAstar {
+    /**
+     * Main method to test BidirectionalAstar against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(5, 1000, 20, 40, 4, world -> {
+            BidirectionalAstar planner = new BidirectionalAstar(world.width, world.height);
+            return () -> {
+                int start = world.randomOpenCell();
+                if (start < 0) return null;
+                GridPath path = world.search(planner, start);
+                int expected = world.distances()[start];
+                if (testMaps.length(path) != expected) {
+                    return "path of " + testMaps.length(path) + " from " + start +
+                           ", expected " + expected;
+                }
+                return world.checkPath(start, path);
+            };
+        });
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Arrays;
+
+/**
+ * Testing class for the ComponentIndex behind GameMap.mayReach. While enemy units
+ * walk around random maps, splitting and joining the areas, mayReach has to say for
+ * every cell whether a breadth first search gets from it to the goal cells or to a
+ * random cell. The snapshot taken before the units moved, when one was kept, has to
+ * keep answering for the map it was taken of.
+ *
+ * @author Alexander Telich
+ */
+public class testComponentIndex {
+    /**
+     * Main method to test mayReach against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(7, 1000, 60, 22, 8, world -> {
+            boolean[] blocked = blockedCells(world.snapshot);
+            return () -> {
+                // the snapshot from before has to be the map as it was then
+                if (world.before != null &&
+                    !Arrays.equals(blockedCells(world.before), blocked)) {
+                    return "the snapshot from before changed";
+                }
+                System.arraycopy(blockedCells(world.snapshot), 0, blocked, 0,
+                                 blocked.length);
+                return checkMayReach(world);
+            };
+        });
+    }
+
+    /**
+     * @return null if mayReach is right for every cell, otherwise what is wrong
+     */
+    private static String checkMayReach(testMaps.World world) {
+        int target = world.random.nextInt(world.width * world.height);
+        for (int[] goals : new int[][]{world.goals, {target}}) {
+            boolean[] live = reachable(world.snapshot, goals);
+            boolean[] old = world.before == null ? null : reachable(world.before, goals);
+            for (int cell = 0; cell < live.length; cell++) {
+                if (world.gameMap.mayReach(cell, goals, goals.length) != live[cell] ||
+                    world.snapshot.mayReach(cell, goals, goals.length) != live[cell] ||
+                    (old != null &&
+                     world.before.mayReach(cell, goals, goals.length) != old[cell])) {
+                    return "mayReach is wrong for cell " + cell + " and goals " +
+                           Arrays.toString(goals);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return for every cell, true if it is blocked on the map
+     */
+    private static boolean[] blockedCells(GridView map) {
+        boolean[] blocked = new boolean[map.getLengthX() * map.getLengthY()];
+        for (int cell = 0; cell < blocked.length; cell++) {
+            blocked[cell] = map.isBlocked(cell);
+        }
+        return blocked;
+    }
+
+    /**
+     * Breadth first search for the cells a footman can get to the goals from. A
+     * footman on a blocked cell gets there if one of the open cells around it does.
+     *
+     * @return for every cell, true if a path to one of the goals exists
+     */
+    private static boolean[] reachable(GridView map, int[] goals) {
+        int width = map.getLengthX(), height = map.getLengthY();
+        int[] distance = testMaps.bfs(map, goals);
+        boolean[] reachable = new boolean[width * height];
+        for (int cell = 0; cell < width * height; cell++) {
+            if (!map.isBlocked(cell)) {
+                reachable[cell] = distance[cell] >= 0;
+                continue;
+            }
+            for (int d = 0; d < 8; d++) {
+                int x = cell % width + GridAstar.DX[d];
+                int y = cell / width + GridAstar.DY[d];
+                if (x >= 0 && y >= 0 && x < width && y < height &&
+                    distance[y * width + x] >= 0) {
+                    reachable[cell] = true;
+                }
+            }
+        }
+        return reachable;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Testing class for the DStarLite repair. A footman walks along its path on random
+ * maps while enemy units walk around it, and every turn the repaired path has
+ * to be as short as a breadth first search from the footman's cell on the map as it
+ * is now.
+ *
+ * @author Alexander Telich
+ */
+public class testDStarLite {
+    /**
+     * Main method to test DStarLite against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(3, 1000, 30, 32, 4, world -> {
+            DStarLite planner = new DStarLite(world.width, world.height);
+            world.gameMap.addChangeListener(planner);
+            int[] footman = {world.randomOpenCell()};
+            return () -> {
+                // a unit walked into the footman, so it is put down somewhere else
+                if (footman[0] < 0 || world.snapshot.isBlocked(footman[0])) {
+                    footman[0] = world.randomOpenCell();
+                    if (footman[0] < 0) return null;
+                }
+                GridPath path = world.search(planner, footman[0]);
+                int expected = world.distances()[footman[0]];
+                if (testMaps.length(path) != expected) {
+                    return "path of " + testMaps.length(path) + " from " + footman[0] +
+                           ", expected " + expected;
+                }
+                if (path != null && !path.isEmpty()) {
+                    String failure = world.checkPath(footman[0], path);
+                    if (failure != null) return failure;
+                    footman[0] = path.get(0);
+                }
+                return null;
+            };
+        });
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Testing class for the DistanceField repair. Enemy units walk around random maps
+ * and after every move the repaired field has to match a breadth first search
+ * from the goal cells on the map as it is now. Walking down the field, and GridAstar
+ * with the field as its heuristic, have to take a shortest path.
+ *
+ * @author Alexander Telich
+ */
+public class testDistanceField {
+    /**
+     * Main method to test the DistanceField against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(11, 300, 40, 34, 3, world -> {
+            DistanceField field = new DistanceField(world.width, world.height);
+            world.gameMap.addChangeListener(field);
+            GridAstar astar = new GridAstar(world.width, world.height);
+            astar.setHeuristic(field);
+            return () -> {
+                field.update(world.snapshot, world.goals, world.goals.length);
+                int[] expected = world.distances();
+                for (int cell = 0; cell < expected.length; cell++) {
+                    int distance = field.getDistance(cell);
+                    if (distance != (expected[cell] < 0 ? Heuristic.UNREACHABLE :
+                                     expected[cell])) {
+                        return "cell " + cell + " is " + distance + " away, expected " +
+                               expected[cell];
+                    }
+                }
+
+                int start = world.randomOpenCell();
+                if (start < 0) return null;
+                for (PathPlanner planner : new PathPlanner[]{field, astar}) {
+                    GridPath path = world.search(planner, start);
+                    if (testMaps.length(path) != expected[start]) {
+                        return "path of " + testMaps.length(path) + " from " + start +
+                               ", expected " + expected[start];
+                    }
+                    String failure = world.checkPath(start, path);
+                    if (failure != null) return failure;
+                }
+                return null;
+            };
+        });
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+/**
+ * Testing class for GridPath. Random paths are walked, cut with suffix and put
+ * together with splice in random order, next to lists of the cells each one should
+ * still hold, and every path has to give back the cells of its list however it is
+ * read, without walking one path moving another that shares its cells. Steps out of
+ * range have to be turned down.
+ *
+ * @author Alexander Telich
+ */
+public class testGridPath {
+    private static final int TESTS = 2000;
+    private static final int OPERATIONS = 200;
+    private static final int MAX_PATHS = 8;
+    private static final int WIDTH = 7;
+
+    /**
+     * Main method to test GridPath against lists of cells
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        Random random = new Random(23);
+        int failures = 0;
+
+        for (int test = 0; test < TESTS; test++) {
+            List<GridPath> paths = new ArrayList<GridPath>();
+            List<List<Integer>> expected = new ArrayList<List<Integer>>();
+            paths.add(GridPath.empty(WIDTH));
+            expected.add(new ArrayList<Integer>());
+            for (int operation = 0; operation < OPERATIONS; operation++) {
+                String failure = step(random, paths, expected);
+                if (failure == null) {
+                    for (int i = 0; i < paths.size() && failure == null; i++) {
+                        failure = compare(paths.get(i), expected.get(i));
+                    }
+                }
+                if (failure != null) {
+                    failures++;
+                    System.out.println("test " + test + " operation " + operation + ": " +
+                                       failure);
+                    break;
+                }
+            }
+        }
+
+        if (failures == 0)
+            System.out.println("TRUE TEST PASSED");
+        else
+            System.out.println("FALSE TEST FAILED");
+    }
+
+    /**
+     * Does one random operation on one of the paths and its list.
+     *
+     * @return null if the path did what the list did, otherwise what is wrong
+     */
+    private static String step(Random random, List<GridPath> paths,
+                               List<List<Integer>> expected) {
+        int which = random.nextInt(paths.size());
+        GridPath path = paths.get(which);
+        List<Integer> cells = expected.get(which);
+        int size = cells.size();
+        switch (random.nextInt(5)) {
+            case 0: {
+                // a new path from part of a random array
+                int length = random.nextInt(12);
+                int[] array = new int[length + random.nextInt(3)];
+                List<Integer> list = new ArrayList<Integer>();
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = random.nextInt(WIDTH * WIDTH);
+                    if (i < length) list.add(array[i]);
+                }
+                add(paths, expected, new GridPath(array, length, WIDTH), list);
+                return null;
+            }
+            case 1: {
+                int position = path.getPosition();
+                try {
+                    int cell = path.next();
+                    if (size == 0 || cell != cells.remove(0)) {
+                        return "next gave " + cell;
+                    }
+                } catch (NoSuchElementException e) {
+                    if (size > 0) return "next threw with " + size + " cells left";
+                    return null;
+                }
+                return path.getPosition() == position + 1 ? null : "cursor did not move";
+            }
+            case 2: {
+                int step = random.nextInt(size + 3) - 1;
+                try {
+                    int cell = path.get(step);
+                    if (step < 0 || step >= size || cell != cells.get(step) ||
+                        path.getX(step) != cell % WIDTH ||
+                        path.getY(step) != cell / WIDTH) {
+                        return "get(" + step + ") gave " + cell;
+                    }
+                } catch (IndexOutOfBoundsException e) {
+                    if (step >= 0 && step < size) return "get(" + step + ") threw";
+                }
+                return null;
+            }
+            case 3: {
+                int step = random.nextInt(size + 3) - 1;
+                try {
+                    GridPath suffix = path.suffix(step);
+                    if (step < 0 || step > size) return "suffix(" + step + ") worked";
+                    if (suffix.getPosition() != path.getPosition() + step) {
+                        return "suffix(" + step + ") starts at " + suffix.getPosition();
+                    }
+                    add(paths, expected, suffix,
+                        new ArrayList<Integer>(cells.subList(step, size)));
+                } catch (IndexOutOfBoundsException e) {
+                    if (step >= 0 && step <= size) return "suffix(" + step + ") threw";
+                }
+                return null;
+            }
+            default: {
+                int other = random.nextInt(paths.size());
+                int from = random.nextInt(size + 2) - 1;
+                int to = random.nextInt(size + 2) - 1;
+                try {
+                    GridPath spliced = path.splice(from, to, paths.get(other));
+                    if (from < 0 || from > to || to > size) {
+                        return "splice(" + from + ", " + to + ") worked";
+                    }
+                    List<Integer> list = new ArrayList<Integer>(cells.subList(0, from));
+                    list.addAll(expected.get(other));
+                    list.addAll(cells.subList(to, size));
+                    add(paths, expected, spliced, list);
+                } catch (IndexOutOfBoundsException e) {
+                    if (from >= 0 && from <= to && to <= size) {
+                        return "splice(" + from + ", " + to + ") threw";
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Keeps the new path, in place of a random one once there are enough of them.
+     */
+    private static void add(List<GridPath> paths, List<List<Integer>> expected,
+                            GridPath path, List<Integer> cells) {
+        if (paths.size() < MAX_PATHS) {
+            paths.add(path);
+            expected.add(cells);
+        } else {
+            int replaced = Math.abs(cells.hashCode()) % MAX_PATHS;
+            paths.set(replaced, path);
+            expected.set(replaced, cells);
+        }
+    }
+
+    /**
+     * @return null if the path holds the cells of the list, read every way, otherwise
+     *         what is wrong
+     */
+    private static String compare(GridPath path, List<Integer> cells) {
+        if (path.size() != cells.size() || path.isEmpty() != cells.isEmpty()) {
+            return "path of " + path.size() + ", expected " + cells.size();
+        }
+        int[] array = path.toArray();
+        PrimitiveIterator.OfInt iterator = path.iterator();
+        List<Integer> walked = new ArrayList<Integer>();
+        path.forEach(walked::add);
+        for (int i = 0; i < cells.size(); i++) {
+            int cell = cells.get(i);
+            if (path.get(i) != cell || array[i] != cell || !iterator.hasNext() ||
+                iterator.nextInt() != cell) {
+                return "cell " + i + " is not " + cell;
+            }
+        }
+        if (iterator.hasNext() || array.length != cells.size() || !walked.equals(cells)) {
+            return "path goes on past " + cells.size() + " cells";
+        }
+        return null;
+    }
+}
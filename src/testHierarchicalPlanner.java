@@ -0,0 +1,37 @@
+/**
+ * Testing class for the HierarchicalPlanner. While enemy units walk around random
+ * maps cut into clusters of random sizes, a path from a random cell has to be
+ * found exactly when a breadth first search finds one, and can't be shorter than it.
+ * Smoothed HPA* paths are close to the shortest ones, so it can't be more than twice
+ * as long either.
+ *
+ * @author Alexander Telich
+ */
+public class testHierarchicalPlanner {
+    /**
+     * Main method to test the HierarchicalPlanner against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(7, 1000, 20, 40, 4, world -> {
+            int clusterSize = 2 + world.random.nextInt(15);
+            HierarchicalPlanner planner =
+                    new HierarchicalPlanner(world.width, world.height, clusterSize);
+            world.gameMap.addChangeListener(planner);
+            return () -> {
+                int start = world.randomOpenCell();
+                if (start < 0) return null;
+                GridPath path = world.search(planner, start);
+                int length = testMaps.length(path);
+                int expected = world.distances()[start];
+                if ((length < 0) != (expected < 0) || length < expected ||
+                    (expected >= 0 && length > 2 * expected)) {
+                    return "path of " + length + " from " + start + ", expected " +
+                           expected + " with clusters of " + clusterSize;
+                }
+                return world.checkPath(start, path);
+            };
+        });
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Testing class for JumpPointSearch, with and without the precomputed jump distances
+ * of JPS+, which are rebuilt for every map or, for a planner listening to the map,
+ * repaired. While enemy units walk around random maps, paths from random cells
+ * have to be found exactly when a breadth first search finds one, and be at most one
+ * move longer than it, since the Chebyshev distance to the townhall can overestimate
+ * the one to the cells around it by one.
+ *
+ * @author Alexander Telich
+ */
+public class testJumpPointSearch {
+    /**
+     * Main method to test JumpPointSearch against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(4, 1000, 20, 40, 4, world -> {
+            JumpPointSearch repaired = new JumpPointSearch(world.width, world.height, true);
+            world.gameMap.addChangeListener(repaired);
+            PathPlanner[] planners = {
+                    new JumpPointSearch(world.width, world.height, false),
+                    new JumpPointSearch(world.width, world.height, true), repaired};
+            return () -> {
+                int start = world.randomOpenCell();
+                if (start < 0) return null;
+                int expected = world.distances()[start];
+                for (PathPlanner planner : planners) {
+                    GridPath path = world.search(planner, start);
+                    int length = testMaps.length(path);
+                    if ((length < 0) != (expected < 0) || length < expected ||
+                        length > expected + 1) {
+                        return "path of " + length + " from " + start + ", expected " +
+                               expected;
+                    }
+                    String failure = world.checkPath(start, path);
+                    if (failure != null) return failure;
+                }
+                return null;
+            };
+        });
+    }
+}
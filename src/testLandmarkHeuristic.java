@@ -0,0 +1,84 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Testing class for the ALT landmark heuristic. On random maps the LandmarkTable is
+ * written out and read back, and while enemy units walk around the estimate
+ * from the table read back must never be more than the distance a breadth first
+ * search finds, so GridAstar using it still finds shortest paths.
+ *
+ * @author Alexander Telich
+ */
+public class testLandmarkHeuristic {
+    /**
+     * Main method to test LandmarkHeuristic against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(13, 500, 20, 40, 4, world -> {
+            LandmarkTable built = LandmarkTable.build(world.gameMap,
+                                                      1 + world.random.nextInt(8));
+            LandmarkTable table = roundTrip(built);
+            LandmarkHeuristic heuristic = new LandmarkHeuristic(table, world.width);
+            heuristic.setGoals(world.goals, world.goals.length);
+            GridAstar astar = new GridAstar(world.width, world.height);
+            astar.setHeuristic(heuristic);
+            return () -> {
+                if (world.turn == 0 &&
+                    (!sameTable(built, table, world.width * world.height) ||
+                     !table.matches(world.gameMap))) {
+                    return "the table read back is not the one written";
+                }
+                int[] expected = world.distances();
+                for (int cell = 0; cell < expected.length; cell++) {
+                    if (world.snapshot.isBlocked(cell)) continue;
+                    int estimate = heuristic.estimate(cell, -1);
+                    if (estimate == Heuristic.UNREACHABLE ? expected[cell] >= 0 :
+                        expected[cell] >= 0 && estimate > expected[cell]) {
+                        return "cell " + cell + " is estimated " + estimate +
+                               " away, but is " + expected[cell];
+                    }
+                }
+
+                int start = world.randomOpenCell();
+                if (start < 0) return null;
+                GridPath path = world.search(astar, start);
+                if (testMaps.length(path) != expected[start]) {
+                    return "path of " + testMaps.length(path) + " from " + start +
+                           ", expected " + expected[start];
+                }
+                return world.checkPath(start, path);
+            };
+        });
+    }
+
+    /**
+     * Writes the table out and reads it back, as between two episodes.
+     */
+    private static LandmarkTable roundTrip(LandmarkTable table) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            table.write(new DataOutputStream(bytes));
+            return LandmarkTable.read(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean sameTable(LandmarkTable a, LandmarkTable b, int cells) {
+        if (a.getLandmarkCount() != b.getLandmarkCount()) return false;
+        for (int landmark = 0; landmark < a.getLandmarkCount(); landmark++) {
+            for (int cell = 0; cell < cells; cell++) {
+                if (a.getDistance(landmark, cell) != b.getDistance(landmark, cell)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,291 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Runs the testing classes' checks on random maps with enemy units walking around
+ * them, and has the breadth first search they check the planners against.
+ *
+ * @author Alexander Telich
+ */
+class testMaps {
+    /**
+     * A random map as a check sees it on a turn.
+     */
+    static final class World {
+        final Random random;
+        final int index;
+        final int width, height;
+        final AstarAgent.MapLocation townhall;
+        // the open cells around the townhall
+        final int[] goals;
+        final GameMap gameMap;
+        int turn;
+        // the map after the units moved this turn, held until they move again, and the
+        // one from before, null when nothing kept it and the map was changed in place
+        GameMap.Snapshot snapshot, before;
+        // cell of every enemy unit, by unit ID
+        final Map<Integer, Integer> units = new HashMap<Integer, Integer>();
+
+        World(Random random, int index, int width, int height, int unitCount) {
+            this.random = random;
+            this.index = index;
+            this.width = width;
+            this.height = height;
+            int townhallCell = random.nextInt(width * height);
+            townhall = location(townhallCell);
+            Set<Integer> taken = new HashSet<Integer>();
+            taken.add(townhallCell);
+            unitCount = Math.min(unitCount, width * height - 1);
+            for (int unit = 0; unit < unitCount; unit++) {
+                int cell;
+                do {
+                    cell = random.nextInt(width * height);
+                } while (!taken.add(cell));
+                units.put(unit, cell);
+            }
+            double density = random.nextDouble() * 0.35;
+            Set<AstarAgent.MapLocation> trees = new HashSet<AstarAgent.MapLocation>();
+            for (int cell = 0; cell < width * height; cell++) {
+                if (!taken.contains(cell) && random.nextDouble() < density) {
+                    trees.add(location(cell));
+                }
+            }
+            gameMap = new GameMap(width, height, trees, townhall);
+            gameMap.updateUnitLocations(unitLocations());
+            goals = goalCells();
+            snapshot = gameMap.acquireSnapshot();
+            before = gameMap.snapshot();
+        }
+
+        /**
+         * @return a random open cell, or -1 if there is none
+         */
+        int randomOpenCell() {
+            int cells = width * height;
+            int first = random.nextInt(cells);
+            for (int i = 0; i < cells; i++) {
+                int cell = (first + i) % cells;
+                if (!snapshot.isBlocked(cell)) return cell;
+            }
+            return -1;
+        }
+
+        /**
+         * Plans from a cell to the goals on the map as it is now, the way the agent
+         * does.
+         */
+        GridPath search(PathPlanner planner, int start) {
+            return planner.search(snapshot, start % width, start / width, goals,
+                                  goals.length, townhall.x, townhall.y);
+        }
+
+        /**
+         * @return moves from every cell to the nearest goal, or -1 if there is no path
+         */
+        int[] distances() {
+            return bfs(snapshot, goals);
+        }
+
+        /**
+         * @return null if the path from the cell is walkable and ends on a goal,
+         *         otherwise what is wrong
+         */
+        String checkPath(int start, GridPath path) {
+            return checkSteps(snapshot, start, goals, path);
+        }
+
+        AstarAgent.MapLocation location(int cell) {
+            return new AstarAgent.MapLocation(cell % width, cell / width, null, 0);
+        }
+
+        /**
+         * Moves every unit to an open neighbor, or now and then to anywhere open, or
+         * leaves it standing, and puts them all on the map in one batch.
+         */
+        void moveUnits() {
+            // cells units moved to this turn, the ones they left are still blocked
+            Set<Integer> taken = new HashSet<Integer>();
+            for (Map.Entry<Integer, Integer> unit : units.entrySet()) {
+                int cell = unit.getValue();
+                int next = -1;
+                int roll = random.nextInt(10);
+                if (roll == 0) {
+                    next = randomOpenCell();
+                } else if (roll > 2) {
+                    int d = random.nextInt(8);
+                    int x = cell % width + GridAstar.DX[d];
+                    int y = cell / width + GridAstar.DY[d];
+                    if (x >= 0 && y >= 0 && x < width && y < height &&
+                        !gameMap.isBlocked(x, y)) {
+                        next = y * width + x;
+                    }
+                }
+                if (next >= 0 && taken.add(next)) {
+                    unit.setValue(next);
+                }
+            }
+            if (random.nextInt(4) == 0) {
+                snapshot.release();
+                before = null;
+            } else {
+                before = gameMap.snapshot();
+            }
+            gameMap.updateUnitLocations(unitLocations());
+            snapshot = gameMap.acquireSnapshot();
+        }
+
+        private Map<Integer, AstarAgent.MapLocation> unitLocations() {
+            Map<Integer, AstarAgent.MapLocation> locations =
+                    new HashMap<Integer, AstarAgent.MapLocation>();
+            for (Map.Entry<Integer, Integer> unit : units.entrySet()) {
+                locations.put(unit.getKey(), location(unit.getValue()));
+            }
+            return locations;
+        }
+
+        private int[] goalCells() {
+            int[] cells = new int[8];
+            int count = 0;
+            for (int d = 0; d < 8; d++) {
+                int x = townhall.x + GridAstar.DX[d], y = townhall.y + GridAstar.DY[d];
+                if (x >= 0 && y >= 0 && x < width && y < height &&
+                    gameMap.getPosition(x, y) != 1) {
+                    cells[count++] = y * width + x;
+                }
+            }
+            return Arrays.copyOf(cells, count);
+        }
+    }
+
+    /**
+     * What a testing class checks on every map.
+     */
+    interface Check {
+        /**
+         * Gets ready for a new map, before the units first move.
+         *
+         * @return the check to run after every move of the units
+         */
+        Turn start(World world);
+    }
+
+    /**
+     * The check a testing class runs on every turn.
+     */
+    interface Turn {
+        /**
+         * @return null if everything is right, otherwise what is wrong
+         */
+        String check();
+    }
+
+    /**
+     * Runs the check on random maps and prints TRUE TEST PASSED or FALSE TEST FAILED.
+     *
+     * @param seed     seed of the random maps
+     * @param maps     number of maps
+     * @param turns    number of times the units move on every map
+     * @param maxSize  largest x and y length of a map
+     * @param maxUnits largest number of enemy units on a map
+     * @param check    what the testing class checks
+     */
+    static void run(long seed, int maps, int turns, int maxSize, int maxUnits,
+                    Check check) {
+        Random random = new Random(seed);
+        int failures = 0;
+
+        for (int index = 0; index < maps; index++) {
+            World world = new World(random, index, 2 + random.nextInt(maxSize - 1),
+                                    2 + random.nextInt(maxSize - 1),
+                                    1 + random.nextInt(maxUnits));
+            Turn turn = check.start(world);
+            for (world.turn = 0; world.turn < turns; world.turn++) {
+                world.moveUnits();
+                String failure = turn.check();
+                if (failure != null) {
+                    failures++;
+                    if (failures <= 10) {
+                        System.out.println("map " + index + " turn " + world.turn + ": " +
+                                           failure);
+                    }
+                }
+            }
+        }
+
+        if (failures == 0)
+            System.out.println("TRUE TEST PASSED");
+        else
+            System.out.println("FALSE TEST FAILED");
+    }
+
+    /**
+     * Breadth first search back from the open goal cells.
+     *
+     * @return moves from every cell to the nearest goal, or -1 if there is no path
+     */
+    static int[] bfs(GridView map, int[] goals) {
+        int width = map.getLengthX(), height = map.getLengthY();
+        int[] distance = new int[width * height];
+        Arrays.fill(distance, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        for (int goal : goals) {
+            if (!map.isBlocked(goal) && distance[goal] != 0) {
+                distance[goal] = 0;
+                queue.add(goal);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (int d = 0; d < 8; d++) {
+                int x = cell % width + GridAstar.DX[d];
+                int y = cell / width + GridAstar.DY[d];
+                if (x < 0 || y < 0 || x >= width || y >= height || map.isBlocked(x, y)) {
+                    continue;
+                }
+                int next = y * width + x;
+                if (distance[next] == -1) {
+                    distance[next] = distance[cell] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * @return number of moves on the path, or -1 for no path
+     */
+    static int length(GridPath path) {
+        return path == null ? -1 : path.size();
+    }
+
+    /**
+     * Walks the path from the next cell on.
+     *
+     * @return null if every step is one move onto an open cell and the path ends on a
+     *         goal, otherwise what is wrong
+     */
+    static String checkSteps(GridView map, int start, int[] goals, GridPath path) {
+        if (path == null) return null;
+        int width = map.getLengthX();
+        int cell = start;
+        for (int i = 0; i < path.size(); i++) {
+            int next = path.get(i);
+            if (Math.abs(next % width - cell % width) > 1 ||
+                Math.abs(next / width - cell / width) > 1 || next == cell ||
+                map.isBlocked(next)) {
+                return "bad step to " + next % width + "," + next / width;
+            }
+            cell = next;
+        }
+        for (int goal : goals) {
+            if (goal == cell) return null;
+        }
+        return "path ends off the goals";
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Testing class for the PathCache. While enemy units walk around random maps the
+ * shortest paths a DistanceField plans are put into a cache of a random capacity,
+ * next to an access ordered LinkedHashMap of the same capacity that says which paths
+ * the cache should still hold. Every one of those has to come back the same from get,
+ * also after the cache was written out and read back into a new one as between two
+ * runs, and a footman on a cell of the last path has to get a shortest path from there.
+ *
+ * @author Alexander Telich
+ */
+public class testPathCache {
+    /**
+     * Main method to test the PathCache
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(14, 300, 20, 30, 4, world -> {
+            DistanceField field = new DistanceField(world.width, world.height);
+            world.gameMap.addChangeListener(field);
+            int capacity = 1 + world.random.nextInt(8);
+            PathCache[] cache = {new PathCache()};
+            cache[0].setCapacity(capacity);
+            cache[0].startEpisode(world.gameMap.getFingerprint());
+            int[] evictions = {0};
+            Map<String, GridPath> expected =
+                    new LinkedHashMap<String, GridPath>(16, 0.75f, true) {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(
+                                Map.Entry<String, GridPath> eldest) {
+                            if (size() <= capacity) return false;
+                            evictions[0]++;
+                            return true;
+                        }
+                    };
+            return () -> {
+                long fingerprint = world.gameMap.getFingerprint();
+                cache[0].setMapVersion(world.gameMap.getChangeCount());
+                int start = world.randomOpenCell();
+                if (start < 0) return null;
+                GridPath path = world.search(field, start);
+                if (path == null) return null;
+                cache[0].put(fingerprint, world.width, start, world.goals,
+                             world.goals.length, path);
+                expected.put(key(fingerprint, start), path);
+
+                // a footman further along the path gets the rest of it, or the path
+                // that was put in for its own cell
+                if (path.size() > 1) {
+                    int cell = path.get(world.random.nextInt(path.size() - 1));
+                    expected.get(key(fingerprint, cell));
+                    GridPath rest = get(world, cache[0], fingerprint, cell);
+                    if (testMaps.length(rest) != world.distances()[cell]) {
+                        return "path of " + testMaps.length(rest) + " from " + cell +
+                               " on the path from " + start + ", expected " +
+                               world.distances()[cell];
+                    }
+                    String failure = world.checkPath(cell, rest);
+                    if (failure != null) return failure;
+                }
+
+                if (world.turn % 5 == 4) {
+                    cache[0] = roundTrip(cache[0]);
+                    cache[0].setCapacity(capacity);
+                    cache[0].setMapVersion(world.gameMap.getChangeCount());
+                    evictions[0] = 0;
+                }
+                if (cache[0].size() != expected.size() ||
+                    cache[0].getEvictions() != evictions[0]) {
+                    return cache[0].size() + " paths after " + cache[0].getEvictions() +
+                           " evictions, expected " + expected.size() + " after " +
+                           evictions[0];
+                }
+                // least recently used first, so getting them keeps the order
+                for (Map.Entry<String, GridPath> entry :
+                        new ArrayList<>(expected.entrySet())) {
+                    String[] key = entry.getKey().split(" ");
+                    GridPath cached = get(world, cache[0], Long.parseLong(key[0]),
+                                          Integer.parseInt(key[1]));
+                    if (!samePath(entry.getValue(), cached)) {
+                        return "the path from " + key[1] + " did not come back as " +
+                               Arrays.toString(entry.getValue().toArray());
+                    }
+                    expected.get(entry.getKey());
+                }
+                return null;
+            };
+        });
+    }
+
+    private static String key(long fingerprint, int start) {
+        return fingerprint + " " + start;
+    }
+
+    private static GridPath get(testMaps.World world, PathCache cache,
+                                long fingerprint, int start) {
+        return cache.get(fingerprint, world.width, start, world.goals, world.goals.length);
+    }
+
+    /**
+     * Writes the cache out and reads it into a new one, as between two runs.
+     */
+    private static PathCache roundTrip(PathCache cache) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            cache.write(new DataOutputStream(bytes));
+            PathCache copy = new PathCache();
+            copy.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            return copy;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean samePath(GridPath a, GridPath b) {
+        return a != null && b != null && Arrays.equals(a.toArray(), b.toArray());
+    }
+}
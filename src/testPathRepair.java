@@ -0,0 +1,87 @@
+import java.util.Arrays;
+
+/**
+ * Testing class for the PathRepair detours. While enemy units walk around random maps,
+ * a detour between two random cells with a random most number of moves has to be as
+ * short as a breadth first search finds, and found exactly when that is no more than
+ * the most moves allowed. A path planned before the units moved, with a detour
+ * spliced in around the steps they moved onto, has to be the path with just those
+ * steps swapped and be walkable on the map as it is now.
+ *
+ * @author Alexander Telich
+ */
+public class testPathRepair {
+    private static final int MAX_LENGTH = 12;
+
+    /**
+     * Main method to test PathRepair against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(22, 1000, 20, 30, 4, world -> {
+            PathRepair repair = new PathRepair();
+            BidirectionalAstar planner = new BidirectionalAstar(world.width, world.height);
+            return () -> {
+                int from = world.randomOpenCell();
+                if (from < 0) return null;
+                int to = world.random.nextInt(world.width * world.height);
+                int maxLength = world.random.nextInt(MAX_LENGTH);
+                GridPath detour = repair.detour(world.snapshot, from, to, maxLength);
+                int distance = testMaps.bfs(world.snapshot, new int[]{to})[from];
+                int expected = distance <= maxLength ? distance : -1;
+                if (testMaps.length(detour) != expected) {
+                    return "detour of " + testMaps.length(detour) + " from " + from +
+                           " to " + to + ", expected " + expected + " within " +
+                           maxLength;
+                }
+                String failure = testMaps.checkSteps(world.snapshot, from, new int[]{to},
+                                                     detour);
+                if (failure != null) return failure;
+                return checkSplice(world, repair, planner, from);
+            };
+        });
+    }
+
+    /**
+     * Plans a path on the map from before the units moved and goes around the steps
+     * that are blocked now, the way the agent's cost replan policy does.
+     *
+     * @return null if the spliced path is right, otherwise what is wrong
+     */
+    private static String checkSplice(testMaps.World world, PathRepair repair,
+                                      PathPlanner planner, int start) {
+        if (world.before == null || world.before.isBlocked(start)) return null;
+        GridPath path = planner.search(world.before, start % world.width,
+                                       start / world.width, world.goals,
+                                       world.goals.length, world.townhall.x,
+                                       world.townhall.y);
+        if (path == null) return null;
+        // first blocked step and the first step after the last blocked one
+        int blocked = -1, rejoin = -1;
+        for (int step = 0; step < path.size(); step++) {
+            if (world.snapshot.isBlocked(path.get(step))) {
+                if (blocked < 0) blocked = step;
+                rejoin = step + 1;
+            }
+        }
+        if (blocked < 0 || rejoin == path.size()) return null;
+
+        int from = blocked == 0 ? start : path.get(blocked - 1);
+        GridPath detour = repair.detour(world.snapshot, from, path.get(rejoin), MAX_LENGTH);
+        if (detour == null) return null;
+        GridPath spliced = path.splice(blocked, rejoin + 1, detour);
+
+        int[] cells = path.toArray();
+        int[] expected = new int[blocked + detour.size() + cells.length - rejoin - 1];
+        System.arraycopy(cells, 0, expected, 0, blocked);
+        System.arraycopy(detour.toArray(), 0, expected, blocked, detour.size());
+        System.arraycopy(cells, rejoin + 1, expected, blocked + detour.size(),
+                         cells.length - rejoin - 1);
+        if (!Arrays.equals(spliced.toArray(), expected)) {
+            return "spliced path " + Arrays.toString(spliced.toArray()) + ", expected " +
+                   Arrays.toString(expected);
+        }
+        return world.checkPath(start, spliced);
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Testing class for the SearchPruning strategies. While enemy units walk around
+ * random maps, keeping searches from walking into the cells DeadEndPruning marks must
+ * leave the breadth first distance of every cell to the goals as it was, and GridAstar
+ * with it and an admissible heuristic must still find shortest paths. The pruning that
+ * isn't admissible may make paths longer, but with the search run again without it a
+ * path has to be found exactly when a breadth first search finds one.
+ *
+ * @author Alexander Telich
+ */
+public class testPruning {
+    /**
+     * Main method to test the pruning strategies against breadth first search
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(17, 1000, 20, 40, 4, world -> {
+            DeadEndPruning deadEnds = DeadEndPruning.build(world.gameMap);
+            LandmarkHeuristic heuristic = new LandmarkHeuristic(
+                    LandmarkTable.build(world.gameMap, 4), world.width);
+            heuristic.setGoals(world.goals, world.goals.length);
+            GridAstar exact = new GridAstar(world.width, world.height);
+            exact.setHeuristic(heuristic);
+            exact.setPruning(deadEnds);
+
+            BoundingBoxPruning box = new BoundingBoxPruning(world.random.nextInt(4));
+            QuadrantPruning quadrants = new QuadrantPruning();
+            GridAstar fallback = new GridAstar(world.width, world.height);
+            return () -> {
+                int[] expected = world.distances();
+                int[] distances = prunedDistances(world, deadEnds);
+                for (int cell = 0; cell < expected.length; cell++) {
+                    if (distances[cell] != expected[cell]) {
+                        return "cell " + cell + " is " + distances[cell] + " away past the " +
+                               deadEnds.getDeadCount() + " dead cells, expected " +
+                               expected[cell];
+                    }
+                }
+
+                int start = world.randomOpenCell();
+                if (start < 0) return null;
+                GridPath path = world.search(exact, start);
+                if (testMaps.length(path) != expected[start]) {
+                    return "dead end pruned path of " + testMaps.length(path) + " from " +
+                           start + ", expected " + expected[start];
+                }
+                String failure = world.checkPath(start, path);
+                if (failure != null) return failure;
+
+                quadrants.setOrigin(world.random.nextInt(world.width),
+                                    world.random.nextInt(world.height));
+                for (SearchPruning pruning : new SearchPruning[]{box, quadrants}) {
+                    fallback.setPruning(pruning);
+                    path = world.search(fallback, start);
+                    int length = testMaps.length(path);
+                    if ((length < 0) != (expected[start] < 0) || length < expected[start]) {
+                        return pruning.getName() + " pruned path of " + length +
+                               " from " + start + ", expected " + expected[start];
+                    }
+                    failure = world.checkPath(start, path);
+                    if (failure != null) return failure;
+                }
+                return null;
+            };
+        });
+    }
+
+    /**
+     * Breadth first search back from the goals over the moves the pruning leaves,
+     * which are all but the ones from a live cell into a dead one.
+     *
+     * @return moves from every cell to the nearest goal, or -1 if there is no path
+     */
+    private static int[] prunedDistances(testMaps.World world, DeadEndPruning deadEnds) {
+        int[] distance = new int[world.width * world.height];
+        Arrays.fill(distance, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        for (int goal : world.goals) {
+            if (!world.snapshot.isBlocked(goal) && distance[goal] != 0) {
+                distance[goal] = 0;
+                queue.add(goal);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (int d = 0; d < 8; d++) {
+                int x = cell % world.width + GridAstar.DX[d];
+                int y = cell / world.width + GridAstar.DY[d];
+                if (x < 0 || y < 0 || x >= world.width || y >= world.height ||
+                    world.snapshot.isBlocked(x, y)) {
+                    continue;
+                }
+                int next = y * world.width + x;
+                // going from next to cell must not be a move from a live cell
+                // into a dead one
+                if (distance[next] == -1 &&
+                    (!deadEnds.isDead(cell) || deadEnds.isDead(next))) {
+                    distance[next] = distance[cell] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return distance;
+    }
+}
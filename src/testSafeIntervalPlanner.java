@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+/**
+ * Testing class for the SafeIntervalPlanner. Every turn the enemy units on random maps
+ * are given random trajectories from where they stand, and the planner's path has to
+ * arrive as early as a breadth first search over (cell, turn) states does, which may
+ * also wait, without stepping on a cell the prediction has as taken on the turn the
+ * footman gets there.
+ *
+ * @author Alexander Telich
+ */
+public class testSafeIntervalPlanner {
+    private static final int MAX_TRAJECTORY = 10;
+
+    /**
+     * Main method to test the SafeIntervalPlanner against breadth first search over
+     * time
+     *
+     * @param args holds the main method arguments
+     */
+    public static void main(String[] args) {
+        testMaps.run(25, 2000, 10, 16, 3, world -> {
+            SafeIntervalPlanner planner = new SafeIntervalPlanner(world.width,
+                                                                  world.height);
+            return () -> {
+                EnemyPredictor.Prediction prediction = new EnemyPredictor.Prediction(
+                        randomTrajectories(world), world.random.nextInt(MAX_TRAJECTORY + 1));
+                int start = world.randomOpenCell();
+                if (start < 0) return null;
+                planner.setPrediction(prediction);
+                GridPath path = world.search(planner, start);
+                int expected = bfsOverTime(world, prediction, start);
+                if (testMaps.length(path) != expected) {
+                    return "path of " + testMaps.length(path) + " from " + start +
+                           ", expected " + expected;
+                }
+                return checkTimedPath(world, prediction, start, path);
+            };
+        });
+    }
+
+    /**
+     * Gives every unit a random walk from where it stands. Units can cross each
+     * other's trajectories.
+     */
+    private static int[][] randomTrajectories(testMaps.World world) {
+        int[][] trajectories = new int[world.units.size()][];
+        int unit = 0;
+        for (int cell : world.units.values()) {
+            int[] trajectory = new int[1 + world.random.nextInt(MAX_TRAJECTORY)];
+            trajectory[0] = cell;
+            for (int time = 1; time < trajectory.length; time++) {
+                int d = world.random.nextInt(8);
+                int x = cell % world.width + GridAstar.DX[d];
+                int y = cell / world.width + GridAstar.DY[d];
+                if (x >= 0 && y >= 0 && x < world.width && y < world.height &&
+                    !isStaticBlocked(world, y * world.width + x)) {
+                    cell = y * world.width + x;
+                }
+                trajectory[time] = cell;
+            }
+            trajectories[unit++] = trajectory;
+        }
+        return trajectories;
+    }
+
+    /**
+     * Breadth first search over (cell, turn) where the footman can also wait a turn.
+     * A goal counts once no unit is expected on it from that turn on.
+     *
+     * @return the first turn the footman can stand on a goal for good, or -1
+     */
+    private static int bfsOverTime(testMaps.World world,
+                                   EnemyPredictor.Prediction prediction, int start) {
+        int cells = world.width * world.height;
+        boolean[] reached = new boolean[cells];
+        reached[start] = true;
+        for (int time = 0; ; time++) {
+            if (time > 0) {
+                boolean[] next = new boolean[cells];
+                for (int cell = 0; cell < cells; cell++) {
+                    if (!reached[cell]) continue;
+                    for (int d = -1; d < 8; d++) {
+                        int x = cell % world.width + (d < 0 ? 0 : GridAstar.DX[d]);
+                        int y = cell / world.width + (d < 0 ? 0 : GridAstar.DY[d]);
+                        if (x < 0 || y < 0 || x >= world.width || y >= world.height) {
+                            continue;
+                        }
+                        int to = y * world.width + x;
+                        if (!isStaticBlocked(world, to) &&
+                            !prediction.isOccupied(to, time)) {
+                            next[to] = true;
+                        }
+                    }
+                }
+                // past every trajectory nothing changes any more, so once no new
+                // cell is reached none will be
+                if (time > MAX_TRAJECTORY && Arrays.equals(reached, next)) return -1;
+                reached = next;
+            }
+            for (int goal : world.goals) {
+                if (reached[goal] && isFreeFrom(prediction, goal, time)) return time;
+            }
+        }
+    }
+
+    /**
+     * @return null if the path moves at most one cell a turn, only onto cells that are
+     *         free on the turn the footman gets there, and ends on a goal that stays
+     *         free, otherwise what is wrong
+     */
+    private static String checkTimedPath(testMaps.World world,
+                                         EnemyPredictor.Prediction prediction, int start,
+                                         GridPath path) {
+        if (path == null) return null;
+        int cell = start;
+        for (int i = 0; i < path.size(); i++) {
+            int next = path.get(i);
+            if (Math.abs(next % world.width - cell % world.width) > 1 ||
+                Math.abs(next / world.width - cell / world.width) > 1 ||
+                isStaticBlocked(world, next) || prediction.isOccupied(next, i + 1)) {
+                return "bad step to " + next + " on turn " + (i + 1);
+            }
+            cell = next;
+        }
+        for (int goal : world.goals) {
+            if (goal == cell && isFreeFrom(prediction, goal, path.size())) return null;
+        }
+        return "path ends off the goals or where a unit is expected";
+    }
+
+    /**
+     * @return true if no unit is expected on the cell from the turn on
+     */
+    private static boolean isFreeFrom(EnemyPredictor.Prediction prediction, int cell,
+                                      int time) {
+        for (int turn = Math.max(1, time); turn <= time + MAX_TRAJECTORY + 1; turn++) {
+            if (prediction.isOccupied(cell, turn)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true for trees and the townhall, which the units don't leave
+     */
+    private static boolean isStaticBlocked(testMaps.World world, int cell) {
+        int type = world.gameMap.getPosition(cell % world.width, cell / world.width);
+        return type == 1 || type == 3;
+    }
+}